@@ -61,8 +61,49 @@ CREATE TABLE usr.followers (
 );
 
 -- Create indexes to optimize queries on the Followers table
-CREATE INDEX idx_followers_user_id ON usr.followers (user_id);
-CREATE INDEX idx_followers_follower_id ON usr.followers (follower_id);
+-- (composite to serve the keyset-paginated follower/following lists ordered by follow_date DESC, id DESC)
+CREATE INDEX idx_followers_user_id_date ON usr.followers (user_id, follow_date DESC, id DESC);
+CREATE INDEX idx_followers_follower_id_date ON usr.followers (follower_id, follow_date DESC, id DESC);
+
+-- Denormalized follower/following/post counters, sharded per user (count = SUM over the user's shards)
+CREATE TABLE usr.user_stats (
+                                user_id BIGINT NOT NULL,
+                                shard SMALLINT NOT NULL,
+                                followers_count BIGINT NOT NULL DEFAULT 0,
+                                following_count BIGINT NOT NULL DEFAULT 0,
+                                posts_count BIGINT NOT NULL DEFAULT 0,
+                                PRIMARY KEY (user_id, shard),
+                                FOREIGN KEY (user_id) REFERENCES usr.users (id) ON DELETE CASCADE
+);
+
+-- Posts already applied to user_stats.posts_count, so replayed or out-of-order post events are applied once.
+-- created_at/deleted_at come from post-service and place each post before or after a backfilled baseline.
+CREATE TABLE usr.post_ledger (
+                                 post_id BIGINT PRIMARY KEY,
+                                 user_id BIGINT NOT NULL,
+                                 deleted BOOLEAN NOT NULL DEFAULT FALSE,
+                                 created_at TIMESTAMP,
+                                 deleted_at TIMESTAMP
+);
+
+CREATE INDEX idx_post_ledger_user_id ON usr.post_ledger (user_id);
+
+-- Users whose post count was backfilled from post-service; counted_until is when post-service counted, on its clock
+CREATE TABLE usr.post_count_baselines (
+                                          user_id BIGINT PRIMARY KEY,
+                                          counted_until TIMESTAMP NOT NULL,
+                                          FOREIGN KEY (user_id) REFERENCES usr.users (id) ON DELETE CASCADE
+);
+
+-- Transactional outbox: events are written with the change that produced them and relayed to Kafka in id order
+CREATE TABLE usr.outbox_events (
+                                   id BIGSERIAL PRIMARY KEY,
+                                   topic VARCHAR(255) NOT NULL,
+                                   event_key VARCHAR(255),
+                                   event_type VARCHAR(255) NOT NULL,
+                                   payload TEXT NOT NULL,
+                                   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
 
 DO $$
     BEGIN
@@ -1,6 +1,7 @@
 package com.toiter.userservice.config;
 
 import com.toiter.userservice.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -40,7 +41,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         logger.debug(String.format("Path: %s", path));
 
         // Ignorar validação para rotas públicas específicas
-        if (path.startsWith("/auth/") || path.startsWith("/api/auth/") || path.startsWith("/v3/api-docs") || path.startsWith("/swagger-ui") || path.startsWith("/images")) {
+        if (path.startsWith("/auth/") || path.startsWith("/api/auth/") || path.startsWith("/v3/api-docs") || path.startsWith("/swagger-ui") || path.startsWith("/images") || path.equals("/.well-known/jwks.json")) {
             logger.debug("Ignorando validação JWT para rota pública");
             filterChain.doFilter(request, response);
             return;
@@ -75,11 +76,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         logger.debug("Token JWT encontrado");
 
         try {
-            String username = jwtService.extractUsername(jwt);
+            // Reaproveita as claims já verificadas pelo RateLimitFilter nesta requisição
+            Claims claims = JwtClaimsHolder.resolve(request, jwt, jwtService);
+            String username = claims.getSubject();
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtService.isTokenValid(jwt)) {
-                    Long userId = jwtService.extractUserId(jwt);
+                if (jwtService.isTokenValid(claims)) {
+                    Long userId = jwtService.extractUserId(claims);
 
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userId,
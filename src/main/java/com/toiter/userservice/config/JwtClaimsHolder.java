@@ -0,0 +1,44 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.service.JwtService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Keeps the result of verifying the request's JWT as a request attribute, so {@link RateLimitFilter} and
+ * {@link JwtAuthenticationFilter} parse the token at most once per request.
+ */
+public final class JwtClaimsHolder {
+    private static final String ATTRIBUTE = JwtClaimsHolder.class.getName();
+
+    private JwtClaimsHolder() {
+    }
+
+    /**
+     * Returns the claims of {@code jwt}, verifying it only if this request has not done so yet.
+     * A verification failure is remembered as well and thrown again to later callers.
+     */
+    public static Claims resolve(HttpServletRequest request, String jwt, JwtService jwtService) {
+        if (request.getAttribute(ATTRIBUTE) instanceof Parsed parsed && parsed.token().equals(jwt)) {
+            return parsed.claims();
+        }
+        try {
+            Claims claims = jwtService.parseClaims(jwt);
+            request.setAttribute(ATTRIBUTE, new Parsed(jwt, claims, null));
+            return claims;
+        } catch (RuntimeException e) {
+            request.setAttribute(ATTRIBUTE, new Parsed(jwt, null, e));
+            throw e;
+        }
+    }
+
+    private record Parsed(String token, Claims claims, RuntimeException error) {
+        @Override
+        public Claims claims() {
+            if (error != null) {
+                throw error;
+            }
+            return claims;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.toiter.userservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chaves ECDSA (P-256 / ES256) usadas para assinar os JWTs ({@code jwt.signing.*}).
+ * <p>
+ * Cada chave tem um {@code id} (enviado no header {@code kid}), a chave pública (X.509, PEM ou Base64)
+ * e, opcionalmente, a privada (PKCS#8). Os tokens são assinados com {@code active-key-id}; as demais chaves
+ * continuam publicadas no JWKS para validar tokens já emitidos. Sem {@code active-key-id} os tokens
+ * continuam sendo assinados com o segredo HMAC ({@code jwt.secret}).
+ * <p>
+ * Rotação: adicionar a nova chave em todas as instâncias, depois trocar {@code active-key-id} e remover a
+ * chave antiga só depois que os tokens assinados com ela expirarem. {@code accept-hmac} mantém válidos os
+ * tokens HMAC emitidos antes da migração.
+ */
+@Component
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtSigningProperties {
+
+    private String activeKeyId;
+    private boolean acceptHmac = true;
+    private List<Key> keys = new ArrayList<>();
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public void setActiveKeyId(String activeKeyId) {
+        this.activeKeyId = activeKeyId;
+    }
+
+    public boolean isAcceptHmac() {
+        return acceptHmac;
+    }
+
+    public void setAcceptHmac(boolean acceptHmac) {
+        this.acceptHmac = acceptHmac;
+    }
+
+    public List<Key> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<Key> keys) {
+        this.keys = keys;
+    }
+
+    public static class Key {
+        private String id;
+        private String publicKey;
+        private String privateKey;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getPublicKey() {
+            return publicKey;
+        }
+
+        public void setPublicKey(String publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        public String getPrivateKey() {
+            return privateKey;
+        }
+
+        public void setPrivateKey(String privateKey) {
+            this.privateKey = privateKey;
+        }
+    }
+}
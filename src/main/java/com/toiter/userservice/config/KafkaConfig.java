@@ -1,7 +1,16 @@
 package com.toiter.userservice.config;
 
+import com.toiter.userservice.service.DeadLetterService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,12 +18,21 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RetryListener;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @EnableKafka
@@ -25,30 +43,89 @@ public class KafkaConfig {
     @Value("${SPRING_KAFKA_BOOTSTRAP_SERVERS}")
     private String bootstrapServers;
 
+    @Value("${kafka.topics.replicas:1}")
+    private int replicas;
+
+    private final MeterRegistry meterRegistry;
+    private final KafkaListenerMetrics listenerMetrics;
+
+    public KafkaConfig(MeterRegistry meterRegistry, KafkaListenerMetrics listenerMetrics) {
+        this.meterRegistry = meterRegistry;
+        this.listenerMetrics = listenerMetrics;
+    }
+
+    // Tópicos publicados por este serviço. O número de partições limita a concorrência útil dos listeners
+    // (kafka.topics.*.concurrency); a ordem é garantida por chave, então aumentar partições remapeia as chaves.
+    @Bean
+    public NewTopic followEventsTopic(@Value("${kafka.topics.follow-events.partitions:6}") int partitions) {
+        return TopicBuilder.name("follow-events-topic").partitions(partitions).replicas(replicas).build();
+    }
+
+    @Bean
+    public NewTopic userUpdatedTopic(@Value("${kafka.topics.user-updated.partitions:6}") int partitions) {
+        return TopicBuilder.name("user-updated-topic").partitions(partitions).replicas(replicas).build();
+    }
+
+    @Bean
+    public NewTopic chatEventsTopic(@Value("${kafka.topics.chat-events.partitions:6}") int partitions) {
+        return TopicBuilder.name("chat-events-topic").partitions(partitions).replicas(replicas).build();
+    }
+
+    // Os tópicos de retry e DLT dos listeners com @RetryableTopic são criados pelo próprio Spring Kafka;
+    // o listener em lote de follow usa retry bloqueante e só precisa do DLT.
+    @Bean
+    public NewTopic followEventsDeadLetterTopic(@Value("${kafka.topics.follow-events.partitions:6}") int partitions) {
+        return TopicBuilder.name("follow-events-topic" + DeadLetterService.DLT_SUFFIX)
+                .partitions(partitions).replicas(replicas).build();
+    }
+
     // Producer Configuration
+    // Os eventos já chegam serializados em JSON pela outbox (ver OutboxRelay), então o valor é enviado como String
+    // junto com o header de tipo que o JsonDeserializer dos consumidores espera.
     @Bean
-    public ProducerFactory<String, Object> producerFactory() {
+    public ProducerFactory<String, String> producerFactory() {
         Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
         config.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "follow-transaction");
         return new DefaultKafkaProducerFactory<>(config);
     }
 
     @Bean
-    public KafkaTemplate<String, Object> kafkaTemplate() {
-        KafkaTemplate<String, Object> template = new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, String> kafkaTemplate() {
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(producerFactory());
         template.setTransactionIdPrefix("tx-");
         return template;
     }
 
+    // Producer usado pelos tópicos de retry, pelo DLT, pelo replay e pelos snapshots de contadores. Não é
+    // transacional; reenvia o evento já desserializado como JSON, ou os bytes originais quando o registro nem
+    // chegou a ser desserializado.
+    @Bean
+    public KafkaTemplate<String, Object> retryKafkaTemplate() {
+        Map<Class<?>, Serializer<?>> serializers = new LinkedHashMap<>();
+        serializers.put(byte[].class, new ByteArraySerializer());
+        serializers.put(Object.class, new JsonSerializer<>());
+
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
+                new DelegatingByTypeSerializer(serializers, true)));
+    }
+
     // Consumer Configuration
+    // Registros que não desserializam chegam ao listener como falha (e vão direto para o DLT) em vez de
+    // travar a partição no poll.
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
-        JsonDeserializer<Object> deserializer = new JsonDeserializer<>();
-        deserializer.addTrustedPackages("*");
+        JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+        jsonDeserializer.addTrustedPackages("*");
+        ErrorHandlingDeserializer<Object> deserializer = new ErrorHandlingDeserializer<>(jsonDeserializer);
 
         Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -56,13 +133,67 @@ public class KafkaConfig {
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, deserializer);
 
-        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(), deserializer);
+        DefaultKafkaConsumerFactory<String, Object> factory =
+                new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(), deserializer);
+        // Métricas do cliente Kafka no registry do Micrometer, incluindo o lag por partição
+        // (kafka.consumer.fetch.manager.records.lag)
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
+
+    // Lê os DLTs com os bytes originais, para o replay
+    @Bean
+    public ConsumerFactory<String, byte[]> deadLetterConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(), new ByteArrayDeserializer());
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setRecordInterceptor(listenerMetrics.recordInterceptor());
+        return factory;
+    }
+
+    // Listeners que recebem o lote inteiro de cada poll; os offsets só são confirmados depois que o lote é processado.
+    // Um lote que falha é reprocessado com backoff exponencial; esgotadas as tentativas, os registros vão para o DLT.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory(
+            DeadLetterService deadLetterService,
+            @Value("${kafka.retry.attempts:4}") int attempts,
+            @Value("${kafka.retry.initial-delay-ms:1000}") long initialDelayMillis,
+            @Value("${kafka.retry.multiplier:4.0}") double multiplier,
+            @Value("${kafka.retry.max-delay-ms:60000}") long maxDelayMillis) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.setBatchInterceptor(listenerMetrics.batchInterceptor());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+
+        DeadLetterPublishingRecoverer deadLetters = new DeadLetterPublishingRecoverer(retryKafkaTemplate(),
+                (record, ex) -> new TopicPartition(record.topic() + DeadLetterService.DLT_SUFFIX, -1));
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(Math.max(0, attempts - 1));
+        backOff.setInitialInterval(initialDelayMillis);
+        backOff.setMultiplier(multiplier);
+        backOff.setMaxInterval(maxDelayMillis);
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, ex) -> {
+            deadLetters.accept(record, ex);
+            deadLetterService.recordDeadLetter(record, ex.getMessage());
+        }, backOff);
+        errorHandler.setRetryListeners(new RetryListener() {
+            @Override
+            public void failedDelivery(ConsumerRecord<?, ?> record, Exception ex, int deliveryAttempt) {
+                deadLetterService.recordRetry(record.topic());
+            }
+
+            @Override
+            public void failedDelivery(ConsumerRecords<?, ?> records, Exception ex, int deliveryAttempt) {
+                records.partitions().forEach(partition -> deadLetterService.recordRetry(partition.topic()));
+            }
+        });
+        factory.setCommonErrorHandler(errorHandler);
         return factory;
     }
 }
@@ -0,0 +1,132 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.producer.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every listener invocation per topic ({@code kafka.consumer.processing}) and, for each record handled
+ * successfully, the time since it was produced ({@code kafka.consumer.end.to.end}), read from the
+ * {@value OutboxRelay#PRODUCED_AT_HEADER} header. Both are published as percentile histograms. Records without
+ * the header (published by other services or before it existed) only count towards processing time.
+ */
+@Component
+public class KafkaListenerMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> processingTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> endToEndTimers = new ConcurrentHashMap<>();
+    // Interceptors run on the listener thread, around the listener call
+    private final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+
+    public KafkaListenerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public RecordInterceptor<String, Object> recordInterceptor() {
+        return new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, Object> intercept(ConsumerRecord<String, Object> record,
+                                                            Consumer<String, Object> consumer) {
+                startedAt.set(System.nanoTime());
+                return record;
+            }
+
+            @Override
+            public void success(ConsumerRecord<String, Object> record, Consumer<String, Object> consumer) {
+                recordEndToEnd(record, System.currentTimeMillis());
+            }
+
+            @Override
+            public void afterRecord(ConsumerRecord<String, Object> record, Consumer<String, Object> consumer) {
+                recordProcessing(record.topic());
+            }
+        };
+    }
+
+    public BatchInterceptor<String, Object> batchInterceptor() {
+        return new BatchInterceptor<>() {
+            @Override
+            public ConsumerRecords<String, Object> intercept(ConsumerRecords<String, Object> records,
+                                                             Consumer<String, Object> consumer) {
+                startedAt.set(System.nanoTime());
+                return records;
+            }
+
+            @Override
+            public void success(ConsumerRecords<String, Object> records, Consumer<String, Object> consumer) {
+                long now = System.currentTimeMillis();
+                records.forEach(record -> recordEndToEnd(record, now));
+                recordBatchProcessing(records);
+            }
+
+            @Override
+            public void failure(ConsumerRecords<String, Object> records, Exception exception,
+                                Consumer<String, Object> consumer) {
+                recordBatchProcessing(records);
+            }
+        };
+    }
+
+    private void recordBatchProcessing(ConsumerRecords<String, Object> records) {
+        Long start = startedAt.get();
+        startedAt.remove();
+        if (start == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        records.partitions().stream()
+                .map(TopicPartition::topic)
+                .distinct()
+                .forEach(topic -> processingTimer(topic).record(elapsed, TimeUnit.NANOSECONDS));
+    }
+
+    private void recordProcessing(String topic) {
+        Long start = startedAt.get();
+        startedAt.remove();
+        if (start != null) {
+            processingTimer(topic).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordEndToEnd(ConsumerRecord<?, ?> record, long now) {
+        Header header = record.headers().lastHeader(OutboxRelay.PRODUCED_AT_HEADER);
+        if (header == null) {
+            return;
+        }
+        try {
+            long producedAt = Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+            endToEndTimer(record.topic()).record(Math.max(0, now - producedAt), TimeUnit.MILLISECONDS);
+        } catch (NumberFormatException ignored) {
+            // Malformed header: nothing to measure
+        }
+    }
+
+    private Timer processingTimer(String topic) {
+        return processingTimers.computeIfAbsent(topic, t -> Timer.builder("kafka.consumer.processing")
+                .description("Time spent in the listener per record, or per batch for batch listeners")
+                .tag("topic", t)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private Timer endToEndTimer(String topic) {
+        return endToEndTimers.computeIfAbsent(topic, t -> Timer.builder("kafka.consumer.end.to.end")
+                .description("Time from the event being produced to the listener finishing with it")
+                .tag("topic", t)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,31 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.service.DeadLetterService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.RetryListener;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+
+/**
+ * Configuração dos tópicos de retry não bloqueantes ({@code @RetryableTopic}): cada falha de um listener é
+ * contada em {@code kafka.consumer.retries} antes de o registro seguir para o próximo tópico de retry ou para o DLT.
+ */
+@Configuration
+public class KafkaRetryConfig extends RetryTopicConfigurationSupport {
+
+    private final DeadLetterService deadLetterService;
+
+    public KafkaRetryConfig(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    @Override
+    protected void configureCustomizers(CustomizersConfigurer customizersConfigurer) {
+        customizersConfigurer.customizeErrorHandler(errorHandler -> errorHandler.setRetryListeners(new RetryListener() {
+            @Override
+            public void failedDelivery(ConsumerRecord<?, ?> record, Exception ex, int deliveryAttempt) {
+                deadLetterService.recordRetry(record.topic());
+            }
+        }));
+    }
+}
@@ -0,0 +1,85 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.service.SocialCountsStore;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.kstream.KTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
+import org.springframework.kafka.config.KafkaStreamsConfiguration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Contadores sociais (seguidores, seguindo, posts) materializados pelo Kafka Streams em um store RocksDB local
+// e consultados por interactive queries, semeados a partir de usr.user_stats. Desligado por padrão: sem ele, as
+// contagens vêm de usr.user_stats.
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "stats.streams.enabled", havingValue = "true")
+public class KafkaStreamsConfig {
+
+    @Value("${SPRING_KAFKA_BOOTSTRAP_SERVERS}")
+    private String bootstrapServers;
+
+    @Value("${kafka.topics.replicas:1}")
+    private int replicas;
+
+    // Snapshots das contagens publicados pela reconciliação; compactado, só a última de cada usuário importa
+    @Bean
+    public NewTopic userStatsSnapshotsTopic(@Value("${kafka.topics.user-stats-snapshots.partitions:6}") int partitions) {
+        return TopicBuilder.name(SocialCountsStore.SNAPSHOTS_TOPIC).partitions(partitions).replicas(replicas).compact().build();
+    }
+
+    // Variações da contagem de posts aceitas pelo usr.post_ledger, publicadas pelo outbox para alimentar o store
+    @Bean
+    public NewTopic postCountEventsTopic(@Value("${kafka.topics.post-count-events.partitions:6}") int partitions) {
+        return TopicBuilder.name(SocialCountsStore.POST_COUNT_EVENTS_TOPIC).partitions(partitions).replicas(replicas).build();
+    }
+
+    // application.server é o host:porta HTTP desta instância, anunciado às demais para roteamento das consultas.
+    // Standby replicas mantêm cópias do store em outras instâncias, encurtando a restauração após um rebalance.
+    @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
+    public KafkaStreamsConfiguration kafkaStreamsConfiguration(
+            @Value("${stats.streams.application-id:user-service-social-counts}") String applicationId,
+            @Value("${stats.streams.application-server}") String applicationServer,
+            @Value("${stats.streams.state-dir:/tmp/kafka-streams}") String stateDir,
+            @Value("${stats.streams.standby-replicas:1}") int standbyReplicas) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(StreamsConfig.APPLICATION_SERVER_CONFIG, applicationServer);
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        config.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, standbyReplicas);
+        config.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE_V2);
+        // Um evento ilegível é registrado em log e ignorado, sem parar o stream
+        config.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                LogAndContinueExceptionHandler.class);
+        return new KafkaStreamsConfiguration(config);
+    }
+
+    @Bean
+    public KTable<Long, SocialCountsStore.StoredCounts> socialCountsTable(StreamsBuilder streamsBuilder) {
+        return SocialCountsStore.buildTopology(streamsBuilder);
+    }
+
+    // Sem novas tentativas: durante um rebalance a leitura cai para o banco em vez de segurar a requisição
+    @Bean
+    public KafkaStreamsInteractiveQueryService kafkaStreamsInteractiveQueryService(
+            StreamsBuilderFactoryBean streamsBuilderFactoryBean) {
+        KafkaStreamsInteractiveQueryService queryService =
+                new KafkaStreamsInteractiveQueryService(streamsBuilderFactoryBean);
+        queryService.setRetryTemplate(RetryTemplate.builder().maxAttempts(1).build());
+        return queryService;
+    }
+}
@@ -0,0 +1,61 @@
+package com.toiter.userservice.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stores {@link Long} values as plain decimal ASCII, the representation Redis itself uses for
+ * integers, so the same keys keep working with INCR/DECR. Anything else (e.g. a type-wrapped
+ * JSON value written by the previous serializer) is decoded with {@code legacySerializer}.
+ */
+public class LongRedisSerializer implements RedisSerializer<Long> {
+    private final RedisSerializer<?> legacySerializer;
+
+    public LongRedisSerializer(RedisSerializer<?> legacySerializer) {
+        this.legacySerializer = legacySerializer;
+    }
+
+    @Override
+    public byte[] serialize(Long value) throws SerializationException {
+        return value == null ? new byte[0] : Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public Long deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (isDecimal(bytes)) {
+            try {
+                return Long.parseLong(new String(bytes, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new SerializationException("Invalid long value", e);
+            }
+        }
+        Object legacy = legacySerializer.deserialize(bytes);
+        if (legacy == null) {
+            return null;
+        }
+        if (legacy instanceof Number number) {
+            return number.longValue();
+        }
+        throw new SerializationException("Legacy value is not a number: " + legacy.getClass().getName());
+    }
+
+    private static boolean isDecimal(byte[] bytes) {
+        int start = bytes[0] == '-' && bytes.length > 1 ? 1 : 0;
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Long.class;
+    }
+}
@@ -1,7 +1,11 @@
 package com.toiter.userservice.config;
 
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
 import com.toiter.userservice.service.JwtService;
-import com.toiter.userservice.service.RateLimitService;
+import com.toiter.userservice.service.RateLimitPenaltyBox;
+import com.toiter.userservice.service.RateLimitPolicyEngine;
+import com.toiter.userservice.service.RateLimiter;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -11,7 +15,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.annotation.Order;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -21,7 +24,9 @@ import java.io.IOException;
 
 /**
  * Filter to apply rate limiting to requests based on user ID.
- * This filter runs before authentication to check rate limits.
+ * This filter runs before authentication to check rate limits; the policy of each route comes from
+ * {@link RateLimitPolicyEngine}. Clients already denied are rejected by {@link RateLimitPenaltyBox} before
+ * the JWT is parsed or Redis is called.
  */
 @Component
 @Order(1)
@@ -29,12 +34,17 @@ public class RateLimitFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
 
-    private final RateLimitService rateLimitService;
+    private final RateLimiter rateLimiter;
+    private final RateLimitPolicyEngine policyEngine;
+    private final RateLimitPenaltyBox penaltyBox;
     private final JwtService jwtService;
     private final boolean enabled;
 
-    public RateLimitFilter(RateLimitService rateLimitService, JwtService jwtService, @Value("${rate-limit.enabled:true}") boolean enabled) {
-        this.rateLimitService = rateLimitService;
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitPolicyEngine policyEngine, RateLimitPenaltyBox penaltyBox,
+                           JwtService jwtService, @Value("${rate-limit.enabled:true}") boolean enabled) {
+        this.rateLimiter = rateLimiter;
+        this.policyEngine = policyEngine;
+        this.penaltyBox = penaltyBox;
         this.jwtService = jwtService;
         this.enabled = enabled;
     }
@@ -49,81 +59,73 @@ public class RateLimitFilter extends OncePerRequestFilter {
             return;
         }
 
-        String path = request.getRequestURI();
-        String method = request.getMethod();
-
-        // Skip rate limiting for certain paths
-        if (shouldSkipRateLimiting(path)) {
+        // Resolve the route's policy; skipped routes have none
+        RateLimitPolicy policy = policyEngine.resolve(request.getMethod(), routePath(request));
+        if (policy == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        // Extract user ID from JWT token
-        Long userId = extractUserIdFromRequest(request);
-        
+        String jwt = extractJwt(request);
+
         // Extract IP address from request
         String ipAddress = extractIpAddress(request);
 
-        // Determine request type
-        RateLimitService.RequestType requestType = determineRequestType(path, method);
-
-        // Check rate limit
-        if (!rateLimitService.isAllowed(userId, ipAddress, requestType)) {
-            // Rate limit exceeded
-            long resetTime = rateLimitService.getResetTime(userId, ipAddress, requestType);
-            int limit = rateLimitService.getLimitForType(requestType);
-            
-            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setHeader("X-RateLimit-Limit", String.valueOf(limit));
-            response.setHeader("X-RateLimit-Remaining", "0");
-            response.setHeader("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + resetTime));
-            response.setHeader("Retry-After", String.valueOf(resetTime));
-            response.setContentType("application/json");
-            response.getWriter().write(String.format(
-                "{\"error\":\"Rate limit exceeded\",\"message\":\"Too many requests. Please try again in %d seconds.\"}",
-                resetTime
-            ));
+        // Clients still over their limit are rejected without parsing the token or calling Redis
+        String penaltyKey = penaltyBox.keyFor(policy, jwt, ipAddress);
+        RateLimitDecision boxed = penaltyBox.check(penaltyKey);
+        if (boxed != null) {
+            reject(response, boxed);
             return;
         }
 
-        // Add rate limit headers to response
-        long remaining = rateLimitService.getRemainingRequests(userId, ipAddress, requestType);
-        long resetTime = rateLimitService.getResetTime(userId, ipAddress, requestType);
-        int limit = rateLimitService.getLimitForType(requestType);
-        
-        response.setHeader("X-RateLimit-Limit", String.valueOf(limit));
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
-        response.setHeader("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + resetTime));
+        // Extract user ID from JWT token
+        Long userId = extractUserId(request, jwt);
+
+        // Check rate limit (counts the request and returns remaining and reset in one call)
+        RateLimitDecision decision = rateLimiter.tryAcquire(userId, ipAddress, policy);
 
+        if (!decision.allowed()) {
+            penaltyBox.block(penaltyKey, decision);
+            reject(response, decision);
+            return;
+        }
+
+        setRateLimitHeaders(response, decision);
         filterChain.doFilter(request, response);
     }
 
+    private void setRateLimitHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        response.setHeader("X-RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + decision.resetSeconds()));
+    }
+
     /**
-     * Determine if rate limiting should be skipped for this path.
+     * Writes the 429 response for a denied request.
      */
-    private boolean shouldSkipRateLimiting(String path) {
-        // Skip rate limiting for static resources and documentation
-        return path.startsWith("/v3/api-docs") ||
-               path.startsWith("/swagger-ui") ||
-               path.startsWith("/images/") ||
-               path.startsWith("/internal/") ||
-               path.startsWith("/api/internal/") ||
-               path.equals("/auth/logout") ||
-               path.equals("/auth/check-session");
+    private void reject(HttpServletResponse response, RateLimitDecision decision) throws IOException {
+        long resetTime = decision.resetSeconds();
+        setRateLimitHeaders(response, decision);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(resetTime));
+        response.setContentType("application/json");
+        response.getWriter().write(String.format(
+            "{\"error\":\"Rate limit exceeded\",\"message\":\"Too many requests. Please try again in %d seconds.\"}",
+            resetTime
+        ));
     }
 
     /**
-     * Extract user ID from JWT token in the request.
+     * Extract user ID from the JWT token of the request. The parsed claims are kept for {@link JwtAuthenticationFilter}.
      */
-    private Long extractUserIdFromRequest(HttpServletRequest request) {
-        String jwt = extractJwt(request);
-        
+    private Long extractUserId(HttpServletRequest request, String jwt) {
         if (jwt == null) {
             return null;
         }
 
         try {
-            return jwtService.extractUserId(jwt);
+            return jwtService.extractUserId(JwtClaimsHolder.resolve(request, jwt, jwtService));
         } catch (JwtException e) {
             // If token is invalid or expired, treat as unauthenticated
             logger.debug("Invalid JWT token in rate limiting filter: {}", e.getMessage());
@@ -131,6 +133,18 @@ public class RateLimitFilter extends OncePerRequestFilter {
         }
     }
 
+    /**
+     * The request path without the servlet context path, the form the rules and skipped routes are written in.
+     */
+    private String routePath(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (contextPath != null && !contextPath.isEmpty() && uri.startsWith(contextPath)) {
+            return uri.substring(contextPath.length());
+        }
+        return uri;
+    }
+
     /**
      * Extract IP address from the request, considering proxy headers.
      */
@@ -171,22 +185,4 @@ public class RateLimitFilter extends OncePerRequestFilter {
 
         return null;
     }
-
-    /**
-     * Determine the request type for rate limiting purposes.
-     */
-    private RateLimitService.RequestType determineRequestType(String path, String method) {
-        // Login endpoint has the most restrictive rate limit
-        if (path.equals("/auth/login") || path.equals("/api/auth/login")) {
-            return RateLimitService.RequestType.LOGIN;
-        }
-
-        // GET requests have higher limits
-        if (HttpMethod.GET.matches(method)) {
-            return RateLimitService.RequestType.GET;
-        }
-
-        // All other methods (POST, PUT, DELETE, etc.) have more restrictive limits
-        return RateLimitService.RequestType.OTHER;
-    }
 }
@@ -0,0 +1,111 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.model.RateLimitPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regras de rate limiting por rota ({@code rate-limit.rules[n].*}) e rotas isentas ({@code rate-limit.skip}).
+ * <p>
+ * Padrões usam segmentos separados por {@code /}: {@code *} casa exatamente um segmento e {@code **}
+ * (apenas no final) casa zero ou mais. Em caso de empate vence o padrão mais específico
+ * (literal, depois {@code *}, depois {@code **}). Rotas sem regra usam os limites padrão de GET/outros/login.
+ * Os caminhos são relativos ao context-path ({@code /users/query}, não {@code /api/users/query}).
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private List<String> skip = new ArrayList<>(List.of(
+            "/v3/api-docs/**",
+            "/v3/api-docs.yaml",
+            "/swagger-ui/**",
+            "/swagger-ui.html",
+            "/images/**",
+            "/internal/**",
+            "/auth/logout",
+            "/auth/check-session"
+    ));
+
+    private List<Rule> rules = new ArrayList<>();
+
+    public List<String> getSkip() {
+        return skip;
+    }
+
+    public void setSkip(List<String> skip) {
+        this.skip = skip;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public static class Rule {
+        private String name;
+        private String method = "*";
+        private List<String> patterns = new ArrayList<>();
+        private int requests;
+        private int windowSeconds = 60;
+        private RateLimitPolicy.Algorithm algorithm = RateLimitPolicy.Algorithm.FIXED_WINDOW;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public List<String> getPatterns() {
+            return patterns;
+        }
+
+        public void setPatterns(List<String> patterns) {
+            this.patterns = patterns;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public void setRequests(int requests) {
+            this.requests = requests;
+        }
+
+        public int getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        public RateLimitPolicy.Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(RateLimitPolicy.Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public RateLimitPolicy toPolicy() {
+            return new RateLimitPolicy(name, requests, windowSeconds, algorithm);
+        }
+    }
+}
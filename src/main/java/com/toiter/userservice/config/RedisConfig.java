@@ -15,6 +15,7 @@ import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -31,6 +32,7 @@ public class RedisConfig {
 
     /**
      * Configura um RedisTemplate para armazenar valores do tipo Long.
+     * Os valores são gravados em decimal ASCII (compatível com INCR); valores JSON antigos continuam legíveis.
      *
      * @param connectionFactory a fábrica de conexões Redis
      * @return um RedisTemplate configurado para chaves do tipo String e valores do tipo Long
@@ -40,12 +42,15 @@ public class RedisConfig {
         RedisTemplate<String, Long> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(new LongRedisSerializer(new GenericJackson2JsonRedisSerializer()));
         return template;
     }
 
     /**
      * Configura um RedisTemplate para armazenar valores do tipo UserPublicData.
+     * Os contadores (seguidores, seguindo, posts) ficam em um hash separado com campos e valores em texto,
+     * para que possam ser incrementados com HINCRBY sem reserializar o perfil. O perfil usa o codec binário
+     * versionado, com fallback para os valores JSON antigos.
      *
      * @param connectionFactory a fábrica de conexões Redis
      * @return um RedisTemplate configurado para chaves do tipo String e valores do tipo UserPublicData
@@ -55,12 +60,15 @@ public class RedisConfig {
         RedisTemplate<String, UserPublicData> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(new UserPublicDataRedisSerializer(new GenericJackson2JsonRedisSerializer()));
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(new StringRedisSerializer());
         return template;
     }
 
     /**
      * Configura um RedisTemplate para armazenar valores do tipo User (entidade completa).
+     * Usa o codec binário versionado, sem nomes de classe no payload; valores JSON antigos continuam legíveis.
      *
      * @param connectionFactory a fábrica de conexões Redis
      * @return um RedisTemplate configurado para chaves do tipo String e valores do tipo User
@@ -70,7 +78,14 @@ public class RedisConfig {
         RedisTemplate<String, User> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new UserRedisSerializer(legacyUserSerializer()));
+        return template;
+    }
 
+    /**
+     * Serializer JSON usado antes do codec binário, mantido apenas para ler entradas antigas durante a migração.
+     */
+    static GenericJackson2JsonRedisSerializer legacyUserSerializer() {
         // Configure ObjectMapper to support Java 8 date/time types and preserve type information
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -82,8 +97,20 @@ public class RedisConfig {
                 .build();
         objectMapper.activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.NON_FINAL);
 
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer(objectMapper));
-        return template;
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    /**
+     * Container de listeners pub/sub usado para propagar invalidações do cache local entre as instâncias.
+     *
+     * @param connectionFactory a fábrica de conexões Redis
+     * @return o container de listeners de mensagens Redis
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
     }
 
     @Bean
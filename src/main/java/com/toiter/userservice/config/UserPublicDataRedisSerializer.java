@@ -0,0 +1,50 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.model.UserPublicData;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Binary codec for the cached {@link UserPublicData} profile (keys {@code user:public:*}).
+ */
+public class UserPublicDataRedisSerializer extends VersionedBinaryRedisSerializer<UserPublicData> {
+    private static final int VERSION = 1;
+
+    public UserPublicDataRedisSerializer(RedisSerializer<?> legacySerializer) {
+        super(UserPublicData.class, VERSION, legacySerializer);
+    }
+
+    @Override
+    protected void write(UserPublicData data, Writer out) {
+        out.writeLong(data.getUserId());
+        out.writeString(data.getUsername());
+        out.writeString(data.getDisplayName());
+        out.writeString(data.getBio());
+        out.writeString(data.getProfileImageUrl());
+        out.writeString(data.getHeaderImageUrl());
+        out.writeInt(data.getFollowersCount());
+        out.writeInt(data.getFollowingCount());
+        out.writeBoolean(data.getFollowing());
+        out.writeBoolean(data.getIsFollowingMe());
+        out.writeInt(data.getPostsCount());
+    }
+
+    @Override
+    protected UserPublicData read(int version, Reader in) {
+        if (version != VERSION) {
+            throw unsupportedVersion(version);
+        }
+        return new UserPublicData(
+                in.readLong(),
+                in.readString(),
+                in.readString(),
+                in.readString(),
+                in.readString(),
+                in.readString(),
+                in.readInt(),
+                in.readInt(),
+                in.readBoolean(),
+                in.readBoolean(),
+                in.readInt()
+        );
+    }
+}
@@ -0,0 +1,46 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.entity.User;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Binary codec for the cached {@link User} entity (keys {@code user:id:*}).
+ */
+public class UserRedisSerializer extends VersionedBinaryRedisSerializer<User> {
+    private static final int VERSION = 1;
+
+    public UserRedisSerializer(RedisSerializer<?> legacySerializer) {
+        super(User.class, VERSION, legacySerializer);
+    }
+
+    @Override
+    protected void write(User user, Writer out) {
+        out.writeLong(user.getId());
+        out.writeString(user.getUsername());
+        out.writeString(user.getDisplayName());
+        out.writeString(user.getEmail());
+        out.writeString(user.getPassword());
+        out.writeString(user.getBio());
+        out.writeString(user.getProfileImageUrl());
+        out.writeString(user.getHeaderImageUrl());
+        out.writeDateTime(user.getCreationDate());
+    }
+
+    @Override
+    protected User read(int version, Reader in) {
+        if (version != VERSION) {
+            throw unsupportedVersion(version);
+        }
+        User user = new User();
+        user.setId(in.readLong());
+        user.setUsername(in.readString());
+        user.setDisplayName(in.readString());
+        user.setEmail(in.readString());
+        user.setPassword(in.readString());
+        user.setBio(in.readString());
+        user.setProfileImageUrl(in.readString());
+        user.setHeaderImageUrl(in.readString());
+        user.setCreationDate(in.readDateTime());
+        return user;
+    }
+}
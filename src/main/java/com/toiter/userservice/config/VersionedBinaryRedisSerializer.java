@@ -0,0 +1,207 @@
+package com.toiter.userservice.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Base for the compact binary Redis codecs.
+ * <p>
+ * Layout: {@code MAGIC, version, fields...}. Strings are a varint of {@code length + 1} (0 = null)
+ * followed by UTF-8 bytes; nullable numbers carry a presence byte followed by a zig-zag varint.
+ * Values that do not start with {@link #MAGIC} were written by the previous JSON serializer and are
+ * decoded with {@code legacySerializer}, so old entries keep working until they expire.
+ * <p>
+ * To change a layout, bump the version written by {@link #write} and keep reading the old versions in {@link #read}.
+ */
+public abstract class VersionedBinaryRedisSerializer<T> implements RedisSerializer<T> {
+    static final byte MAGIC = (byte) 0xC5;
+
+    private final Class<T> type;
+    private final byte version;
+    private final RedisSerializer<?> legacySerializer;
+
+    protected VersionedBinaryRedisSerializer(Class<T> type, int version, RedisSerializer<?> legacySerializer) {
+        this.type = type;
+        this.version = (byte) version;
+        this.legacySerializer = legacySerializer;
+    }
+
+    protected abstract void write(T value, Writer out);
+
+    protected abstract T read(int version, Reader in);
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        Writer out = new Writer();
+        out.writeByte(MAGIC);
+        out.writeByte(version);
+        write(value, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return decodeLegacy(bytes);
+        }
+        if (bytes.length < 2) {
+            throw new SerializationException("Truncated " + type.getSimpleName() + " payload");
+        }
+        try {
+            return read(bytes[1], new Reader(bytes, 2));
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated " + type.getSimpleName() + " payload", e);
+        }
+    }
+
+    private T decodeLegacy(byte[] bytes) {
+        Object value = legacySerializer.deserialize(bytes);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        throw new SerializationException("Legacy value is not a " + type.getSimpleName() + ": " + value.getClass().getName());
+    }
+
+    protected SerializationException unsupportedVersion(int version) {
+        return new SerializationException("Unsupported " + type.getSimpleName() + " codec version: " + version);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return type;
+    }
+
+    protected static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        void writeByte(int value) {
+            out.write(value);
+        }
+
+        void writeVarLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            while ((zigZag & ~0x7FL) != 0) {
+                out.write((int) ((zigZag & 0x7F) | 0x80));
+                zigZag >>>= 7;
+            }
+            out.write((int) zigZag);
+        }
+
+        public void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        public void writeLong(Long value) {
+            writeByte(value == null ? 0 : 1);
+            if (value != null) {
+                writeVarLong(value);
+            }
+        }
+
+        public void writeInt(Integer value) {
+            writeLong(value == null ? null : value.longValue());
+        }
+
+        public void writeBoolean(Boolean value) {
+            writeByte(value == null ? 0 : value ? 2 : 1);
+        }
+
+        public void writeDateTime(LocalDateTime value) {
+            writeByte(value == null ? 0 : 1);
+            if (value != null) {
+                writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(value.getNano());
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    protected static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long zigZag = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 63) {
+                    throw new SerializationException("Malformed varint");
+                }
+                b = readByte();
+                zigZag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        public String readString() {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            int size = Math.toIntExact(length - 1);
+            if (size > bytes.length - position) {
+                throw new SerializationException("Truncated string");
+            }
+            String value = new String(bytes, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+
+        public Long readLong() {
+            return readByte() == 0 ? null : readVarLong();
+        }
+
+        public Integer readInt() {
+            Long value = readLong();
+            return value == null ? null : Math.toIntExact(value);
+        }
+
+        public Boolean readBoolean() {
+            return switch (readByte()) {
+                case 0 -> null;
+                case 1 -> Boolean.FALSE;
+                default -> Boolean.TRUE;
+            };
+        }
+
+        public LocalDateTime readDateTime() {
+            if (readByte() == 0) {
+                return null;
+            }
+            long epochSecond = readVarLong();
+            int nano = (int) readVarLong();
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        }
+    }
+}
@@ -4,12 +4,17 @@ import com.toiter.userservice.entity.Chat;
 import com.toiter.userservice.model.ChatCreatedEvent;
 import com.toiter.userservice.model.MessageData;
 import com.toiter.userservice.model.MessageSentEvent;
+import com.toiter.userservice.service.DeadLetterService;
 import com.toiter.userservice.service.UserService;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -17,13 +22,25 @@ public class ChatEventConsumer {
     private static final Logger logger = LoggerFactory.getLogger(ChatEventConsumer.class);
     private final SimpMessagingTemplate messagingTemplate;
     private final UserService userService;
+    private final DeadLetterService deadLetterService;
 
-    public ChatEventConsumer(SimpMessagingTemplate messagingTemplate, UserService userService) {
+    public ChatEventConsumer(SimpMessagingTemplate messagingTemplate, UserService userService,
+                             DeadLetterService deadLetterService) {
         this.messagingTemplate = messagingTemplate;
         this.userService = userService;
+        this.deadLetterService = deadLetterService;
     }
 
-    @KafkaListener(topics = "chat-events-topic", groupId = "chat-event-consumer")
+    @RetryableTopic(attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.initial-delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:4.0}",
+                    maxDelayExpression = "${kafka.retry.max-delay-ms:60000}"),
+            kafkaTemplate = "retryKafkaTemplate",
+            dltTopicSuffix = DeadLetterService.DLT_SUFFIX,
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            numPartitions = "${kafka.topics.chat-events.partitions:6}")
+    @KafkaListener(topics = "chat-events-topic", groupId = "chat-event-consumer",
+            concurrency = "${kafka.topics.chat-events.concurrency:6}")
     public void consumeEvent(ConsumerRecord<String, Object> record) {
         Object event = record.value();
 
@@ -58,4 +75,9 @@ public class ChatEventConsumer {
         messagingTemplate.convertAndSendToUser(recipientId.toString(), destination, messageData);
         messagingTemplate.convertAndSendToUser(senderId.toString(), destination, messageData);
     }
-}
\ No newline at end of file
+
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, Object> record) {
+        deadLetterService.recordDeadLetter(record);
+    }
+}
@@ -2,74 +2,94 @@ package com.toiter.userservice.consumer;
 
 import com.toiter.userservice.model.FollowCreatedEvent;
 import com.toiter.userservice.model.FollowDeletedEvent;
-import com.toiter.userservice.model.UserPublicData;
 import com.toiter.userservice.service.CacheService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumes follow events in batches. The follower and following deltas of every event in a polled batch are
+ * merged per user, so each affected user gets a single counter update per batch however many events it
+ * appears in. Offsets are committed by the container only after the whole batch has been applied.
+ * <p>
+ * A batch that fails is retried with backoff and then dead-lettered. A record that cannot be deserialized
+ * goes to the dead-letter topic straight away; the records before it are applied and committed.
+ */
 @Service
 public class FollowEventConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(FollowEventConsumer.class);
 
     private final CacheService cacheService;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary coalescingRatio;
 
-    public FollowEventConsumer(CacheService cacheService) {
+    public FollowEventConsumer(CacheService cacheService, MeterRegistry meterRegistry) {
         this.cacheService = cacheService;
+        this.batchSize = DistributionSummary.builder("follow.events.batch.size")
+                .description("Follow events per polled batch")
+                .register(meterRegistry);
+        this.coalescingRatio = DistributionSummary.builder("follow.events.batch.coalescing.ratio")
+                .description("Per-user counter deltas in a batch divided by users written; 1 means nothing was merged")
+                .register(meterRegistry);
     }
 
-    @KafkaListener(topics = "follow-events-topic", groupId = "follow-event-consumers")
-    public void consumeFollowEvent(ConsumerRecord<String, Object> record) {
-        Object event = record.value();
-        logger.debug("Received follow event: {}", event);
-        switch (event) {
-            case FollowCreatedEvent followCreatedEvent -> consumeFollowCreatedEvent(followCreatedEvent);
-            case FollowDeletedEvent followDeletedEvent -> consumeFollowDeletedEvent(followDeletedEvent);
-            default -> logger.error("Unknown event type: {}", event.getClass().getName());
+    @KafkaListener(topics = "follow-events-topic", groupId = "follow-event-consumers",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            concurrency = "${kafka.topics.follow-events.concurrency:6}",
+            properties = "max.poll.records=${kafka.follow-events.max-poll-records:500}")
+    public void consumeFollowEvents(List<ConsumerRecord<String, Object>> records) {
+        Map<Long, Map<CacheService.UserCounter, Integer>> deltas = new HashMap<>();
+        int applied = 0;
+        int poisonIndex = -1;
+        scan:
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, Object> record = records.get(i);
+            Object event = record.value();
+            logger.debug("Received follow event: {}", event);
+            switch (event) {
+                case FollowCreatedEvent created -> addDeltas(deltas, created.getUserId(), created.getFollowerId(), 1);
+                case FollowDeletedEvent deleted -> addDeltas(deltas, deleted.getUserId(), deleted.getFollowerId(), -1);
+                case null -> {
+                    // Could not be deserialized: apply what came before it and let the error handler dead-letter it
+                    poisonIndex = i;
+                    break scan;
+                }
+                default -> {
+                    logger.error("Unknown event type: {}", event.getClass().getName());
+                    continue;
+                }
+            }
+            applied++;
         }
-    }
-
-    private void consumeFollowCreatedEvent(FollowCreatedEvent event) {
-        Long userId = event.getUserId();
-        Long followerId = event.getFollowerId();
-        logger.info("Processing Follow Created Event: userId={} followed by followerId={}", userId, followerId);
-
-        processFollowEvent(userId, followerId, 1, "Follow Created");
-    }
-
-    private void consumeFollowDeletedEvent(FollowDeletedEvent event) {
-        Long userId = event.getUserId();
-        Long followerId = event.getFollowerId();
-        logger.info("Processing Follow Deleted Event: userId={} unfollowed by followerId={}", userId, followerId);
 
-        processFollowEvent(userId, followerId, -1, "Follow Deleted");
-    }
-
-    private void processFollowEvent(Long userId, Long followerId, int delta, String eventType) {
-        logger.info("Processing {} for user ID: {} and follower ID: {}", eventType, userId, followerId);
-
-        updateUserCount(userId, delta, false);
-        updateUserCount(followerId, delta, true);
+        batchSize.record(records.size());
+        if (!deltas.isEmpty()) {
+            cacheService.incrementUserCounts(deltas);
+            // Each event carries two deltas (followers of one user, following of another)
+            coalescingRatio.record(2.0 * applied / deltas.size());
+            logger.info("Applied {} follow events as counter updates for {} users", applied, deltas.size());
+        }
+        if (poisonIndex >= 0) {
+            throw new BatchListenerFailedException("Unreadable follow event", poisonIndex);
+        }
     }
 
-    private void updateUserCount(Long userId, int delta, boolean isFollowing) {
-        UserPublicData data = cacheService.getUserPublicData(userId);
-        if (data != null) {
-            if (isFollowing) {
-                int newFollowingCount = Math.max(0, data.getFollowingCount() + delta);
-                data.setFollowingCount(newFollowingCount);
-                logger.debug("Updated following count for user ID: {}. New count: {}", userId, newFollowingCount);
-            } else {
-                int newFollowerCount = Math.max(0, data.getFollowersCount() + delta);
-                data.setFollowersCount(newFollowerCount);
-                logger.debug("Updated followers count for user ID: {}. New count: {}", userId, newFollowerCount);
-            }
-            cacheService.setUserPublicData(userId, data);
-        } else {
-            logger.debug("User public data not in cache for ID: {}, skipping update", userId);
-        }
+    private static void addDeltas(Map<Long, Map<CacheService.UserCounter, Integer>> deltas,
+                                  Long userId, Long followerId, int delta) {
+        deltas.computeIfAbsent(userId, id -> new EnumMap<>(CacheService.UserCounter.class))
+                .merge(CacheService.UserCounter.FOLLOWERS, delta, Integer::sum);
+        deltas.computeIfAbsent(followerId, id -> new EnumMap<>(CacheService.UserCounter.class))
+                .merge(CacheService.UserCounter.FOLLOWING, delta, Integer::sum);
     }
 }
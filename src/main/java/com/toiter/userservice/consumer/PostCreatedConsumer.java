@@ -1,37 +1,68 @@
 package com.toiter.userservice.consumer;
 
+import com.toiter.postservice.model.Post;
 import com.toiter.postservice.model.PostCreatedEvent;
 import com.toiter.postservice.model.PostDeletedEvent;
 import com.toiter.postservice.model.PostEvent;
-import com.toiter.userservice.model.UserPublicData;
 import com.toiter.userservice.service.CacheService;
+import com.toiter.userservice.service.DeadLetterService;
+import com.toiter.userservice.service.UserStatsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
 @Service
 public class PostCreatedConsumer {
     private static final Logger logger = LoggerFactory.getLogger(PostCreatedConsumer.class);
     private final CacheService cacheService;
+    private final UserStatsService userStatsService;
+    private final DeadLetterService deadLetterService;
 
-    public PostCreatedConsumer(CacheService cacheService) {
+    public PostCreatedConsumer(CacheService cacheService, UserStatsService userStatsService,
+                               DeadLetterService deadLetterService) {
         this.cacheService = cacheService;
+        this.userStatsService = userStatsService;
+        this.deadLetterService = deadLetterService;
     }
 
-    @KafkaListener(topics = "post-created-topic", groupId = "post-event-consumer")
+    @RetryableTopic(attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.initial-delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:4.0}",
+                    maxDelayExpression = "${kafka.retry.max-delay-ms:60000}"),
+            kafkaTemplate = "retryKafkaTemplate",
+            dltTopicSuffix = DeadLetterService.DLT_SUFFIX,
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE)
+    @KafkaListener(topics = "post-created-topic", groupId = "post-event-consumer",
+            concurrency = "${kafka.topics.post-created.concurrency:1}")
     public void consumePostCreatedEvent(PostEvent event) {
         processPostEvent(event);
     }
 
     private void processPostEvent(PostEvent event) {
-        Long userId = event.getPost().userId();
-        UserPublicData data = cacheService.getUserPublicData(userId);
-        if (data != null) {
-            int delta = (event instanceof PostCreatedEvent) ? 1 : (event instanceof PostDeletedEvent) ? -1 : 0;
-            data.setPostsCount(Math.max(0, data.getPostsCount() + delta));
-            cacheService.setUserPublicData(userId, data);
-            logger.info("Updated posts count for user ID: {} by {}", userId, delta);
+        if (!(event instanceof PostCreatedEvent) && !(event instanceof PostDeletedEvent)) {
+            return;
         }
+        Post post = event.getPost();
+        int delta = userStatsService.recordPost(post.id(), post.userId(), post.createdAt(), post.deletedAt(),
+                event instanceof PostCreatedEvent);
+        if (delta == 0) {
+            logger.debug("Ignored duplicate post event for post ID: {}", post.id());
+            return;
+        }
+        Long postsCount = cacheService.incrementUserCount(post.userId(), CacheService.UserCounter.POSTS, delta);
+        if (postsCount != null) {
+            logger.info("Updated posts count for user ID: {} by {}", post.userId(), delta);
+        }
+    }
+
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, Object> record) {
+        deadLetterService.recordDeadLetter(record);
     }
 }
@@ -3,11 +3,19 @@ import com.toiter.userservice.entity.User;
 import com.toiter.userservice.model.UserPublicData;
 import com.toiter.userservice.model.UserUpdatedEvent;
 import com.toiter.userservice.service.CacheService;
+import com.toiter.userservice.service.DeadLetterService;
 import com.toiter.userservice.service.UserService;
 import com.toiter.userservice.service.ImageService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -19,12 +27,15 @@ public class UserUpdatedConsumer {
     private final CacheService cacheService;
     private final UserService userService;
     private final ImageService imageService;
+    private final DeadLetterService deadLetterService;
     private static final Logger logger = LoggerFactory.getLogger(UserUpdatedConsumer.class);
 
-    public UserUpdatedConsumer(CacheService cacheService, UserService userService, ImageService imageService) {
+    public UserUpdatedConsumer(CacheService cacheService, UserService userService, ImageService imageService,
+                               DeadLetterService deadLetterService) {
         this.cacheService = cacheService;
         this.userService = userService;
         this.imageService = imageService;
+        this.deadLetterService = deadLetterService;
     }
 
     private void hydrateImage(Long userId, String key, boolean force, Consumer<String> setter, String fieldName) {
@@ -47,10 +58,29 @@ public class UserUpdatedConsumer {
         }
     }
 
-    @KafkaListener(topics = "user-updated-topic", groupId = "user-updated-consumers")
-    public void consumeUserUpdatedEvent(UserUpdatedEvent event) {
+    @RetryableTopic(attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.initial-delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:4.0}",
+                    maxDelayExpression = "${kafka.retry.max-delay-ms:60000}"),
+            kafkaTemplate = "retryKafkaTemplate",
+            dltTopicSuffix = DeadLetterService.DLT_SUFFIX,
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            numPartitions = "${kafka.topics.user-updated.partitions:6}")
+    @KafkaListener(topics = "user-updated-topic", groupId = "user-updated-consumers",
+            concurrency = "${kafka.topics.user-updated.concurrency:6}")
+    public void consumeUserUpdatedEvent(UserUpdatedEvent event,
+                                        @Header(name = RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS, required = false)
+                                        byte[] retryAttempts) {
         User updatedUser = event.getUser();
         Long userId = updatedUser.getId();
+        if (retryAttempts != null) {
+            // A retried event may be older than one the main topic has already cached; writing it back would
+            // resurrect a stale profile, so drop the entries and let the next read load the current row.
+            cacheService.evictUser(userId, updatedUser.getUsername());
+            logger.info("Evicted cache for retried update of user ID: {}", userId);
+            return;
+        }
+
         List<String> changed = event.getChangedFields();
         boolean forceProfile = changed != null && changed.contains("profileImageUrl");
         boolean forceHeader = changed != null && changed.contains("headerImageUrl");
@@ -66,4 +96,9 @@ public class UserUpdatedConsumer {
 
         logger.info("Updated cache for user ID: {}, username: {}", userId, updatedUser.getUsername());
     }
+
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, Object> record) {
+        deadLetterService.recordDeadLetter(record);
+    }
 }
@@ -2,6 +2,7 @@ package com.toiter.userservice.controller;
 
 import com.toiter.userservice.model.LoginRequest;
 import com.toiter.userservice.model.LoginResponse;
+import com.toiter.userservice.model.RefreshSession;
 import com.toiter.userservice.model.SessionResponse;
 import com.toiter.userservice.model.TokenResponse;
 import com.toiter.userservice.model.UserRequest;
@@ -22,6 +23,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
@@ -91,7 +94,15 @@ public class AuthController {
     @PostMapping("/refresh")
     public ResponseEntity<LoginResponse> refresh(HttpServletRequest request, HttpServletResponse response) {
         TokenResponse newTokenResponse = authService.refreshTokens(request);
-        
+
+        // O refresh token é rotacionado a cada uso; o anterior deixa de valer
+        Cookie refreshCookie = new Cookie("refresh_token", newTokenResponse.getRefreshToken());
+        refreshCookie.setHttpOnly(true);
+        refreshCookie.setSecure(true);
+        refreshCookie.setPath("/auth/refresh");
+        refreshCookie.setMaxAge(JWT_REFRESH_TOKEN_EXPIRATION);
+        response.addCookie(refreshCookie);
+
         // Atualizar o cookie accessToken com o novo token
         Cookie accessCookie = new Cookie("accessToken", newTokenResponse.getAccessToken());
         accessCookie.setHttpOnly(true);
@@ -104,8 +115,36 @@ public class AuthController {
         return ResponseEntity.ok(new LoginResponse(newTokenResponse.getExpiresIn(), "Token atualizado com sucesso"));
     }
 
+    @Operation(summary = "Logout do usuário", description = "Revoga o token de acesso atual e remove os cookies de sessão")
     @PostMapping("/logout")
-    public ResponseEntity<String> logout(HttpServletResponse response) {
+    public ResponseEntity<String> logout(HttpServletRequest request, HttpServletResponse response) {
+        authService.logout(extractAccessToken(request));
+        clearSessionCookies(response);
+        return ResponseEntity.ok("Logout bem-sucedido");
+    }
+
+    @Operation(summary = "Logout de todas as sessões",
+            description = "Revoga todos os tokens de acesso e de atualização emitidos para o usuário até agora")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Todas as sessões encerradas"),
+            @ApiResponse(responseCode = "401", description = "Token inválido ou expirado")
+    })
+    @PostMapping("/logout-all")
+    public ResponseEntity<String> logoutAll(HttpServletRequest request, HttpServletResponse response) {
+        String token = extractAccessToken(request);
+        if (token == null) {
+            return ResponseEntity.status(401).body("Token inválido ou expirado");
+        }
+        try {
+            authService.logoutAll(token);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(401).body("Token inválido ou expirado");
+        }
+        clearSessionCookies(response);
+        return ResponseEntity.ok("Todas as sessões foram encerradas");
+    }
+
+    private void clearSessionCookies(HttpServletResponse response) {
         Cookie refreshCookie = new Cookie("refresh_token", null);
         refreshCookie.setHttpOnly(true);
         refreshCookie.setSecure(true);
@@ -119,8 +158,6 @@ public class AuthController {
         accessCookie.setPath("/");
         accessCookie.setMaxAge(0);
         response.addCookie(accessCookie);
-
-        return ResponseEntity.ok("Logout bem-sucedido");
     }
 
     @Operation(summary = "Verificar a validade da sessão do usuário",
@@ -131,6 +168,64 @@ public class AuthController {
     })
     @GetMapping("/check-session")
     public ResponseEntity<SessionResponse> checkSession(HttpServletRequest request) {
+        String token = extractAccessToken(request);
+
+        if (token == null) {
+            return ResponseEntity.status(401).body(new SessionResponse(false, 0));
+        }
+
+        // Responde pelo cache de claims e de sessões, sem ir ao Redis a cada chamada
+        if (!authService.isSessionActive(token)) {
+            return ResponseEntity.status(401).body(new SessionResponse(false, 0));
+        }
+
+        long expiresIn = jwtService.getTokenExpiration(token).getTime() / 1000;
+
+        return ResponseEntity.ok(new SessionResponse(true, expiresIn));
+    }
+
+    @Operation(summary = "Listar sessões", description = "Lista as sessões (famílias de refresh token) ativas do usuário")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Sessões ativas"),
+            @ApiResponse(responseCode = "401", description = "Token inválido ou expirado")
+    })
+    @GetMapping("/sessions")
+    public ResponseEntity<List<RefreshSession>> listSessions(HttpServletRequest request) {
+        String token = extractAccessToken(request);
+        if (token == null) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            return ResponseEntity.ok(authService.listSessions(token));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(401).build();
+        }
+    }
+
+    @Operation(summary = "Encerrar sessão", description = "Encerra uma sessão do usuário; o refresh token dela deixa de funcionar")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Sessão encerrada"),
+            @ApiResponse(responseCode = "401", description = "Token inválido ou expirado"),
+            @ApiResponse(responseCode = "404", description = "Sessão não encontrada")
+    })
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<Void> endSession(@PathVariable String sessionId, HttpServletRequest request) {
+        String token = extractAccessToken(request);
+        if (token == null) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            authService.endSession(token, sessionId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * As rotas /auth/** não passam pela autenticação JWT, então o token de acesso é lido aqui.
+     */
+    private String extractAccessToken(HttpServletRequest request) {
         // Extrair token do cookie
         String token = null;
         Cookie[] cookies = request.getCookies();
@@ -150,18 +245,7 @@ public class AuthController {
                 token = authorizationHeader.substring(7);
             }
         }
-
-        if (token == null) {
-            return ResponseEntity.status(401).body(new SessionResponse(false, 0));
-        }
-
-        if (!jwtService.isTokenValid(token)) {
-            return ResponseEntity.status(401).body(new SessionResponse(false, 0));
-        }
-
-        long expiresIn = jwtService.getTokenExpiration(token).getTime() / 1000;
-
-        return ResponseEntity.ok(new SessionResponse(true, expiresIn));
+        return token;
     }
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.toiter.userservice.controller;
 
 import com.toiter.userservice.entity.Follow;
+import com.toiter.userservice.model.CursorPage;
 import com.toiter.userservice.model.FollowData;
 import com.toiter.userservice.service.FollowService;
 import com.toiter.userservice.service.UserService;
@@ -15,8 +16,6 @@ import jakarta.validation.constraints.NotNull;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.core.Authentication;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/follows")
 @Tag(name = "Follow Controller", description = "APIs relacionadas as Interações de Follow/Unfollow entre usuarios")
@@ -35,33 +34,43 @@ public class FollowController {
     @GetMapping("/{username}/followers")
     @Operation(
             summary = "Obter seguidores de um usuário",
-            description = "Retorna a lista de seguidores de um usuário específico",
+            description = "Retorna uma página de seguidores de um usuário, do mais recente para o mais antigo. " +
+                    "Use o nextCursor da resposta para obter a próxima página (null na última).",
             security = {@SecurityRequirement(name = "bearerAuth")},
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Lista de seguidores retornada com sucesso",
-                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = FollowData.class))),
+                    @ApiResponse(responseCode = "200", description = "Página de seguidores retornada com sucesso",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPage.class))),
+                    @ApiResponse(responseCode = "400", description = "Cursor ou tamanho de página inválido"),
                     @ApiResponse(responseCode = "404", description = "Usuário não encontrado")
             }
     )
-    public List<FollowData> getFollowers(@PathVariable @NotNull String username) {
-        Long userId = userService.getUserByUsername(username).getId();
-        return followService.getFollowersData(userId);
+    public CursorPage<FollowData> getFollowers(
+            @PathVariable @NotNull String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = userService.getUserIdByUsername(username);
+        return followService.getFollowersData(userId, cursor, size);
     }
 
     @GetMapping("/{username}/followings")
     @Operation(
             summary = "Obter seguidos de um usuário",
-            description = "Retorna a lista de usuários que um usuário segue",
+            description = "Retorna uma página dos usuários que um usuário segue, do mais recente para o mais antigo. " +
+                    "Use o nextCursor da resposta para obter a próxima página (null na última).",
             security = {@SecurityRequirement(name = "bearerAuth")},
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Lista de seguidos retornada com sucesso",
-                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = FollowData.class))),
+                    @ApiResponse(responseCode = "200", description = "Página de seguidos retornada com sucesso",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorPage.class))),
+                    @ApiResponse(responseCode = "400", description = "Cursor ou tamanho de página inválido"),
                     @ApiResponse(responseCode = "404", description = "Usuário não encontrado")
             }
     )
-    public List<FollowData> getFollowings(@PathVariable @NotNull String username) {
-        Long userId = userService.getUserByUsername(username).getId();
-        return followService.getFollowingsData(userId);
+    public CursorPage<FollowData> getFollowings(
+            @PathVariable @NotNull String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = userService.getUserIdByUsername(username);
+        return followService.getFollowingsData(userId, cursor, size);
     }
 
     @PostMapping("/{username}/follow")
@@ -0,0 +1,29 @@
+package com.toiter.userservice.controller;
+
+import com.toiter.userservice.service.DeadLetterService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/dead-letters")
+public class InternalDeadLetterController {
+    private static final int MAX_REPLAY_SIZE = 10_000;
+    private final DeadLetterService deadLetterService;
+
+    public InternalDeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    @PostMapping("/{topic}/replay")
+    public ResponseEntity<Map<String, Integer>> replay(
+            @PathVariable String topic,
+            @RequestParam(defaultValue = "1000") int max) {
+        if (max < 1 || max > MAX_REPLAY_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        int replayed = deadLetterService.replay(topic, max);
+        return ResponseEntity.ok(Map.of("replayed", replayed));
+    }
+}
@@ -0,0 +1,29 @@
+package com.toiter.userservice.controller;
+
+import com.toiter.userservice.model.SocialCounts;
+import com.toiter.userservice.service.SocialCountsStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Serves this instance's part of the social counts store to the instances that route lookups here.
+ */
+@RestController
+@RequestMapping("/internal/users")
+@ConditionalOnProperty(name = "stats.streams.enabled", havingValue = "true")
+public class InternalSocialCountsController {
+    private final SocialCountsStore socialCountsStore;
+
+    public InternalSocialCountsController(SocialCountsStore socialCountsStore) {
+        this.socialCountsStore = socialCountsStore;
+    }
+
+    @GetMapping("/{userId}/social-counts")
+    public ResponseEntity<SocialCounts> getSocialCounts(
+            @PathVariable Long userId) {
+        return socialCountsStore.findLocal(userId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -9,9 +9,13 @@ import com.toiter.userservice.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/internal/users")
 public class InternalUserController {
+    private static final int MAX_BATCH_SIZE = 1000;
     private final UserService userService;
 
     public InternalUserController(UserService userService) {
@@ -40,6 +44,15 @@ public class InternalUserController {
         return ResponseEntity.ok(userId);
     }
 
+    @PostMapping("/ids")
+    public ResponseEntity<Map<String, Long>> getUserIds(
+            @RequestBody List<String> usernames) {
+        if (usernames.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getUserIdsByUsernames(usernames));
+    }
+
     @GetMapping("/{userId}/user")
     public ResponseEntity<UserResponse> getUserById(
             @PathVariable Long userId) {
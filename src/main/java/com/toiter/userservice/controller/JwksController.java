@@ -0,0 +1,40 @@
+package com.toiter.userservice.controller;
+
+import com.toiter.userservice.service.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+public class JwksController {
+    private final JwtKeyRing keyRing;
+    private final Duration maxAge;
+    private final String etag;
+
+    public JwksController(JwtKeyRing keyRing, @Value("${jwt.jwks.max-age-seconds:300}") long maxAgeSeconds) {
+        this.keyRing = keyRing;
+        this.maxAge = Duration.ofSeconds(maxAgeSeconds);
+        this.etag = "\"" + Integer.toHexString(keyRing.getJwks().hashCode()) + "\"";
+    }
+
+    @Operation(summary = "Chaves públicas de assinatura (JWKS)",
+            description = "Chaves públicas ES256 usadas para assinar os tokens, para validação local por outros serviços")
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks(WebRequest request) {
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(maxAge).cachePublic())
+                .eTag(etag)
+                .body(keyRing.getJwks());
+    }
+}
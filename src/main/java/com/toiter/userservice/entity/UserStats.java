@@ -0,0 +1,98 @@
+package com.toiter.userservice.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One shard of a user's denormalized counters. A user's count is the sum over all of its shards;
+ * spreading increments over several rows keeps popular accounts from serializing on one row lock.
+ */
+@Entity
+@Table(name = "user_stats", schema = "usr")
+@IdClass(UserStats.Key.class)
+public class UserStats {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "shard", nullable = false)
+    private Short shard;
+
+    @Column(name = "followers_count", nullable = false)
+    private long followersCount;
+
+    @Column(name = "following_count", nullable = false)
+    private long followingCount;
+
+    @Column(name = "posts_count", nullable = false)
+    private long postsCount;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Short getShard() {
+        return shard;
+    }
+
+    public void setShard(Short shard) {
+        this.shard = shard;
+    }
+
+    public long getFollowersCount() {
+        return followersCount;
+    }
+
+    public void setFollowersCount(long followersCount) {
+        this.followersCount = followersCount;
+    }
+
+    public long getFollowingCount() {
+        return followingCount;
+    }
+
+    public void setFollowingCount(long followingCount) {
+        this.followingCount = followingCount;
+    }
+
+    public long getPostsCount() {
+        return postsCount;
+    }
+
+    public void setPostsCount(long postsCount) {
+        this.postsCount = postsCount;
+    }
+
+    public static class Key implements Serializable {
+        private Long userId;
+        private Short shard;
+
+        public Key() {
+        }
+
+        public Key(Long userId, Short shard) {
+            this.userId = userId;
+            this.shard = shard;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(userId, key.userId) && Objects.equals(shard, key.shard);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, shard);
+        }
+    }
+}
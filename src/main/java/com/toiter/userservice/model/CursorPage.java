@@ -0,0 +1,12 @@
+package com.toiter.userservice.model;
+
+import java.util.List;
+
+/**
+ * A page of a keyset-paginated list. {@code nextCursor} is opaque to clients and is
+ * {@code null} on the last page.
+ */
+public record CursorPage<T>(
+        List<T> content,
+        String nextCursor
+) {}
@@ -0,0 +1,41 @@
+package com.toiter.userservice.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a follower/following page: {@code (followDate, followId)}.
+ * Encoded as URL-safe Base64 so clients treat it as an opaque token.
+ */
+public record FollowCursor(
+        LocalDateTime followDate,
+        Long followId
+) {
+    private static final String SEPARATOR = "|";
+
+    public static FollowCursor of(FollowData last) {
+        return new FollowCursor(last.getFollowDate(), last.getFollowId());
+    }
+
+    public String encode() {
+        String raw = followDate + SEPARATOR + followId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FollowCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new FollowCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
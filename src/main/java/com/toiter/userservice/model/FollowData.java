@@ -1,8 +1,14 @@
 package com.toiter.userservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 
 public class FollowData {
+    @JsonIgnore
+    private Long followId;
+    @JsonIgnore
+    private Long userId;
     private String username;
     private String displayName;
     private String profileImageUrl;
@@ -18,6 +24,16 @@ public class FollowData {
         this.profileImageUrl = profileImageUrl;
     }
 
+    public FollowData(Long userId, String username, String displayName, LocalDateTime followDate, String profileImageUrl) {
+        this(username, displayName, followDate, profileImageUrl);
+        this.userId = userId;
+    }
+
+    public FollowData(Long followId, Long userId, String username, String displayName, LocalDateTime followDate, String profileImageUrl) {
+        this(userId, username, displayName, followDate, profileImageUrl);
+        this.followId = followId;
+    }
+
     // Overloads to match potential primitive/wrapper int cases from JPQL CASE
     public FollowData(String username, String displayName, LocalDateTime followDate, Number profileImageUrl) {
         this.username = username;
@@ -40,6 +56,22 @@ public class FollowData {
         this.profileImageUrl = String.valueOf(profileImageUrl);
     }
 
+    public Long getFollowId() {
+        return followId;
+    }
+
+    public void setFollowId(Long followId) {
+        this.followId = followId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
     public String getUsername() {
         return username;
     }
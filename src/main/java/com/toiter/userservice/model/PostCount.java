@@ -0,0 +1,10 @@
+package com.toiter.userservice.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's post count as reported by post-service, with the instant (on post-service's clock) it was counted at,
+ * or {@code null} if post-service did not report one.
+ */
+public record PostCount(int count, LocalDateTime countedAt) {
+}
@@ -0,0 +1,49 @@
+package com.toiter.userservice.model;
+
+public class PostCountChangedEvent {
+    private Long userId;
+    private Long postId;
+    private int delta;
+
+    public PostCountChangedEvent() {
+    }
+
+    public PostCountChangedEvent(Long userId, Long postId, int delta) {
+        this.userId = userId;
+        this.postId = postId;
+        this.delta = delta;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public void setPostId(Long postId) {
+        this.postId = postId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+
+    @Override
+    public String toString() {
+        return "PostCountChangedEvent{" +
+                "userId=" + userId +
+                ", postId=" + postId +
+                ", delta=" + delta +
+                '}';
+    }
+}
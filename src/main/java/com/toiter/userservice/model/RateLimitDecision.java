@@ -0,0 +1,12 @@
+package com.toiter.userservice.model;
+
+/**
+ * Outcome of one rate-limit check, with everything needed for the {@code X-RateLimit-*} headers.
+ *
+ * @param allowed      whether the request may proceed
+ * @param limit        requests allowed per window
+ * @param remaining    requests left in the current window
+ * @param resetSeconds seconds until the current window ends
+ */
+public record RateLimitDecision(boolean allowed, int limit, long remaining, long resetSeconds) {
+}
@@ -0,0 +1,21 @@
+package com.toiter.userservice.model;
+
+/**
+ * Limit applied to one group of routes.
+ *
+ * @param name          identifies the counter; requests of the same caller under the same policy share it
+ * @param limit         requests allowed per window
+ * @param windowSeconds window length (for GCRA, the period over which {@code limit} requests are spread)
+ * @param algorithm     how the window is enforced
+ */
+public record RateLimitPolicy(String name, int limit, int windowSeconds, Algorithm algorithm) {
+
+    public enum Algorithm {
+        /** Counter reset at the end of each window; cheapest, allows bursts at window edges. */
+        FIXED_WINDOW,
+        /** Timestamps of the requests in the last window; exact, memory grows with the limit. */
+        SLIDING_LOG,
+        /** Generic cell rate algorithm: one timestamp per key, spreads requests evenly over the window. */
+        GCRA
+    }
+}
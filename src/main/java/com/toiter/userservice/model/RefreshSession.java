@@ -0,0 +1,9 @@
+package com.toiter.userservice.model;
+
+import java.time.Instant;
+
+/**
+ * A login session: one refresh-token family, identified by the {@code sid} claim of its tokens.
+ */
+public record RefreshSession(String id, Instant createdAt, Instant lastUsedAt) {
+}
@@ -0,0 +1,29 @@
+package com.toiter.userservice.model;
+
+/**
+ * Followers, following and posts of one user, as folded by the social counts stream. Also used for the
+ * per-event deltas that are summed into it.
+ */
+public record SocialCounts(long followersCount, long followingCount, long postsCount) implements UserCounts {
+
+    public SocialCounts plus(SocialCounts other) {
+        return new SocialCounts(followersCount + other.followersCount,
+                followingCount + other.followingCount,
+                postsCount + other.postsCount);
+    }
+
+    @Override
+    public long getFollowersCount() {
+        return followersCount;
+    }
+
+    @Override
+    public long getFollowingCount() {
+        return followingCount;
+    }
+
+    @Override
+    public long getPostsCount() {
+        return postsCount;
+    }
+}
@@ -0,0 +1,7 @@
+package com.toiter.userservice.model;
+
+public interface UserCounts {
+    long getFollowersCount();
+    long getFollowingCount();
+    long getPostsCount();
+}
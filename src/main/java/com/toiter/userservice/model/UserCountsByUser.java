@@ -0,0 +1,5 @@
+package com.toiter.userservice.model;
+
+public interface UserCountsByUser extends UserCounts {
+    Long getUserId();
+}
@@ -0,0 +1,6 @@
+package com.toiter.userservice.model;
+
+public interface UserIdentityProjection {
+    Long getId();
+    String getUsername();
+}
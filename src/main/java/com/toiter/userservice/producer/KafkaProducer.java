@@ -1,53 +1,80 @@
 package com.toiter.userservice.producer;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toiter.userservice.entity.OutboxEvent;
 import com.toiter.userservice.model.ChatCreatedEvent;
 import com.toiter.userservice.model.FollowCreatedEvent;
 import com.toiter.userservice.model.FollowDeletedEvent;
 import com.toiter.userservice.model.MessageSentEvent;
-import org.springframework.kafka.core.KafkaTemplate;
+import com.toiter.userservice.model.PostCountChangedEvent;
+import com.toiter.userservice.model.UserUpdatedEvent;
+import com.toiter.userservice.repository.OutboxEventRepository;
+import org.springframework.kafka.support.JacksonUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Publishes domain events through the transactional outbox: each event is stored in
+ * {@code usr.outbox_events} within the caller's database transaction and later sent to Kafka by
+ * {@link OutboxRelay}. Events only reach Kafka if the transaction commits.
+ * <p>
+ * Keys keep related events on the same partition, in order: follow events by the followed user,
+ * user and post count events by user, chat events by chat.
+ */
 @Service
 public class KafkaProducer {
+    static final String FOLLOW_EVENTS_TOPIC = "follow-events-topic";
+    static final String USER_UPDATED_TOPIC = "user-updated-topic";
+    static final String CHAT_EVENTS_TOPIC = "chat-events-topic";
+    static final String POST_COUNT_EVENTS_TOPIC = "post-count-events-topic";
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    // Same configuration as spring-kafka's JsonSerializer, so payloads are byte-for-byte what it would send
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
 
-    public KafkaProducer(KafkaTemplate<String, Object> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public KafkaProducer(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
     }
 
+    @Transactional
     public void sendFollowCreatedEvent(FollowCreatedEvent event) {
-        kafkaTemplate.executeInTransaction(operations -> {
-            operations.send("follow-events-topic", event);
-            return true;
-        });
+        enqueue(FOLLOW_EVENTS_TOPIC, event.getUserId(), event);
     }
 
+    @Transactional
     public void sendFollowDeletedEvent(FollowDeletedEvent event) {
-        kafkaTemplate.executeInTransaction(operations -> {
-            operations.send("follow-events-topic", event);
-            return true;
-        });
+        enqueue(FOLLOW_EVENTS_TOPIC, event.getUserId(), event);
     }
 
-    public void sendUserUpdatedEvent(Object event) {
-        kafkaTemplate.executeInTransaction(operations -> {
-            operations.send("user-updated-topic", event);
-            return true;
-        });
+    @Transactional
+    public void sendPostCountChangedEvent(PostCountChangedEvent event) {
+        enqueue(POST_COUNT_EVENTS_TOPIC, event.getUserId(), event);
     }
 
+    @Transactional
+    public void sendUserUpdatedEvent(UserUpdatedEvent event) {
+        enqueue(USER_UPDATED_TOPIC, event.getUser().getId(), event);
+    }
+
+    @Transactional
     public void sendChatCreatedEvent(ChatCreatedEvent event) {
-        kafkaTemplate.executeInTransaction(operations -> {
-            operations.send("chat-events-topic", event);
-            return true;
-        });
+        enqueue(CHAT_EVENTS_TOPIC, event.getChat().getId(), event);
     }
 
+    @Transactional
     public void sendMessageSentEvent(MessageSentEvent event) {
-        kafkaTemplate.executeInTransaction(operations -> {
-            operations.send("chat-events-topic", event);
-            return true;
-        });
+        enqueue(CHAT_EVENTS_TOPIC, event.getMessage().getChat().getId(), event);
+    }
+
+    private void enqueue(String topic, Object key, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + event.getClass().getSimpleName(), e);
+        }
+        String eventKey = key != null ? key.toString() : null;
+        outboxEventRepository.save(new OutboxEvent(topic, eventKey, event.getClass().getName(), payload));
     }
 }
@@ -0,0 +1,149 @@
+package com.toiter.userservice.producer;
+
+import com.toiter.userservice.entity.OutboxEvent;
+import com.toiter.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes rows from {@code usr.outbox_events} to Kafka in id order.
+ * <p>
+ * Each batch runs in one database transaction holding a Postgres advisory lock (so a single instance
+ * relays at a time), is sent in one Kafka transaction and deleted once the broker acknowledged it.
+ * A crash between the send and the delete republishes the batch, so delivery is at-least-once.
+ */
+@Component
+public class OutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    static final long ADVISORY_LOCK_KEY = 0x6F7574626F78L; // "outbox"
+    /**
+     * Epoch millis at which the event was handed to {@link KafkaProducer} (stored in the outbox), in decimal.
+     */
+    public static final String PRODUCED_AT_HEADER = "x-produced-at";
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Counter relayed;
+    private final Timer batchTimer;
+
+    private volatile LocalDateTime oldestPendingAt;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, String> kafkaTemplate,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.relayed = meterRegistry.counter("outbox.relayed");
+        this.batchTimer = Timer.builder("outbox.relay.batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        Gauge.builder("outbox.lag", this, relay -> {
+                    LocalDateTime oldest = relay.oldestPendingAt;
+                    return oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis());
+                })
+                .baseUnit("milliseconds")
+                .description("Age of the oldest event still waiting in the outbox")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer sent = transactionTemplate.execute(status -> relayBatch());
+                if (sent == null || sent < batchSize) {
+                    break;
+                }
+            }
+            oldestPendingAt = outboxEventRepository.findOldestCreatedAt().orElse(null);
+        } catch (Exception e) {
+            logger.error("Failed to relay outbox events, will retry", e);
+        }
+    }
+
+    /**
+     * Sends and deletes one batch. Returns the number of events relayed, or 0 if another instance holds the lock.
+     */
+    int relayBatch() {
+        if (!outboxEventRepository.tryAdvisoryXactLock(ADVISORY_LOCK_KEY)) {
+            return 0;
+        }
+        List<OutboxEvent> batch = outboxEventRepository.findOldest(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        kafkaTemplate.executeInTransaction(ops -> {
+            CompletableFuture<?>[] acks = batch.stream()
+                    .map(event -> ops.send(toRecord(event)))
+                    .toArray(CompletableFuture[]::new);
+            awaitAcks(acks);
+            return null;
+        });
+        outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        relayed.increment(batch.size());
+        return batch.size();
+    }
+
+    private static ProducerRecord<String, String> toRecord(OutboxEvent event) {
+        long producedAt = event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // Timestamped when the change was written, not when it was relayed, so the social counts stream can
+        // tell whether a counter snapshot already includes it
+        ProducerRecord<String, String> record = new ProducerRecord<>(event.getTopic(), null, producedAt,
+                event.getEventKey(), event.getPayload());
+        // Same type header JsonSerializer writes, so the consumers' JsonDeserializer resolves the event class
+        record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                event.getEventType().getBytes(StandardCharsets.UTF_8));
+        record.headers().add(PRODUCED_AT_HEADER, Long.toString(producedAt).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private static void awaitAcks(CompletableFuture<?>[] acks) {
+        try {
+            CompletableFuture.allOf(acks).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox batch", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to publish outbox batch", e);
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.toiter.userservice.repository;
 
 import com.toiter.userservice.entity.Follow;
 import com.toiter.userservice.model.FollowData;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,27 +17,70 @@ public interface FollowRepository extends JpaRepository<Follow, Long> {
     Optional<Follow> findByUserIdAndFollowerId(Long userId, Long followerId);
     boolean existsByUserIdAndFollowerId(Long userId, Long followerId);
 
-    int countByUserId(Long userId);
-
-    int countByFollowerId(Long userId);
+    /*
+     * Keyset pagination on (follow_date DESC, id DESC), served by the composite indexes
+     * idx_followers_user_id_date / idx_followers_follower_id_date. The "AfterCursor" variants
+     * return the rows strictly older than the last row of the previous page.
+     */
+    @Query("SELECT NEW com.toiter.userservice.model.FollowData(" +
+            "f.id, " +
+            "u.id, " +
+            "u.username, " +
+            "u.displayName, " +
+            "f.followDate, " +
+            "u.profileImageUrl) " +
+            "FROM Follow f " +
+            "JOIN User u ON f.followerId = u.id " +
+            "WHERE f.userId = :userId " +
+            "ORDER BY f.followDate DESC, f.id DESC")
+    List<FollowData> findFollowerDataByUserId(@Param("userId") Long userId, Pageable pageable);
 
     @Query("SELECT NEW com.toiter.userservice.model.FollowData(" +
+            "f.id, " +
+            "u.id, " +
             "u.username, " +
             "u.displayName, " +
             "f.followDate, " +
             "u.profileImageUrl) " +
             "FROM Follow f " +
             "JOIN User u ON f.followerId = u.id " +
-            "WHERE f.userId = :userId")
-    List<FollowData> findFollowerDataByUserId(@Param("userId") Long userId);
+            "WHERE f.userId = :userId " +
+            "AND f.followDate <= :followDate " +
+            "AND (f.followDate < :followDate OR f.id < :followId) " +
+            "ORDER BY f.followDate DESC, f.id DESC")
+    List<FollowData> findFollowerDataByUserIdAfterCursor(@Param("userId") Long userId,
+                                                         @Param("followDate") LocalDateTime followDate,
+                                                         @Param("followId") Long followId,
+                                                         Pageable pageable);
+
+    @Query("SELECT NEW com.toiter.userservice.model.FollowData(" +
+            "f.id, " +
+            "u.id, " +
+            "u.username, " +
+            "u.displayName, " +
+            "f.followDate, " +
+            "u.profileImageUrl) " +
+            "FROM Follow f " +
+            "JOIN User u ON f.userId = u.id " +
+            "WHERE f.followerId = :followerId " +
+            "ORDER BY f.followDate DESC, f.id DESC")
+    List<FollowData> findFollowingDataByFollowerId(@Param("followerId") Long followerId, Pageable pageable);
 
     @Query("SELECT NEW com.toiter.userservice.model.FollowData(" +
+            "f.id, " +
+            "u.id, " +
             "u.username, " +
             "u.displayName, " +
             "f.followDate, " +
             "u.profileImageUrl) " +
             "FROM Follow f " +
             "JOIN User u ON f.userId = u.id " +
-            "WHERE f.followerId = :followerId")
-    List<FollowData> findFollowingDataByFollowerId(@Param("followerId") Long followerId);
+            "WHERE f.followerId = :followerId " +
+            "AND f.followDate <= :followDate " +
+            "AND (f.followDate < :followDate OR f.id < :followId) " +
+            "ORDER BY f.followDate DESC, f.id DESC")
+    List<FollowData> findFollowingDataByFollowerIdAfterCursor(@Param("followerId") Long followerId,
+                                                              @Param("followDate") LocalDateTime followDate,
+                                                              @Param("followId") Long followId,
+                                                              Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package com.toiter.userservice.repository;
+
+import com.toiter.userservice.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("SELECT o FROM OutboxEvent o ORDER BY o.id")
+    List<OutboxEvent> findOldest(Pageable pageable);
+
+    @Query("SELECT o.createdAt FROM OutboxEvent o WHERE o.id = (SELECT MIN(o2.id) FROM OutboxEvent o2)")
+    Optional<LocalDateTime> findOldestCreatedAt();
+
+    /**
+     * Transaction-scoped advisory lock, so only one instance relays at a time and per-key order is kept.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+}
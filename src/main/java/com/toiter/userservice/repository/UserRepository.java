@@ -2,13 +2,19 @@ package com.toiter.userservice.repository;
 
 import com.toiter.userservice.entity.User;
 import com.toiter.userservice.model.FollowData;
+import com.toiter.userservice.model.UserIdentityProjection;
+import com.toiter.userservice.model.UserImageProjection;
 import com.toiter.userservice.model.UserPublicProjection;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -19,6 +25,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u.id FROM User u WHERE u.username = :username")
     Optional<Long> findUserIdByUsername(String username);
 
+    @Query("SELECT u.id AS id, u.username AS username FROM User u WHERE u.username IN :usernames")
+    List<UserIdentityProjection> findIdentitiesByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.id AS id, u.profileImageUrl AS profileImageUrl FROM User u WHERE u.id IN :ids")
+    List<UserImageProjection> findProfileImagesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.id AS id, u.username AS username FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserIdentityProjection> findIdentitiesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
     @Query("SELECT u.username FROM User u WHERE lower(u.username) like %:username% OR lower(u.displayName) like %:username%")
     Page<String> findUsernamesByQuery(String username, Pageable pageable);
 
@@ -29,6 +44,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Page<String> findFollowingUsernamesByQuery(Long userId, String username, Pageable pageable);
 
     @Query("SELECT NEW com.toiter.userservice.model.FollowData(" +
+            "u.id, " +
             "u.username, " +
             "u.displayName, " +
             "f.followDate, " +
@@ -37,4 +53,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
             "JOIN Follow f ON u.id = f.userId " +
             "WHERE f.followerId = :userId AND (lower(u.username) like %:username% OR lower(u.displayName) like %:username%)")
     Page<FollowData> findFollowingDataByQuery(@Param("userId") Long userId, @Param("username") String username, Pageable pageable);
+
+    /**
+     * Replaces the password hash only if it still equals {@code currentHash}.
+     *
+     * @return the number of rows updated
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :currentHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("currentHash") String currentHash, @Param("newHash") String newHash);
 }
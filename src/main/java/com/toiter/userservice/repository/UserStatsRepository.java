@@ -0,0 +1,150 @@
+package com.toiter.userservice.repository;
+
+import com.toiter.userservice.entity.UserStats;
+import com.toiter.userservice.model.UserCounts;
+import com.toiter.userservice.model.UserCountsByUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserStatsRepository extends JpaRepository<UserStats, UserStats.Key> {
+
+    @Query("SELECT COALESCE(SUM(s.followersCount), 0) AS followersCount, " +
+            "COALESCE(SUM(s.followingCount), 0) AS followingCount, " +
+            "COALESCE(SUM(s.postsCount), 0) AS postsCount " +
+            "FROM UserStats s WHERE s.userId = :userId")
+    UserCounts sumCountsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT s.userId AS userId, SUM(s.followersCount) AS followersCount, " +
+            "SUM(s.followingCount) AS followingCount, SUM(s.postsCount) AS postsCount " +
+            "FROM UserStats s WHERE s.userId > :afterId AND s.userId <= :upToId GROUP BY s.userId")
+    List<UserCountsByUser> sumCountsByUserIdRange(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
+
+    /**
+     * Adds the deltas to one counter shard, creating it on first use. Runs in the caller's transaction.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO usr.user_stats (user_id, shard, followers_count, following_count) " +
+            "VALUES (:userId, :shard, :followersDelta, :followingDelta) " +
+            "ON CONFLICT (user_id, shard) DO UPDATE SET " +
+            "followers_count = usr.user_stats.followers_count + EXCLUDED.followers_count, " +
+            "following_count = usr.user_stats.following_count + EXCLUDED.following_count",
+            nativeQuery = true)
+    void addToShard(@Param("userId") Long userId,
+                    @Param("shard") short shard,
+                    @Param("followersDelta") long followersDelta,
+                    @Param("followingDelta") long followingDelta);
+
+    /**
+     * Repairs drift for users with {@code afterId < id <= upToId}. Both the real counts and the stored sums are
+     * read in the same statement snapshot, and the difference is added to shard 0 rather than overwriting,
+     * so follows committed concurrently are neither lost nor counted twice.
+     *
+     * @return the number of users whose counters were corrected
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO usr.user_stats (user_id, shard, followers_count, following_count) " +
+            "SELECT d.user_id, 0, d.followers_drift, d.following_drift FROM (" +
+            "  SELECT u.id AS user_id, " +
+            "    (SELECT COUNT(*) FROM usr.followers f WHERE f.user_id = u.id) " +
+            "      - COALESCE((SELECT SUM(s.followers_count) FROM usr.user_stats s WHERE s.user_id = u.id), 0) AS followers_drift, " +
+            "    (SELECT COUNT(*) FROM usr.followers f WHERE f.follower_id = u.id) " +
+            "      - COALESCE((SELECT SUM(s.following_count) FROM usr.user_stats s WHERE s.user_id = u.id), 0) AS following_drift " +
+            "  FROM usr.users u WHERE u.id > :afterId AND u.id <= :upToId" +
+            ") d WHERE d.followers_drift <> 0 OR d.following_drift <> 0 " +
+            "ON CONFLICT (user_id, shard) DO UPDATE SET " +
+            "followers_count = usr.user_stats.followers_count + EXCLUDED.followers_count, " +
+            "following_count = usr.user_stats.following_count + EXCLUDED.following_count",
+            nativeQuery = true)
+    int reconcileRange(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
+
+    /**
+     * Transaction-scoped advisory lock, so only one instance repairs a range at a time.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM usr.users", nativeQuery = true)
+    long findMaxUserId();
+
+    @Modifying
+    @Query(value = "INSERT INTO usr.user_stats (user_id, shard, posts_count) VALUES (:userId, :shard, :delta) " +
+            "ON CONFLICT (user_id, shard) DO UPDATE SET posts_count = usr.user_stats.posts_count + EXCLUDED.posts_count",
+            nativeQuery = true)
+    void addPostsToShard(@Param("userId") Long userId, @Param("shard") short shard, @Param("delta") long delta);
+
+    /**
+     * Records a post in the ledger that makes post events idempotent.
+     *
+     * @return 1 if the post was not in the ledger yet, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "INSERT INTO usr.post_ledger (post_id, user_id, deleted, created_at, deleted_at) " +
+            "VALUES (:postId, :userId, :deleted, :createdAt, :deletedAt) ON CONFLICT (post_id) DO NOTHING",
+            nativeQuery = true)
+    int insertPostLedgerEntry(@Param("postId") Long postId, @Param("userId") Long userId,
+                              @Param("createdAt") LocalDateTime createdAt, @Param("deletedAt") LocalDateTime deletedAt,
+                              @Param("deleted") boolean deleted);
+
+    /**
+     * @return 1 if the post was in the ledger and not yet deleted, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "UPDATE usr.post_ledger SET deleted = TRUE, deleted_at = :deletedAt " +
+            "WHERE post_id = :postId AND deleted = FALSE",
+            nativeQuery = true)
+    int markPostDeleted(@Param("postId") Long postId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    /**
+     * Transaction-scoped advisory locks on one user's post count: post events take it shared and a backfilled
+     * baseline exclusively, so a baseline is never applied while an event of the same user is in flight.
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock_shared(:namespace, :key)", nativeQuery = true)
+    int advisoryXactLockShared(@Param("namespace") int namespace, @Param("key") int key);
+
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:namespace, :key)", nativeQuery = true)
+    int advisoryXactLock(@Param("namespace") int namespace, @Param("key") int key);
+
+    /**
+     * What the ledger adds to a post count taken at {@code countedUntil}: posts created after it and still live,
+     * minus posts created before it and deleted after it. Posts without timestamps count as created after it.
+     */
+    @Query(value = "SELECT COALESCE(SUM(CASE " +
+            "WHEN NOT l.deleted AND (l.created_at IS NULL OR l.created_at > :countedUntil) THEN 1 " +
+            "WHEN l.deleted AND l.created_at <= :countedUntil " +
+            "AND (l.deleted_at IS NULL OR l.deleted_at > :countedUntil) THEN -1 " +
+            "ELSE 0 END), 0) FROM usr.post_ledger l WHERE l.user_id = :userId",
+            nativeQuery = true)
+    long sumPostLedgerSince(@Param("userId") Long userId, @Param("countedUntil") LocalDateTime countedUntil);
+
+    /**
+     * Whether {@code instant} (a post's creation or deletion, on post-service's clock) is at or before the instant
+     * the user's backfilled post count was taken at.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM usr.post_count_baselines b " +
+            "WHERE b.user_id = :userId AND b.counted_until >= :instant)",
+            nativeQuery = true)
+    boolean isCoveredByPostBaseline(@Param("userId") Long userId, @Param("instant") LocalDateTime instant);
+
+    @Modifying
+    @Query(value = "UPDATE usr.user_stats SET posts_count = 0 WHERE user_id = :userId", nativeQuery = true)
+    void clearPostsCount(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO usr.post_count_baselines (user_id, counted_until) VALUES (:userId, :countedUntil) " +
+            "ON CONFLICT (user_id) DO UPDATE SET counted_until = EXCLUDED.counted_until",
+            nativeQuery = true)
+    void upsertPostBaseline(@Param("userId") Long userId, @Param("countedUntil") LocalDateTime countedUntil);
+
+    @Query(value = "SELECT u.id FROM usr.users u WHERE u.id > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM usr.post_count_baselines b WHERE b.user_id = u.id) " +
+            "ORDER BY u.id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findUserIdsWithoutPostBaseline(@Param("afterId") Long afterId, @Param("limit") int limit);
+}
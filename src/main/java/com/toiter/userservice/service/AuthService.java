@@ -2,29 +2,45 @@ package com.toiter.userservice.service;
 
 import com.toiter.userservice.entity.User;
 import com.toiter.userservice.model.LoginRequest;
+import com.toiter.userservice.model.RefreshSession;
 import com.toiter.userservice.model.TokenResponse;
 import com.toiter.userservice.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class AuthService {
     private final UserRepository userRepository;
     private final JwtService jwtService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshSessionStore refreshSessionStore;
+    private final Counter refreshReuseDetected;
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
 
-    public AuthService(UserRepository userRepository, JwtService jwtService, PasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository, JwtService jwtService,
+                       PasswordHashingService passwordHashingService,
+                       TokenRevocationService tokenRevocationService, RefreshSessionStore refreshSessionStore,
+                       MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
         this.jwtService = jwtService;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.refreshSessionStore = refreshSessionStore;
+        this.refreshReuseDetected = meterRegistry.counter("auth.refresh.reuse.detected");
     }
 
     public TokenResponse authenticateAndGenerateTokens(LoginRequest loginRequest) {
@@ -40,20 +56,42 @@ public class AuthService {
             return new IllegalArgumentException("Invalid username or email");
         });
 
-        if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
+        // Hashing happens on the bounded password pool; a saturated pool surfaces as 503
+        if (!passwordHashingService.matches(loginRequest.getPassword(), user.getPassword())) {
             logger.error("Invalid password for user: {}", loginRequest.getUsernameOrEmail());
             throw new IllegalArgumentException("Invalid password");
         }
+        if (passwordHashingService.needsRehash(user.getPassword())) {
+            rehashPassword(user, loginRequest.getPassword());
+        }
 
         logger.info("User authenticated successfully: {}", user.getUsername());
-        String accessToken = jwtService.generateToken(user.getUsername(), user.getId());
-        String refreshToken = jwtService.generateRefreshToken(user.getUsername(), user.getId());
+        // Each login starts a new refresh-token family (session)
+        String sessionId = UUID.randomUUID().toString();
+        String refreshTokenId = UUID.randomUUID().toString();
+        refreshSessionStore.create(sessionId, user.getId(), refreshTokenId);
+        String accessToken = jwtService.generateToken(user.getUsername(), user.getId(), sessionId);
+        String refreshToken = jwtService.generateRefreshToken(user.getUsername(), user.getId(), sessionId, refreshTokenId);
         long expiresIn = jwtService.getAccessTokenExpiration();
 
         logger.info("Generated tokens for user: {}", user.getUsername());
         return new TokenResponse(accessToken, refreshToken, expiresIn);
     }
 
+    /**
+     * Re-encodes the password with the current work factor in the background. The update only applies if
+     * the stored hash is still the one that was verified, so a concurrent password change is not overwritten.
+     */
+    private void rehashPassword(User user, String rawPassword) {
+        Long userId = user.getId();
+        String previousHash = user.getPassword();
+        passwordHashingService.encodeAsync(rawPassword, newHash -> {
+            if (userRepository.updatePasswordHash(userId, previousHash, newHash) > 0) {
+                logger.info("Rehashed password of user {} with BCrypt cost {}", userId, passwordHashingService.getCost());
+            }
+        });
+    }
+
     public Long getUserIdFromAuthentication(Authentication authentication) {
         if (authentication == null) {
             return null;
@@ -80,16 +118,113 @@ public class AuthService {
             throw new IllegalArgumentException("Refresh token not found");
         }
 
-        if (!jwtService.isTokenValid(refreshToken)) {
+        Claims claims = jwtService.parseClaims(refreshToken);
+        if (!jwtService.isTokenValid(claims)) {
             throw new IllegalArgumentException("Invalid refresh token");
         }
 
-        String username = jwtService.extractUsername(refreshToken);
-        Long userId = jwtService.extractUserId(refreshToken);
+        String username = claims.getSubject();
+        Long userId = jwtService.extractUserId(claims);
+        String sessionId = jwtService.extractSessionId(claims);
+        if (sessionId == null) {
+            // Issued before sessions existed: cannot be rotated, so the user has to log in again
+            throw new IllegalArgumentException("Invalid refresh token");
+        }
 
-        String newAccessToken = jwtService.generateToken(username, userId);
+        String newRefreshTokenId = UUID.randomUUID().toString();
+        switch (refreshSessionStore.rotate(sessionId, userId, claims.getId(), newRefreshTokenId)) {
+            case UNKNOWN_SESSION -> throw new IllegalArgumentException("Invalid refresh token");
+            case REUSE_DETECTED -> {
+                refreshReuseDetected.increment();
+                logger.warn("Refresh token reuse detected for user {}, session {} ended", userId, sessionId);
+                throw new IllegalArgumentException("Invalid refresh token");
+            }
+            case ROTATED -> {
+            }
+        }
+
+        String newAccessToken = jwtService.generateToken(username, userId, sessionId);
+        String newRefreshToken = jwtService.generateRefreshToken(username, userId, sessionId, newRefreshTokenId);
         long expiresIn = jwtService.getAccessTokenExpiration();
 
-        return new TokenResponse(newAccessToken, null, expiresIn); // Refresh token is set on cookie
+        return new TokenResponse(newAccessToken, newRefreshToken, expiresIn);
+    }
+
+    /**
+     * Whether the access token is valid and its session (if it has one) has not been ended.
+     * Uses the verified-claims cache and the local session cache, so repeated checks stay in-process.
+     */
+    public boolean isSessionActive(String accessToken) {
+        try {
+            Claims claims = jwtService.parseClaims(accessToken);
+            String sessionId = jwtService.extractSessionId(claims);
+            return jwtService.isTokenValid(claims) && (sessionId == null || refreshSessionStore.isActive(sessionId));
+        } catch (JwtException e) {
+            return false;
+        }
+    }
+
+    public List<RefreshSession> listSessions(String accessToken) {
+        return refreshSessionStore.list(jwtService.extractUserId(requireValidToken(accessToken)));
+    }
+
+    /**
+     * Ends one of the caller's sessions; its refresh token stops working immediately.
+     *
+     * @throws NoSuchElementException if the caller has no such session
+     */
+    public void endSession(String accessToken, String sessionId) {
+        Long userId = jwtService.extractUserId(requireValidToken(accessToken));
+        if (!refreshSessionStore.end(userId, sessionId)) {
+            throw new NoSuchElementException("Session not found");
+        }
+    }
+
+    /**
+     * Revokes the access token of the session being closed. Tokens that are already invalid need nothing.
+     */
+    public void logout(String accessToken) {
+        if (accessToken == null) {
+            return;
+        }
+        try {
+            Claims claims = jwtService.parseClaims(accessToken);
+            tokenRevocationService.revokeToken(claims.getId(), claims.getExpiration());
+            String sessionId = jwtService.extractSessionId(claims);
+            if (sessionId != null) {
+                refreshSessionStore.end(jwtService.extractUserId(claims), sessionId);
+            }
+        } catch (JwtException e) {
+            logger.debug("Logout with invalid access token: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Revokes every access and refresh token issued to the owner of {@code accessToken} so far.
+     *
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public Long logoutAll(String accessToken) {
+        Claims claims = requireValidToken(accessToken);
+        Long userId = jwtService.extractUserId(claims);
+        tokenRevocationService.revokeAllForUser(userId);
+        // The cut-off spares tokens issued in the current second, which may include this one
+        tokenRevocationService.revokeToken(claims.getId(), claims.getExpiration());
+        refreshSessionStore.endAll(userId);
+        logger.info("Revoked all tokens of user {}", userId);
+        return userId;
+    }
+
+    private Claims requireValidToken(String accessToken) {
+        Claims claims;
+        try {
+            claims = jwtService.parseClaims(accessToken);
+        } catch (JwtException e) {
+            throw new IllegalArgumentException("Invalid access token");
+        }
+        if (!jwtService.isTokenValid(claims)) {
+            throw new IllegalArgumentException("Invalid access token");
+        }
+        return claims;
     }
 }
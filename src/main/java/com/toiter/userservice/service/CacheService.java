@@ -1,106 +1,654 @@
 package com.toiter.userservice.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.toiter.userservice.entity.User;
 import com.toiter.userservice.model.UserPublicData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
+/**
+ * Two-tier cache for user lookups: a bounded in-process cache (L1) in front of Redis (L2).
+ * Writes are propagated to the other instances through a Redis pub/sub channel so their
+ * L1 entries are evicted; the L1 TTL bounds staleness if an invalidation message is lost.
+ * L1 entries remember when the Redis entry expires so callers can refresh hot keys early.
+ */
 @Service
 public class CacheService {
     private final RedisTemplate<String, Long> redisTemplateForLong;
     private final RedisTemplate<String, UserPublicData> redisTemplateForUserPublicData;
     private final RedisTemplate<String, User> redisTemplateForUser;
     private final RedisTemplate<String, String> redisTemplateForLocks;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<String, CachedValue<Long>> localUserIds;
+    private final Cache<Long, CachedValue<UserPublicData>> localUserPublicData;
+    private final Cache<Long, CachedValue<User>> localUsers;
+    private final Cache<String, Boolean> localMissingUsernames;
+    private final Duration redisTtl;
+    private final Duration negativeTtl;
+    private final String nodeId = UUID.randomUUID().toString();
 
     private static final String USERNAME_TO_ID_KEY_PREFIX = "user:username:";
     private static final String USER_PUBLIC_DATA_KEY_PREFIX = "user:public:";
     private static final String USER_BY_ID_KEY_PREFIX = "user:id:";
+    private static final String USER_COUNTS_KEY_PREFIX = "user:counts:";
+    private static final String MISSING_USERNAME_KEY_PREFIX = "user:missing:";
+    static final String INVALIDATION_CHANNEL = "user:cache:invalidate";
+
+    public static final String CACHE_USER_ID = "userIdByUsername";
+    public static final String CACHE_USER_PUBLIC_DATA = "userPublicData";
+    public static final String CACHE_USER = "userById";
+    public static final String CACHE_MISSING_USERNAME = "missingUsername";
+    private static final String TIER_LOCAL = "local";
+    private static final String TIER_REDIS = "redis";
+
     private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
 
+    /**
+     * HINCRBY that only touches an existing counter and never goes below zero.
+     * Returns -1 when the counter is not cached.
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_COUNT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end " +
+                    "local value = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "if value < 0 then " +
+                    "redis.call('hset', KEYS[1], ARGV[1], 0) " +
+                    "value = 0 " +
+                    "end " +
+                    "return value",
+            Long.class);
+
+    /**
+     * Batched form of {@link #INCREMENT_COUNT_SCRIPT}: ARGV holds one delta per {@link UserCounter} field
+     * (after the field names in ARGV[1..n]) for each key, in key order. Zero deltas and uncached counters are
+     * skipped. Returns the number of keys that were changed.
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_COUNTS_SCRIPT = new DefaultRedisScript<>(
+            "local fields = tonumber(ARGV[1]) " +
+                    "local changed = 0 " +
+                    "for i, key in ipairs(KEYS) do " +
+                    "local touched = false " +
+                    "for f = 1, fields do " +
+                    "local delta = tonumber(ARGV[1 + fields + (i - 1) * fields + f]) " +
+                    "local field = ARGV[1 + f] " +
+                    "if delta ~= 0 and redis.call('hexists', key, field) == 1 then " +
+                    "if redis.call('hincrby', key, field, delta) < 0 then redis.call('hset', key, field, 0) end " +
+                    "touched = true " +
+                    "end " +
+                    "end " +
+                    "if touched then changed = changed + 1 end " +
+                    "end " +
+                    "return changed",
+            Long.class);
+
+    /**
+     * Counters kept in the {@code user:counts:{id}} hash, next to the cached public profile.
+     */
+    public enum UserCounter {
+        FOLLOWERS("followers", UserPublicData::getFollowersCount, UserPublicData::setFollowersCount),
+        FOLLOWING("following", UserPublicData::getFollowingCount, UserPublicData::setFollowingCount),
+        POSTS("posts", UserPublicData::getPostsCount, UserPublicData::setPostsCount);
+
+        private final String field;
+        private final Function<UserPublicData, Integer> getter;
+        private final BiConsumer<UserPublicData, Integer> setter;
+
+        UserCounter(String field, Function<UserPublicData, Integer> getter, BiConsumer<UserPublicData, Integer> setter) {
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String field() {
+            return field;
+        }
+
+        Integer get(UserPublicData data) {
+            return getter.apply(data);
+        }
+
+        void set(UserPublicData data, Integer value) {
+            setter.accept(data, value);
+        }
+    }
+
+    @Autowired
     public CacheService(RedisTemplate<String, Long> redisTemplateForLong,
                         RedisTemplate<String, UserPublicData> redisTemplateForUserPublicData,
                         RedisTemplate<String, User> redisTemplateForUser,
-                        RedisTemplate<String, String> redisTemplateForLocks) {
+                        RedisTemplate<String, String> redisTemplateForLocks,
+                        RedisMessageListenerContainer listenerContainer,
+                        MeterRegistry meterRegistry,
+                        @Value("${cache.local.max-size:10000}") long localMaxSize,
+                        @Value("${cache.local.ttl-seconds:30}") long localTtlSeconds,
+                        @Value("${cache.redis.ttl-minutes:60}") long redisTtlMinutes,
+                        @Value("${cache.negative.ttl-seconds:60}") long negativeTtlSeconds) {
+        this(redisTemplateForLong, redisTemplateForUserPublicData, redisTemplateForUser, redisTemplateForLocks,
+                listenerContainer, meterRegistry, localMaxSize, localTtlSeconds, redisTtlMinutes, negativeTtlSeconds,
+                Ticker.systemTicker());
+    }
+
+    /**
+     * Variant with an explicit clock for the L1 expiry, so tests can step past the local TTL.
+     */
+    CacheService(RedisTemplate<String, Long> redisTemplateForLong,
+                 RedisTemplate<String, UserPublicData> redisTemplateForUserPublicData,
+                 RedisTemplate<String, User> redisTemplateForUser,
+                 RedisTemplate<String, String> redisTemplateForLocks,
+                 RedisMessageListenerContainer listenerContainer,
+                 MeterRegistry meterRegistry,
+                 long localMaxSize,
+                 long localTtlSeconds,
+                 long redisTtlMinutes,
+                 long negativeTtlSeconds,
+                 Ticker ticker) {
         this.redisTemplateForLong = redisTemplateForLong;
         this.redisTemplateForUserPublicData = redisTemplateForUserPublicData;
         this.redisTemplateForUser = redisTemplateForUser;
         this.redisTemplateForLocks = redisTemplateForLocks;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.redisTtl = Duration.ofMinutes(redisTtlMinutes);
+        this.negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+
+        this.localUserIds = buildLocalCache(localMaxSize, localTtlSeconds, ticker);
+        this.localUserPublicData = buildLocalCache(localMaxSize, localTtlSeconds, ticker);
+        this.localUsers = buildLocalCache(localMaxSize, localTtlSeconds, ticker);
+        this.localMissingUsernames = buildLocalCache(localMaxSize, Math.min(localTtlSeconds, negativeTtlSeconds), ticker);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localUserIds, CACHE_USER_ID);
+        CaffeineCacheMetrics.monitor(meterRegistry, localUserPublicData, CACHE_USER_PUBLIC_DATA);
+        CaffeineCacheMetrics.monitor(meterRegistry, localUsers, CACHE_USER);
+        CaffeineCacheMetrics.monitor(meterRegistry, localMissingUsernames, CACHE_MISSING_USERNAME);
+    }
+
+    private static <K, V> Cache<K, V> buildLocalCache(long maxSize, long ttlSeconds, Ticker ticker) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void subscribeToInvalidations() {
+        listenerContainer.addMessageListener(this::onInvalidationMessage, new ChannelTopic(INVALIDATION_CHANNEL));
     }
 
     public Long getUserIdByUsername(String username) {
-        ValueOperations<String, Long> valueOps = redisTemplateForLong.opsForValue();
-        String key = USERNAME_TO_ID_KEY_PREFIX + username;
-        Number rawValue = valueOps.get(key);
-        Long userId = rawValue != null ? rawValue.longValue() : null;
-        if (userId != null) {
-            logger.debug("Cache hit for user ID by username: {}", username);
-            redisTemplateForLong.expire(key, Duration.ofHours(1));
-        } else {
-            logger.debug("Cache miss for user ID by username: {}", username);
-        }
-        return userId;
+        CachedValue<Long> entry = getUserIdByUsernameEntry(username);
+        return entry != null ? entry.value() : null;
+    }
+
+    public CachedValue<Long> getUserIdByUsernameEntry(String username) {
+        return getEntry(username, localUserIds, redisTemplateForLong, USERNAME_TO_ID_KEY_PREFIX + username,
+                CACHE_USER_ID, value -> ((Number) value).longValue());
     }
 
     public void setUserIdByUsername(String username, Long userId) {
         ValueOperations<String, Long> valueOps = redisTemplateForLong.opsForValue();
         String key = USERNAME_TO_ID_KEY_PREFIX + username;
-        valueOps.set(key, userId);
-        redisTemplateForLong.expire(key, Duration.ofHours(1));
+        valueOps.set(key, userId, redisTtl);
+        localUserIds.put(username, freshEntry(userId));
+        localMissingUsernames.invalidate(username);
+        publishInvalidation(CACHE_USER_ID, username);
         logger.debug("Set user ID in cache for username: {}", username);
     }
 
+    /**
+     * Whether a recent database lookup found no user with this username (negative cache).
+     */
+    public boolean isUsernameMissing(String username) {
+        if (localMissingUsernames.getIfPresent(username) != null) {
+            recordLookup(CACHE_MISSING_USERNAME, TIER_LOCAL, true);
+            return true;
+        }
+        recordLookup(CACHE_MISSING_USERNAME, TIER_LOCAL, false);
+        boolean missing = Boolean.TRUE.equals(redisTemplateForLocks.hasKey(MISSING_USERNAME_KEY_PREFIX + username));
+        recordLookup(CACHE_MISSING_USERNAME, TIER_REDIS, missing);
+        if (missing) {
+            localMissingUsernames.put(username, Boolean.TRUE);
+        }
+        return missing;
+    }
+
+    /**
+     * Remembers for {@code cache.negative.ttl-seconds} that no user has this username.
+     */
+    public void markUsernameMissing(String username) {
+        redisTemplateForLocks.opsForValue().set(MISSING_USERNAME_KEY_PREFIX + username, "1", negativeTtl);
+        localMissingUsernames.put(username, Boolean.TRUE);
+        logger.debug("Cached missing username: {}", username);
+    }
+
+    /**
+     * Drops the negative entry for a username that has just been registered or taken by a rename.
+     */
+    public void clearMissingUsername(String username) {
+        redisTemplateForLocks.delete(MISSING_USERNAME_KEY_PREFIX + username);
+        localMissingUsernames.invalidate(username);
+        publishInvalidation(CACHE_MISSING_USERNAME, username);
+    }
+
     public UserPublicData getUserPublicData(Long userId) {
-        ValueOperations<String, UserPublicData> valueOps = redisTemplateForUserPublicData.opsForValue();
+        CachedValue<UserPublicData> entry = getUserPublicDataEntry(userId);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * Reads the public profile together with its counters hash and remaining TTL in one pipelined round trip.
+     * A profile without its counters hash (e.g. written before the counters were split out) counts as a miss.
+     */
+    public CachedValue<UserPublicData> getUserPublicDataEntry(Long userId) {
+        CachedValue<UserPublicData> entry = localUserPublicData.getIfPresent(userId);
+        recordLookup(CACHE_USER_PUBLIC_DATA, TIER_LOCAL, entry != null);
+        if (entry != null) {
+            return entry;
+        }
+
         String key = USER_PUBLIC_DATA_KEY_PREFIX + userId;
-        UserPublicData data = valueOps.get(key);
-        if (data != null) {
-            logger.debug("Cache hit for user public data by ID: {}", userId);
-            redisTemplateForUserPublicData.expire(key, Duration.ofHours(1));
-        } else {
-            logger.debug("Cache miss for user public data by ID: {}", userId);
+        String countsKey = USER_COUNTS_KEY_PREFIX + userId;
+        List<Object> results = redisTemplateForUserPublicData.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, UserPublicData> ops = (RedisOperations<String, UserPublicData>) operations;
+                ops.opsForValue().get(key);
+                ops.opsForHash().entries(countsKey);
+                ops.getExpire(key, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+
+        UserPublicData data = withCounts(results.get(0), results.get(1));
+        recordLookup(CACHE_USER_PUBLIC_DATA, TIER_REDIS, data != null);
+        if (data == null) {
+            logger.debug("Cache miss on {} for key: {}", CACHE_USER_PUBLIC_DATA, userId);
+            return null;
         }
-        return data;
+
+        long ttlMillis = results.get(2) instanceof Number ttl ? ttl.longValue() : -1;
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : CachedValue.UNKNOWN_EXPIRY;
+        entry = new CachedValue<>(data, expiresAt);
+        localUserPublicData.put(userId, entry);
+        logger.debug("Cache hit on {} for key: {}", CACHE_USER_PUBLIC_DATA, userId);
+        return entry;
     }
 
+    /**
+     * Stores the profile and its counters as separate keys with the same TTL: the profile as a serialized
+     * value without counts, the counters as a hash so events can update them in place. The writes run in one
+     * pipelined MULTI/EXEC, so readers never see the new profile next to missing or half-written counters.
+     */
     public void setUserPublicData(Long userId, UserPublicData data) {
-        ValueOperations<String, UserPublicData> valueOps = redisTemplateForUserPublicData.opsForValue();
         String key = USER_PUBLIC_DATA_KEY_PREFIX + userId;
-        valueOps.set(key, data);
-        redisTemplateForUserPublicData.expire(key, Duration.ofHours(1));
+        String countsKey = USER_COUNTS_KEY_PREFIX + userId;
+        UserPublicData profile = new UserPublicData(userId, data.getUsername(), data.getDisplayName(),
+                data.getBio(), data.getProfileImageUrl(), data.getHeaderImageUrl(), null, null);
+        Map<String, String> counts = new HashMap<>();
+        for (UserCounter counter : UserCounter.values()) {
+            Integer value = counter.get(data);
+            if (value != null) {
+                counts.put(counter.field(), value.toString());
+            }
+        }
+
+        redisTemplateForUserPublicData.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, UserPublicData> ops = (RedisOperations<String, UserPublicData>) operations;
+                ops.multi();
+                ops.opsForValue().set(key, profile, redisTtl);
+                ops.delete(countsKey);
+                if (!counts.isEmpty()) {
+                    ops.opsForHash().putAll(countsKey, counts);
+                    ops.expire(countsKey, redisTtl);
+                }
+                ops.exec();
+                return null;
+            }
+        });
+        localUserPublicData.put(userId, freshEntry(data));
+        publishInvalidation(CACHE_USER_PUBLIC_DATA, userId.toString());
         logger.debug("Set user public data in cache for ID: {}", userId);
     }
 
-    public User getUserById(Long userId) {
-        ValueOperations<String, User> valueOps = redisTemplateForUser.opsForValue();
-        String key = USER_BY_ID_KEY_PREFIX + userId;
-        User user = valueOps.get(key);
-        if (user != null) {
-            logger.debug("Cache hit for user by ID: {}", userId);
-            redisTemplateForUser.expire(key, Duration.ofHours(1));
-        } else {
-            logger.debug("Cache miss for user by ID: {}", userId);
+    /**
+     * Atomically adds {@code delta} to one counter of a cached profile, clamping at zero. Nothing is
+     * written when the profile's counters are not cached (or this counter was never known), so the next
+     * read loads exact values from the database instead of a partial count.
+     *
+     * @return the new value, or {@code null} if the counter was not cached
+     */
+    public Long incrementUserCount(Long userId, UserCounter counter, int delta) {
+        Long value = redisTemplateForLocks.execute(INCREMENT_COUNT_SCRIPT,
+                List.of(USER_COUNTS_KEY_PREFIX + userId), counter.field(), Integer.toString(delta));
+        localUserPublicData.invalidate(userId);
+        if (value == null || value < 0) {
+            logger.debug("Counter {} not cached for user ID: {}, skipping update", counter.field(), userId);
+            return null;
+        }
+        publishInvalidation(CACHE_USER_PUBLIC_DATA, userId.toString());
+        logger.debug("Updated {} count for user ID: {}. New count: {}", counter.field(), userId, value);
+        return value;
+    }
+
+    /**
+     * Applies several users' counter deltas in a single script call, one hash update per user. Used by batch
+     * consumers that have already merged the deltas of many events.
+     *
+     * @return the number of users whose cached counters changed
+     */
+    public long incrementUserCounts(Map<Long, Map<UserCounter, Integer>> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        UserCounter[] counters = UserCounter.values();
+        List<String> keys = new ArrayList<>(deltas.size());
+        List<String> args = new ArrayList<>(1 + counters.length * (deltas.size() + 1));
+        args.add(Integer.toString(counters.length));
+        for (UserCounter counter : counters) {
+            args.add(counter.field());
+        }
+        for (Map.Entry<Long, Map<UserCounter, Integer>> entry : deltas.entrySet()) {
+            keys.add(USER_COUNTS_KEY_PREFIX + entry.getKey());
+            for (UserCounter counter : counters) {
+                args.add(Integer.toString(entry.getValue().getOrDefault(counter, 0)));
+            }
+        }
+        Long changed = redisTemplateForLocks.execute(INCREMENT_COUNTS_SCRIPT, keys, args.toArray());
+        for (Long userId : deltas.keySet()) {
+            localUserPublicData.invalidate(userId);
+            publishInvalidation(CACHE_USER_PUBLIC_DATA, userId.toString());
         }
-        return user;
+        logger.debug("Updated counters of {} users, {} were cached", deltas.size(), changed);
+        return changed != null ? changed : 0;
+    }
+
+    public User getUserById(Long userId) {
+        CachedValue<User> entry = getUserByIdEntry(userId);
+        return entry != null ? entry.value() : null;
+    }
+
+    public CachedValue<User> getUserByIdEntry(Long userId) {
+        return getEntry(userId, localUsers, redisTemplateForUser, USER_BY_ID_KEY_PREFIX + userId,
+                CACHE_USER, User.class::cast);
     }
 
     public void setUserById(Long userId, User user) {
         ValueOperations<String, User> valueOps = redisTemplateForUser.opsForValue();
         String key = USER_BY_ID_KEY_PREFIX + userId;
-        valueOps.set(key, user);
-        redisTemplateForUser.expire(key, Duration.ofHours(1));
+        valueOps.set(key, user, redisTtl);
+        localUsers.put(userId, freshEntry(user));
+        publishInvalidation(CACHE_USER, userId.toString());
         logger.debug("Set user in cache for ID: {}", userId);
     }
 
-    public boolean trySetLock(String key, long timeoutSeconds) {
-        return redisTemplateForLocks.opsForValue().setIfAbsent(key, "locked", Duration.ofSeconds(timeoutSeconds));
+    /**
+     * Drops every cached view of a user (profile, counters, entity and the username mapping) on all nodes,
+     * so the next read loads the current row from the database.
+     */
+    public void evictUser(Long userId, String username) {
+        redisTemplateForLocks.delete(List.of(USER_PUBLIC_DATA_KEY_PREFIX + userId, USER_COUNTS_KEY_PREFIX + userId,
+                USER_BY_ID_KEY_PREFIX + userId, USERNAME_TO_ID_KEY_PREFIX + username));
+        localUserPublicData.invalidate(userId);
+        localUsers.invalidate(userId);
+        localUserIds.invalidate(username);
+        publishInvalidation(CACHE_USER_PUBLIC_DATA, userId.toString());
+        publishInvalidation(CACHE_USER, userId.toString());
+        publishInvalidation(CACHE_USER_ID, username);
+        logger.debug("Evicted user from cache for ID: {}", userId);
+    }
+
+    /**
+     * Multi-get of user public data. Keys missing from L1 are fetched from Redis with a single MGET;
+     * the returned map only contains the users that were cached.
+     */
+    public Map<Long, UserPublicData> getUserPublicDataBatch(Collection<Long> userIds) {
+        Map<Long, UserPublicData> result = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return result;
+        }
+        List<Long> distinctIds = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        localUserPublicData.getAllPresent(distinctIds).forEach((userId, entry) -> result.put(userId, entry.value()));
+        recordLookups(CACHE_USER_PUBLIC_DATA, TIER_LOCAL, result.size(), distinctIds.size() - result.size());
+
+        List<Long> missing = distinctIds.stream().filter(userId -> !result.containsKey(userId)).toList();
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Object> values = redisTemplateForUserPublicData.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, UserPublicData> ops = (RedisOperations<String, UserPublicData>) operations;
+                for (Long userId : missing) {
+                    ops.opsForValue().get(USER_PUBLIC_DATA_KEY_PREFIX + userId);
+                    ops.opsForHash().entries(USER_COUNTS_KEY_PREFIX + userId);
+                }
+                return null;
+            }
+        });
+
+        int redisHits = 0;
+        for (int i = 0; i < missing.size(); i++) {
+            UserPublicData data = withCounts(values.get(2 * i), values.get(2 * i + 1));
+            if (data != null) {
+                result.put(missing.get(i), data);
+                localUserPublicData.put(missing.get(i), new CachedValue<>(data, CachedValue.UNKNOWN_EXPIRY));
+                redisHits++;
+            }
+        }
+        recordLookups(CACHE_USER_PUBLIC_DATA, TIER_REDIS, redisHits, missing.size() - redisHits);
+        logger.debug("Batch lookup on {}: {} requested, {} found", CACHE_USER_PUBLIC_DATA, distinctIds.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Multi-get of username to user ID mappings, returning only the cached entries.
+     */
+    public Map<String, Long> getUserIdsByUsernames(Collection<String> usernames) {
+        return getBatch(usernames, localUserIds, redisTemplateForLong,
+                USERNAME_TO_ID_KEY_PREFIX, CACHE_USER_ID, value -> ((Number) value).longValue());
+    }
+
+    /**
+     * Populates the username to user ID cache after a batch load from the database.
+     */
+    public void putUserIdsByUsernames(Map<String, Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Map<String, Long> entries = new HashMap<>();
+        userIds.forEach((username, userId) -> {
+            entries.put(USERNAME_TO_ID_KEY_PREFIX + username, userId);
+            localUserIds.put(username, freshEntry(userId));
+        });
+        setBatch(redisTemplateForLong, entries);
+        logger.debug("Set {} user IDs in cache", userIds.size());
+    }
+
+    /**
+     * Reads one entry from L1 or, on a local miss, from Redis together with its remaining TTL
+     * (GET and PTTL pipelined in a single round trip).
+     */
+    private <K, V> CachedValue<V> getEntry(K key, Cache<K, CachedValue<V>> localCache, RedisTemplate<String, ?> template,
+                                           String redisKey, String cacheName, Function<Object, V> converter) {
+        CachedValue<V> entry = localCache.getIfPresent(key);
+        recordLookup(cacheName, TIER_LOCAL, entry != null);
+        if (entry != null) {
+            return entry;
+        }
+
+        List<Object> results = template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <RK, RV> Object execute(RedisOperations<RK, RV> operations) {
+                RedisOperations<String, ?> ops = (RedisOperations<String, ?>) operations;
+                ops.opsForValue().get(redisKey);
+                ops.getExpire(redisKey, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+
+        Object value = results.isEmpty() ? null : results.get(0);
+        recordLookup(cacheName, TIER_REDIS, value != null);
+        if (value == null) {
+            logger.debug("Cache miss on {} for key: {}", cacheName, key);
+            return null;
+        }
+
+        long ttlMillis = results.size() > 1 && results.get(1) instanceof Number ttl ? ttl.longValue() : -1;
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : CachedValue.UNKNOWN_EXPIRY;
+        entry = new CachedValue<>(converter.apply(value), expiresAt);
+        localCache.put(key, entry);
+        logger.debug("Cache hit on {} for key: {}", cacheName, key);
+        return entry;
+    }
+
+    private <K, V> Map<K, V> getBatch(Collection<K> keys, Cache<K, CachedValue<V>> localCache, RedisTemplate<String, ?> template,
+                                      String keyPrefix, String cacheName, Function<Object, V> converter) {
+        Map<K, V> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<K> distinctKeys = keys.stream().filter(Objects::nonNull).distinct().toList();
+        localCache.getAllPresent(distinctKeys).forEach((key, entry) -> result.put(key, entry.value()));
+        recordLookups(cacheName, TIER_LOCAL, result.size(), distinctKeys.size() - result.size());
+
+        List<K> missing = distinctKeys.stream().filter(key -> !result.containsKey(key)).toList();
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<String> redisKeys = missing.stream().map(key -> keyPrefix + key).toList();
+        List<?> values = template.opsForValue().multiGet(redisKeys);
+        int redisHits = 0;
+        if (values != null) {
+            for (int i = 0; i < missing.size(); i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    V converted = converter.apply(value);
+                    result.put(missing.get(i), converted);
+                    localCache.put(missing.get(i), new CachedValue<>(converted, CachedValue.UNKNOWN_EXPIRY));
+                    redisHits++;
+                }
+            }
+        }
+        recordLookups(cacheName, TIER_REDIS, redisHits, missing.size() - redisHits);
+        logger.debug("Batch lookup on {}: {} requested, {} found", cacheName, distinctKeys.size(), result.size());
+        return result;
+    }
+
+    private <V> void setBatch(RedisTemplate<String, V> template, Map<String, V> entries) {
+        template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, T> Object execute(RedisOperations<K, T> operations) {
+                ValueOperations<String, V> valueOps = ((RedisOperations<String, V>) operations).opsForValue();
+                entries.forEach((key, value) -> valueOps.set(key, value, redisTtl));
+                return null;
+            }
+        });
+    }
+
+    private static UserPublicData withCounts(Object profile, Object counts) {
+        if (!(profile instanceof UserPublicData data) || !(counts instanceof Map<?, ?> fields) || fields.isEmpty()) {
+            return null;
+        }
+        for (UserCounter counter : UserCounter.values()) {
+            Object value = fields.get(counter.field());
+            counter.set(data, value != null ? Integer.valueOf(value.toString()) : null);
+        }
+        return data;
+    }
+
+    private <V> CachedValue<V> freshEntry(V value) {
+        return new CachedValue<>(value, System.currentTimeMillis() + redisTtl.toMillis());
     }
 
-    public void deleteLock(String key) {
-        redisTemplateForLocks.delete(key);
+    /**
+     * Broadcasts an L1 eviction to the other instances. The message carries this node's id so
+     * the publisher keeps the value it has just written.
+     */
+    private void publishInvalidation(String cache, String key) {
+        try {
+            redisTemplateForLocks.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + cache + "|" + key);
+        } catch (Exception e) {
+            logger.warn("Failed to publish cache invalidation for {} {}: {}", cache, key, e.toString());
+        }
+    }
+
+    void onInvalidationMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        evictLocal(parts[1], parts[2]);
+    }
+
+    private void evictLocal(String cache, String key) {
+        try {
+            switch (cache) {
+                case CACHE_USER_ID -> {
+                    localUserIds.invalidate(key);
+                    localMissingUsernames.invalidate(key);
+                }
+                case CACHE_MISSING_USERNAME -> localMissingUsernames.invalidate(key);
+                case CACHE_USER_PUBLIC_DATA -> localUserPublicData.invalidate(Long.valueOf(key));
+                case CACHE_USER -> localUsers.invalidate(Long.valueOf(key));
+                default -> logger.warn("Unknown cache in invalidation message: {}", cache);
+            }
+            logger.debug("Evicted local {} entry for key: {}", cache, key);
+        } catch (NumberFormatException e) {
+            logger.warn("Malformed cache invalidation key for {}: {}", cache, key);
+        }
+    }
+
+    private void recordLookup(String cache, String tier, boolean hit) {
+        recordLookups(cache, tier, hit ? 1 : 0, hit ? 0 : 1);
+    }
+
+    private void recordLookups(String cache, String tier, int hits, int misses) {
+        if (hits > 0) {
+            meterRegistry.counter("user.cache.lookups", "cache", cache, "tier", tier, "result", "hit").increment(hits);
+        }
+        if (misses > 0) {
+            meterRegistry.counter("user.cache.lookups", "cache", cache, "tier", tier, "result", "miss").increment(misses);
+        }
     }
 }
@@ -0,0 +1,13 @@
+package com.toiter.userservice.service;
+
+/**
+ * A cached value together with the instant (epoch millis) its Redis entry expires.
+ * {@link #UNKNOWN_EXPIRY} is used when the entry was read without its TTL (e.g. through MGET).
+ */
+public record CachedValue<V>(V value, long expiresAtMillis) {
+    public static final long UNKNOWN_EXPIRY = Long.MAX_VALUE;
+
+    public long remainingMillis() {
+        return expiresAtMillis == UNKNOWN_EXPIRY ? Long.MAX_VALUE : expiresAtMillis - System.currentTimeMillis();
+    }
+}
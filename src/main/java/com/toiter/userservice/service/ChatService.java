@@ -10,11 +10,13 @@ import com.toiter.userservice.producer.KafkaProducer;
 import com.toiter.userservice.repository.ChatRepository;
 import com.toiter.userservice.repository.MessageRepository;
 import com.toiter.userservice.repository.UserRepository;
-import com.toiter.userservice.entity.User;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
@@ -35,6 +37,7 @@ public class ChatService {
         this.userService = userService;
     }
 
+    @Transactional
     public Chat createChat(Long user1Id, Long user2Id) {
         // Garantir user1Id < user2Id para evitar duplicatas
         Long smallerId = Math.min(user1Id, user2Id);
@@ -56,6 +59,7 @@ public class ChatService {
         return chat;
     }
 
+    @Transactional
     public MessageData sendMessage(Long chatId, Long senderId, String content) {
         Chat chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new NoSuchElementException("Chat not found"));
@@ -92,15 +96,21 @@ public class ChatService {
     public Page<ChatData> getChatsForUser(Long userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
         Page<ChatData> basePage = chatRepository.findChatDataByUserId(userId, pageable);
+        List<Long> receiverIds = basePage.getContent().stream()
+                .map(ChatData::getReceiverId)
+                .toList();
+
+        Map<Long, String> profileImageUrls;
+        try {
+            profileImageUrls = userService.getProfileImageUrls(receiverIds);
+        } catch (Exception e) {
+            // cache or database unavailable; leave the receiver images empty
+            profileImageUrls = Map.of();
+        }
+
+        Map<Long, String> imageUrls = profileImageUrls;
         return basePage.map(cd -> {
-            Long receiverId = cd.getReceiverId();
-            String publicUrl = null;
-            try {
-                User receiver = userService.getUserById(receiverId);
-                publicUrl = receiver.getProfileImageUrl();
-            } catch (Exception e) {
-                // user may not exist or cache miss; leave publicUrl null
-            }
+            String publicUrl = cd.getReceiverId() != null ? imageUrls.get(cd.getReceiverId()) : null;
             cd.setReceiverProfileImageUrl(publicUrl != null ? publicUrl : "");
             return cd;
         });
@@ -0,0 +1,157 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Counts consumer retries and dead letters, and replays dead-lettered records back to their original topic.
+ * <p>
+ * Replay reads a dead-letter topic with its own consumer group ({@value #REPLAY_GROUP}), so each record is
+ * replayed once; offsets are committed only after the broker acknowledged the republished records. Retry and
+ * dead-letter headers are dropped, so a replayed record starts over with the full retry budget.
+ */
+@Service
+public class DeadLetterService {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterService.class);
+
+    public static final String DLT_SUFFIX = "-dlt";
+    static final String REPLAY_GROUP = "dlt-replay";
+    private static final Set<String> DEAD_LETTER_TOPICS = Set.of(
+            "follow-events-topic" + DLT_SUFFIX,
+            "user-updated-topic" + DLT_SUFFIX,
+            "chat-events-topic" + DLT_SUFFIX,
+            "post-created-topic" + DLT_SUFFIX);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    private final ConsumerFactory<String, byte[]> deadLetterConsumerFactory;
+    private final KafkaTemplate<String, Object> retryKafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public DeadLetterService(ConsumerFactory<String, byte[]> deadLetterConsumerFactory,
+                             @Qualifier("retryKafkaTemplate") KafkaTemplate<String, Object> retryKafkaTemplate,
+                             MeterRegistry meterRegistry) {
+        this.deadLetterConsumerFactory = deadLetterConsumerFactory;
+        this.retryKafkaTemplate = retryKafkaTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records a failed delivery that will be retried or dead-lettered.
+     */
+    public void recordRetry(String topic) {
+        meterRegistry.counter("kafka.consumer.retries", "topic", topic).increment();
+    }
+
+    /**
+     * Records a record that reached its dead-letter topic, with the failure written in its DLT headers.
+     */
+    public void recordDeadLetter(ConsumerRecord<?, ?> record) {
+        Header reason = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+        recordDeadLetter(record, reason != null ? new String(reason.value(), StandardCharsets.UTF_8) : null);
+    }
+
+    public void recordDeadLetter(ConsumerRecord<?, ?> record, String reason) {
+        meterRegistry.counter("kafka.consumer.dead.letters", "topic", record.topic()).increment();
+        logger.error("Dead-lettered record from {}-{}@{} (key {}): {}",
+                record.topic(), record.partition(), record.offset(), record.key(), reason);
+    }
+
+    /**
+     * Republishes up to {@code max} records of a dead-letter topic to the topic they came from.
+     *
+     * @return the number of records replayed
+     * @throws IllegalArgumentException if {@code deadLetterTopic} is not one of this service's dead-letter topics
+     */
+    public synchronized int replay(String deadLetterTopic, int max) {
+        if (!DEAD_LETTER_TOPICS.contains(deadLetterTopic)) {
+            throw new IllegalArgumentException("Unknown dead-letter topic: " + deadLetterTopic);
+        }
+        String originalTopic = deadLetterTopic.substring(0, deadLetterTopic.length() - DLT_SUFFIX.length());
+        Properties overrides = new Properties();
+        overrides.put("enable.auto.commit", "false");
+        overrides.put("auto.offset.reset", "earliest");
+        overrides.put("max.poll.records", Integer.toString(Math.min(max, 500)));
+
+        int replayed = 0;
+        try (Consumer<String, byte[]> consumer = deadLetterConsumerFactory.createConsumer(REPLAY_GROUP, null, null, overrides)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(deadLetterTopic).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+
+            while (replayed < max) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                List<CompletableFuture<?>> acks = new ArrayList<>();
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (replayed >= max) {
+                        break;
+                    }
+                    acks.add(retryKafkaTemplate.send(new ProducerRecord<String, Object>(originalTopic, null, record.key(),
+                            record.value(), replayHeaders(record))));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                    replayed++;
+                }
+                awaitAcks(acks);
+                consumer.commitSync(offsets);
+            }
+        }
+        meterRegistry.counter("kafka.consumer.dead.letters.replayed", "topic", originalTopic).increment(replayed);
+        logger.info("Replayed {} records from {} to {}", replayed, deadLetterTopic, originalTopic);
+        return replayed;
+    }
+
+    private static RecordHeaders replayHeaders(ConsumerRecord<String, byte[]> record) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            String key = header.key();
+            if (!key.startsWith(KafkaHeaders.PREFIX + "dlt-") && !key.startsWith("retry_topic-")) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+
+    private static void awaitAcks(List<CompletableFuture<?>> acks) {
+        try {
+            CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying dead letters", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to replay dead letters", e);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.toiter.userservice.service;
 
 import com.toiter.userservice.entity.Follow;
+import com.toiter.userservice.model.CursorPage;
 import com.toiter.userservice.model.FollowCreatedEvent;
+import com.toiter.userservice.model.FollowCursor;
 import com.toiter.userservice.model.FollowData;
 import com.toiter.userservice.model.FollowDeletedEvent;
 import com.toiter.userservice.producer.KafkaProducer;
@@ -11,10 +13,13 @@ import jakarta.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,12 +29,15 @@ public class FollowService {
     private final FollowRepository followRepository;
     private final KafkaProducer kafkaProducer;
     private final UserService userService;
+    private final UserStatsService userStatsService;
     private static final Logger logger = LoggerFactory.getLogger(FollowService.class);
+    static final int MAX_PAGE_SIZE = 100;
 
-    public FollowService(FollowRepository followRepository, KafkaProducer kafkaProducer, UserService userService) {
+    public FollowService(FollowRepository followRepository, KafkaProducer kafkaProducer, UserService userService, UserStatsService userStatsService) {
         this.followRepository = followRepository;
         this.kafkaProducer = kafkaProducer;
         this.userService = userService;
+        this.userStatsService = userStatsService;
     }
 
     public List<Follow> getFollowers(Long userId) {
@@ -40,24 +48,52 @@ public class FollowService {
         return followRepository.findByFollowerId(followerId);
     }
 
-    public List<FollowData> getFollowersData(Long userId) {
-        List<FollowData> followers = followRepository.findFollowerDataByUserId(userId);
-        return followers.stream()
-                .peek(fd -> {
-                    String imageUrl = userService.getProfilePictureUrl(fd.getProfileImageUrl());
-                    fd.setProfileImageUrl(imageUrl);
-                })
-                .toList();
+    /**
+     * One page of a user's followers, newest first. {@code cursor} is the {@code nextCursor}
+     * of the previous page, or {@code null} for the first page.
+     */
+    public CursorPage<FollowData> getFollowersData(Long userId, String cursor, int size) {
+        int pageSize = normalizePageSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<FollowData> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = followRepository.findFollowerDataByUserId(userId, limit);
+        } else {
+            FollowCursor position = FollowCursor.decode(cursor);
+            rows = followRepository.findFollowerDataByUserIdAfterCursor(userId, position.followDate(), position.followId(), limit);
+        }
+        return toPage(rows, pageSize);
+    }
+
+    /**
+     * One page of the users that {@code followerId} follows, newest first.
+     */
+    public CursorPage<FollowData> getFollowingsData(Long followerId, String cursor, int size) {
+        int pageSize = normalizePageSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<FollowData> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = followRepository.findFollowingDataByFollowerId(followerId, limit);
+        } else {
+            FollowCursor position = FollowCursor.decode(cursor);
+            rows = followRepository.findFollowingDataByFollowerIdAfterCursor(followerId, position.followDate(), position.followId(), limit);
+        }
+        return toPage(rows, pageSize);
+    }
+
+    private static int normalizePageSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
     }
 
-    public List<FollowData> getFollowingsData(Long followerId) {
-        List<FollowData> followings = followRepository.findFollowingDataByFollowerId(followerId);
-        return followings.stream()
-                .peek(fd -> {
-                    String imageUrl = userService.getProfilePictureUrl(fd.getProfileImageUrl());
-                    fd.setProfileImageUrl(imageUrl);
-                })
-                .toList();
+    private CursorPage<FollowData> toPage(List<FollowData> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<FollowData> content = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        userService.hydrateFollowData(content);
+        String nextCursor = hasMore ? FollowCursor.of(content.getLast()).encode() : null;
+        return new CursorPage<>(content, nextCursor);
     }
 
     @Transactional
@@ -73,6 +109,7 @@ public class FollowService {
 
         try {
             savedFollow = followRepository.save(follow);
+            userStatsService.recordFollow(userId, followerId, 1);
             logger.info("User {} followed user {} successfully", followerId, userId);
         } catch (DataIntegrityViolationException e) {
             logger.error("User {} is already following user {}", followerId, userId);
@@ -103,6 +140,7 @@ public class FollowService {
 
         if (follow.isPresent()) {
             followRepository.delete(follow.get());
+            userStatsService.recordFollow(userId, followerId, -1);
             logger.info("User {} unfollowed user {} successfully", followerId, userId);
 
             try {
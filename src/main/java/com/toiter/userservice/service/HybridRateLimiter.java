@@ -0,0 +1,171 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter that decides in memory and talks to Redis off the request path.
+ * <p>
+ * Each key has a local bucket of tokens leased from the shared Redis window counter in chunks of
+ * {@code rate-limit.hybrid.chunk-size}. A request takes a token with a single atomic decrement; when the
+ * bucket runs low a background lease tops it up. Until a lease arrives the node may admit up to
+ * {@code rate-limit.hybrid.max-drift} requests per key and window on credit, which the next lease pays back.
+ * <p>
+ * The limit therefore drifts by at most {@code max-drift} extra requests per node and window (credit
+ * not yet confirmed when Redis runs out), and unused leased tokens are lost when the window ends
+ * (at most one chunk per node). Headers report the local view. Every policy is enforced as a leased
+ * fixed window here, whatever its configured algorithm.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "rate-limit.mode", havingValue = "hybrid")
+public class HybridRateLimiter implements RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(HybridRateLimiter.class);
+
+    private final RateLimitService rateLimitService;
+    private final int chunkSize;
+    private final int maxDrift;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor leaseExecutor;
+
+    public HybridRateLimiter(RateLimitService rateLimitService,
+                             MeterRegistry meterRegistry,
+                             @Value("${rate-limit.hybrid.chunk-size:10}") int chunkSize,
+                             @Value("${rate-limit.hybrid.max-drift:5}") int maxDrift,
+                             @Value("${rate-limit.hybrid.lease-threads:2}") int leaseThreads) {
+        this.rateLimitService = rateLimitService;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxDrift = Math.max(0, maxDrift);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.leaseExecutor = new ThreadPoolExecutor(leaseThreads, leaseThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10_000), runnable -> {
+                    Thread thread = new Thread(runnable, "rate-limit-lease-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.leaseExecutor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("rate.limit.hybrid.buckets", buckets, Map::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseExecutor.shutdownNow();
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(Long userId, String ipAddress, RateLimitPolicy policy) {
+        String key = rateLimitService.buildRateLimitKey(userId, ipAddress, policy.name());
+        int limit = policy.limit();
+        long windowMillis = policy.windowSeconds() * 1000L;
+        long now = System.currentTimeMillis();
+
+        Bucket bucket = buckets.compute(key, (k, existing) ->
+                existing == null || existing.isExpired(now) ? new Bucket(now + windowMillis) : existing);
+
+        long left = bucket.available.decrementAndGet();
+        boolean allowed;
+        if (left >= 0) {
+            allowed = true;
+        } else if (!bucket.exhausted && -left <= Math.min(maxDrift, limit)) {
+            allowed = true; // on credit until the next lease arrives
+        } else {
+            bucket.available.incrementAndGet();
+            allowed = false;
+        }
+
+        if (!bucket.exhausted && left < Math.max(1, chunkSize / 2)) {
+            requestLease(key, bucket, limit, windowMillis);
+        }
+
+        long resetSeconds = Math.max(0, (bucket.windowEndsAt - now + 999) / 1000);
+        return new RateLimitDecision(allowed, limit, Math.max(0, left), resetSeconds);
+    }
+
+    /**
+     * Tops up buckets that are in debt (their leases may have been rejected or failed) and drops expired ones.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.hybrid.sync-interval-ms:1000}")
+    public void sync() {
+        long now = System.currentTimeMillis();
+        buckets.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+        buckets.forEach((key, bucket) -> {
+            if (!bucket.exhausted && bucket.available.get() < 0) {
+                requestLease(key, bucket, bucket.limit, bucket.windowMillis);
+            }
+        });
+    }
+
+    private void requestLease(String key, Bucket bucket, int limit, long windowMillis) {
+        if (!bucket.leasing.compareAndSet(false, true)) {
+            return;
+        }
+        bucket.limit = limit;
+        bucket.windowMillis = windowMillis;
+        try {
+            leaseExecutor.execute(() -> lease(key, bucket, limit, windowMillis));
+        } catch (RejectedExecutionException e) {
+            bucket.leasing.set(false);
+        }
+    }
+
+    void lease(String key, Bucket bucket, int limit, long windowMillis) {
+        try {
+            // Also cover what was already admitted on credit
+            long debt = Math.max(0, -bucket.available.get());
+            long requested = Math.min(limit, chunkSize + debt);
+            RateLimitService.Lease lease = rateLimitService.reserve(key, requested, limit, windowMillis);
+            bucket.windowEndsAt = System.currentTimeMillis() + lease.ttlMillis();
+            if (lease.granted() < requested) {
+                bucket.exhausted = true;
+            }
+            bucket.available.addAndGet(lease.granted());
+        } catch (Exception e) {
+            logger.warn("Failed to lease rate limit quota for {}: {}", key, e.toString());
+        } finally {
+            bucket.leasing.set(false);
+        }
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    static final class Bucket {
+        final AtomicLong available = new AtomicLong();
+        final AtomicBoolean leasing = new AtomicBoolean();
+        volatile long windowEndsAt;
+        volatile boolean exhausted;
+        volatile int limit;
+        volatile long windowMillis;
+
+        Bucket(long windowEndsAt) {
+            this.windowEndsAt = windowEndsAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= windowEndsAt;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.toiter.userservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies user-service access tokens locally from the public keys at the JWKS endpoint
+ * ({@code /.well-known/jwks.json}), so other services need neither the HMAC secret nor a call back here.
+ * <p>
+ * Self-contained (JDK HTTP client, Jackson and jjwt only) so it can be copied into or depended on by other
+ * services. Keys are cached for {@code cacheTtl}; a token with an unknown {@code kid} (after a rotation)
+ * triggers a refresh, at most once per {@code minRefreshInterval}. Only ES256 tokens are accepted.
+ * Revocation is not checked: callers that need it must ask the user service.
+ */
+public class JwksTokenVerifier {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final URI jwksUri;
+    private final HttpClient httpClient;
+    private final Duration cacheTtl;
+    private final Duration minRefreshInterval;
+    private final JwtParser parser;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long fetchedAt;
+
+    public JwksTokenVerifier(URI jwksUri, Duration cacheTtl, Duration minRefreshInterval) {
+        this(jwksUri, HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build(), cacheTtl, minRefreshInterval);
+    }
+
+    public JwksTokenVerifier(URI jwksUri, HttpClient httpClient, Duration cacheTtl, Duration minRefreshInterval) {
+        this.jwksUri = jwksUri;
+        this.httpClient = httpClient;
+        this.cacheTtl = cacheTtl;
+        this.minRefreshInterval = minRefreshInterval;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        if (!"ES256".equals(header.getAlgorithm())) {
+                            throw new UnsupportedJwtException("Unsupported signature algorithm: " + header.getAlgorithm());
+                        }
+                        return keyFor(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return the verified claims ({@code sub} is the username, {@code userId} the user id)
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, badly signed, expired or uses an unknown key
+     */
+    public Claims verify(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private PublicKey keyFor(String keyId) {
+        if (keyId == null) {
+            throw new SignatureException("Token has no key id");
+        }
+        long now = System.currentTimeMillis();
+        PublicKey key = keys.get(keyId);
+        if (key == null || now - fetchedAt > cacheTtl.toMillis()) {
+            refresh(now, key == null);
+            key = keys.get(keyId);
+        }
+        if (key == null) {
+            throw new SignatureException("Unknown signing key: " + keyId);
+        }
+        return key;
+    }
+
+    private synchronized void refresh(long now, boolean unknownKey) {
+        long age = now - fetchedAt;
+        if (age < minRefreshInterval.toMillis() || (!unknownKey && age <= cacheTtl.toMillis())) {
+            return; // another thread just refreshed, or refreshes are throttled
+        }
+        try {
+            HttpRequest request = HttpRequest.newBuilder(jwksUri).timeout(Duration.ofSeconds(5)).GET().build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("JWKS request failed with status " + response.statusCode());
+            }
+            keys = parseJwks(response.body());
+        } catch (IOException e) {
+            // Keep the previous keys; tokens signed with them still verify
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchedAt = now;
+        }
+    }
+
+    static Map<String, PublicKey> parseJwks(String json) throws IOException {
+        Map<String, PublicKey> parsed = new HashMap<>();
+        for (JsonNode jwk : MAPPER.readTree(json).path("keys")) {
+            if (!"EC".equals(jwk.path("kty").asText()) || !"P-256".equals(jwk.path("crv").asText())) {
+                continue;
+            }
+            parsed.put(jwk.path("kid").asText(), ecPublicKey(jwk.path("x").asText(), jwk.path("y").asText()));
+        }
+        return Map.copyOf(parsed);
+    }
+
+    private static PublicKey ecPublicKey(String x, String y) throws IOException {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            ECPoint point = new ECPoint(new BigInteger(1, Base64.getUrlDecoder().decode(x)),
+                    new BigInteger(1, Base64.getUrlDecoder().decode(y)));
+            return KeyFactory.getInstance("EC")
+                    .generatePublic(new ECPublicKeySpec(point, parameters.getParameterSpec(ECParameterSpec.class)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Invalid EC key in JWKS", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.config.JwtSigningProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keys used to sign and verify JWTs: the ES256 keys of {@link JwtSigningProperties}, selected by the
+ * {@code kid} header, and the legacy HMAC secret. Also builds the JWKS document with the public keys,
+ * once, since keys only change on restart.
+ */
+@Service
+public class JwtKeyRing extends SigningKeyResolverAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private final SecretKey hmacKey;
+    private final boolean acceptHmac;
+    private final Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+    private final String activeKeyId;
+    private final PrivateKey activePrivateKey;
+    private final Map<String, Object> jwks;
+
+    public JwtKeyRing(JwtSigningProperties properties, @Value("${jwt.secret}") String secret) {
+        this.hmacKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.acceptHmac = properties.isAcceptHmac();
+
+        PrivateKey activeKey = null;
+        for (JwtSigningProperties.Key key : properties.getKeys()) {
+            if (key.getId() == null || key.getPublicKey() == null) {
+                throw new IllegalArgumentException("jwt.signing.keys entries need an id and a public-key");
+            }
+            publicKeys.put(key.getId(), parsePublicKey(key.getPublicKey()));
+            if (key.getId().equals(properties.getActiveKeyId())) {
+                if (key.getPrivateKey() == null) {
+                    throw new IllegalArgumentException("Active signing key " + key.getId() + " has no private-key");
+                }
+                activeKey = parsePrivateKey(key.getPrivateKey());
+            }
+        }
+        if (properties.getActiveKeyId() != null && activeKey == null) {
+            throw new IllegalArgumentException("Unknown jwt.signing.active-key-id: " + properties.getActiveKeyId());
+        }
+        this.activeKeyId = properties.getActiveKeyId();
+        this.activePrivateKey = activeKey;
+        this.jwks = buildJwks();
+
+        logger.info("JWT signing with {}, {} public keys published, HMAC tokens {}",
+                activeKeyId != null ? "ES256 key " + activeKeyId : "HMAC", publicKeys.size(),
+                acceptHmac ? "accepted" : "rejected");
+    }
+
+    /**
+     * Signs with the active ES256 key, or with the HMAC secret if none is configured.
+     */
+    public JwtBuilder sign(JwtBuilder builder) {
+        if (activePrivateKey == null) {
+            return builder.signWith(hmacKey);
+        }
+        return builder.setHeaderParam(JwsHeader.KEY_ID, activeKeyId)
+                .signWith(activePrivateKey, SignatureAlgorithm.ES256);
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        return resolve(header);
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, String plaintext) {
+        return resolve(header);
+    }
+
+    private Key resolve(JwsHeader<?> header) {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.forName(header.getAlgorithm());
+        if (algorithm.isHmac()) {
+            if (!acceptHmac) {
+                throw new UnsupportedJwtException("HMAC-signed tokens are no longer accepted");
+            }
+            return hmacKey;
+        }
+        if (algorithm != SignatureAlgorithm.ES256) {
+            throw new UnsupportedJwtException("Unsupported signature algorithm: " + algorithm);
+        }
+        PublicKey key = header.getKeyId() != null ? publicKeys.get(header.getKeyId()) : null;
+        if (key == null) {
+            throw new SignatureException("Unknown signing key: " + header.getKeyId());
+        }
+        return key;
+    }
+
+    /**
+     * The JWKS document ({@code {"keys": [...]}}) with every public key, EC P-256 in JWK form.
+     */
+    public Map<String, Object> getJwks() {
+        return jwks;
+    }
+
+    private Map<String, Object> buildJwks() {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        publicKeys.forEach((id, key) -> {
+            ECPublicKey ecKey = (ECPublicKey) key;
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("kid", id);
+            jwk.put("use", "sig");
+            jwk.put("alg", "ES256");
+            jwk.put("x", base64Url(ecKey.getW().getAffineX()));
+            jwk.put("y", base64Url(ecKey.getW().getAffineY()));
+            keys.add(jwk);
+        });
+        return Map.of("keys", List.copyOf(keys));
+    }
+
+    private static String base64Url(BigInteger coordinate) {
+        // Fixed-length unsigned big-endian, as required for P-256 coordinates
+        byte[] raw = coordinate.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    static PublicKey parsePublicKey(String encoded) {
+        try {
+            PublicKey key = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(decodePem(encoded)));
+            if (!(key instanceof ECPublicKey ecKey) || ecKey.getParams().getCurve().getField().getFieldSize() != 256) {
+                throw new IllegalArgumentException("Signing keys must be EC P-256");
+            }
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid EC public key", e);
+        }
+    }
+
+    static PrivateKey parsePrivateKey(String encoded) {
+        try {
+            return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(decodePem(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid EC private key", e);
+        }
+    }
+
+    private static byte[] decodePem(String encoded) {
+        String base64 = encoded.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
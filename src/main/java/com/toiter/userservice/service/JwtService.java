@@ -1,23 +1,39 @@
 package com.toiter.userservice.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
-import javax.crypto.SecretKey;
-import io.jsonwebtoken.security.Keys;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs. Verification uses a single parser instance, and verified claims are kept in a
+ * bounded LRU cache keyed by the SHA-256 digest of the token until the token expires, so a token seen
+ * again skips the signature check and JSON parsing. Every token carries a {@code jti} so it can be revoked;
+ * revocation is checked on each use through {@link TokenRevocationService}, so cached claims of a revoked
+ * token are still rejected. Signing keys (ES256 with {@code kid}, or the legacy HMAC secret) come from
+ * {@link JwtKeyRing}.
+ */
 @Service
 public class JwtService {
-
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String SESSION_ID_CLAIM = "sid";
 
     @Value("${jwt.access-token-expiration}")
     private long accessTokenExpiration;
@@ -25,21 +41,69 @@ public class JwtService {
     @Value("${jwt.refresh-token-expiration}")
     private long refreshTokenExpiration;
 
-    private SecretKey key;
+    private final Cache<String, Claims> verifiedClaims;
+    private final boolean claimsCacheEnabled;
+    private final TokenRevocationService tokenRevocationService;
+    private final JwtKeyRing keyRing;
+
+    private JwtParser parser;
+
+    public JwtService(MeterRegistry meterRegistry,
+                      TokenRevocationService tokenRevocationService,
+                      JwtKeyRing keyRing,
+                      @Value("${jwt.claims-cache.max-size:10000}") long claimsCacheMaxSize) {
+        this.tokenRevocationService = tokenRevocationService;
+        this.keyRing = keyRing;
+        this.claimsCacheEnabled = claimsCacheMaxSize > 0;
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, claimsCacheMaxSize))
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(
+                                Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwtClaims");
+    }
 
     @PostConstruct
     public void init() {
-        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(keyRing)
+                .build();
     }
 
     public String generateToken(@NotNull String username, @NotNull @Min(1) Long userId) {
-        return Jwts.builder()
+        return generateToken(username, userId, null);
+    }
+
+    /**
+     * @param sessionId the refresh-token family the access token belongs to ({@code sid} claim), if any
+     */
+    public String generateToken(@NotNull String username, @NotNull @Min(1) Long userId, String sessionId) {
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("userId", userId)
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + accessTokenExpiration))
-                .signWith(key)
-                .compact();
+                .setExpiration(new Date(System.currentTimeMillis() + accessTokenExpiration));
+        if (sessionId != null) {
+            builder.claim(SESSION_ID_CLAIM, sessionId);
+        }
+        return keyRing.sign(builder).compact();
     }
 
     public String extractUsername(@NotNull String token) {
@@ -47,40 +111,62 @@ public class JwtService {
     }
 
     public <T> T extractClaim(@NotNull String token, Function<Claims, T> claimsResolver) {
-        Claims claims = extractAllClaims(token);
+        Claims claims = parseClaims(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(@NotNull String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Verifies the token and returns its claims, from the cache when the same token was verified before.
+     * The returned claims are shared and must not be modified.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, badly signed or expired
+     */
+    public Claims parseClaims(@NotNull String token) {
+        if (!claimsCacheEnabled) {
+            return parser.parseClaimsJws(token).getBody();
+        }
+        String digest = digest(token);
+        Claims claims = verifiedClaims.getIfPresent(digest);
+        if (claims != null) {
+            return claims;
+        }
+        claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(digest, claims);
+        }
+        return claims;
     }
 
     public Long extractUserId(@NotNull String token) {
-        return extractClaim(token, claims -> claims.get("userId", Long.class));
+        return extractUserId(parseClaims(token));
     }
 
-    public boolean isTokenValid(@NotNull String token) {
-        return !isTokenExpired(token);
+    public Long extractUserId(@NotNull Claims claims) {
+        return claims.get("userId", Long.class);
+    }
 
-        // TODO: Verificar se o token foi revogado
+    public boolean isTokenValid(@NotNull String token) {
+        return isTokenValid(parseClaims(token));
     }
 
-    private boolean isTokenExpired(@NotNull String token) {
-        return extractClaim(token, Claims::getExpiration).before(new Date());
+    public boolean isTokenValid(@NotNull Claims claims) {
+        return !claims.getExpiration().before(new Date()) && !tokenRevocationService.isRevoked(claims);
     }
 
-    public String generateRefreshToken(@NotNull String username, @NotNull @Min(1) Long userId) {
-        return Jwts.builder()
+    public String generateRefreshToken(@NotNull String username, @NotNull @Min(1) Long userId,
+                                       @NotNull String sessionId, @NotNull String tokenId) {
+        JwtBuilder builder = Jwts.builder()
+                .setId(tokenId)
                 .setSubject(username)
                 .claim("userId", userId)
+                .claim(SESSION_ID_CLAIM, sessionId)
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
-                .signWith(key)
-                .compact();
+                .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration));
+        return keyRing.sign(builder).compact();
+    }
+
+    public String extractSessionId(@NotNull Claims claims) {
+        return claims.get(SESSION_ID_CLAIM, String.class);
     }
 
     public long getAccessTokenExpiration() {
@@ -90,4 +176,13 @@ public class JwtService {
     public Date getTokenExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
@@ -0,0 +1,237 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs BCrypt on a dedicated, bounded pool so a burst of logins or registrations cannot occupy every
+ * request thread. When {@code auth.password.queue-capacity} hashes are already waiting, new ones are
+ * rejected at once with a {@link RejectedExecutionException} (answered with 503) instead of queueing.
+ * <p>
+ * At startup the work factor is calibrated: the highest cost, between {@code auth.password.min-cost} and
+ * {@code auth.password.max-cost}, whose hash takes no longer than {@code auth.password.target-millis} on
+ * this machine. Stored hashes with a lower cost are reported by {@link #needsRehash(String)}; stronger ones
+ * are kept, since instances on slower hardware calibrate lower. Those rehashes run on a separate single
+ * thread with its own small queue, so they never take a slot a login or registration could use.
+ */
+@Service
+public class PasswordHashingService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor rehashExecutor;
+    private final AtomicInteger abandoned = new AtomicInteger();
+    private final long targetMillis;
+    private final int minCost;
+    private final int maxCost;
+    private final boolean calibrate;
+    private final long timeoutMillis;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    private volatile int cost;
+    private volatile BCryptPasswordEncoder encoder;
+
+    public PasswordHashingService(MeterRegistry meterRegistry,
+                                  @Value("${auth.password.threads:0}") int threads,
+                                  @Value("${auth.password.queue-capacity:32}") int queueCapacity,
+                                  @Value("${auth.password.rehash-queue-capacity:16}") int rehashQueueCapacity,
+                                  @Value("${auth.password.timeout-ms:5000}") long timeoutMillis,
+                                  @Value("${auth.password.calibrate:true}") boolean calibrate,
+                                  @Value("${auth.password.target-millis:250}") long targetMillis,
+                                  @Value("${auth.password.min-cost:10}") int minCost,
+                                  @Value("${auth.password.max-cost:14}") int maxCost) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.targetMillis = targetMillis;
+        this.minCost = Math.max(4, minCost);
+        this.maxCost = Math.min(31, Math.max(this.minCost, maxCost));
+        this.calibrate = calibrate;
+        this.timeoutMillis = timeoutMillis;
+        this.cost = this.minCost;
+        this.encoder = new BCryptPasswordEncoder(this.cost);
+
+        this.executor = newPool("password-hash-", poolSize, queueCapacity);
+        this.rehashExecutor = newPool("password-rehash-", 1, rehashQueueCapacity);
+
+        this.encodeTimer = meterRegistry.timer("auth.password.hash.duration", "operation", "encode");
+        this.matchesTimer = meterRegistry.timer("auth.password.hash.duration", "operation", "matches");
+        this.rejected = meterRegistry.counter("auth.password.hash.rejected");
+        // Timed-out hashes keep their thread until BCrypt finishes, so they still count as backlog
+        Gauge.builder("auth.password.hash.queue.depth", executor, e -> e.getQueue().size() + abandoned.get())
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("auth.password.rehash.queue.depth", rehashExecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    private static ThreadPoolExecutor newPool(String threadPrefix, int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("auth.password.hash.cost", this, service -> service.cost).register(meterRegistry);
+    }
+
+    /**
+     * Picks the work factor: raises the cost while the measured hash time stays under the target.
+     */
+    @PostConstruct
+    public void calibrate() {
+        if (!calibrate) {
+            return;
+        }
+        int chosen = minCost;
+        // Warm up the JIT so the first measurement is not inflated
+        new BCryptPasswordEncoder(4).encode("calibration");
+        for (int candidate = minCost; candidate <= maxCost; candidate++) {
+            long start = System.nanoTime();
+            new BCryptPasswordEncoder(candidate).encode("calibration");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMillis > targetMillis && candidate > minCost) {
+                break;
+            }
+            chosen = candidate;
+            // Each step doubles the work, so stop before the next one would exceed the target
+            if (elapsedMillis * 2 > targetMillis) {
+                break;
+            }
+        }
+        this.cost = chosen;
+        this.encoder = new BCryptPasswordEncoder(chosen);
+        logger.info("Password hashing calibrated to BCrypt cost {} (target {} ms)", chosen, targetMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        rehashExecutor.shutdownNow();
+    }
+
+    /**
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public String encode(String rawPassword) {
+        BCryptPasswordEncoder current = encoder;
+        return run(() -> encodeTimer.record(() -> current.encode(rawPassword)));
+    }
+
+    /**
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        BCryptPasswordEncoder current = encoder;
+        return run(() -> matchesTimer.record(() -> current.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Whether the hash was made with a cost below the calibrated one (or is not a BCrypt hash).
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return !matcher.find() || Integer.parseInt(matcher.group(1)) < cost;
+    }
+
+    /**
+     * Hashes in the background on the rehash thread without blocking the caller; dropped silently when
+     * {@code auth.password.rehash-queue-capacity} rehashes are already waiting.
+     */
+    public void encodeAsync(String rawPassword, Consumer<String> onEncoded) {
+        BCryptPasswordEncoder current = encoder;
+        try {
+            rehashExecutor.execute(() -> {
+                try {
+                    onEncoded.accept(encodeTimer.record(() -> current.encode(rawPassword)));
+                } catch (Exception e) {
+                    logger.warn("Background password rehash failed: {}", e.toString());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipped password rehash, rehash queue is full");
+        }
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Runs a hash on the pool and waits at most {@code auth.password.timeout-ms} for it.
+     *
+     * @throws RejectedExecutionException if the pool is saturated or the hash timed out
+     */
+    <T> T run(Callable<T> task) {
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                state.set(RUNNING);
+                try {
+                    return task.call();
+                } finally {
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                        abandoned.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RejectedExecutionException("Password hashing is overloaded");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // BCrypt ignores interrupts: a hash that already started runs to completion on its thread
+            future.cancel(true);
+            if (state.get() == QUEUED) {
+                executor.remove((Runnable) future);
+            }
+            abandoned.incrementAndGet();
+            if (!state.compareAndSet(RUNNING, ABANDONED)) {
+                abandoned.decrementAndGet();
+            }
+            rejected.increment();
+            throw new RejectedExecutionException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -1,38 +1,360 @@
 package com.toiter.userservice.service;
 
+import com.toiter.userservice.model.PostCount;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+/**
+ * Client for post-service post counts, used by {@link PostCountBackfill}.
+ * <p>
+ * Concurrent lookups are collected for {@code post-client.batch.window-millis} (or until
+ * {@code post-client.batch.max-size} ids are waiting) and sent as one {@code GET /posts/counts?userIds=...};
+ * requests for the same id in a window share one result. If post-service does not expose the bulk
+ * endpoint the batch falls back to the single-id {@code GET /posts/count?userId=...}. Both report the instant
+ * they counted at in the {@value #COUNTED_AT_HEADER} header.
+ * <p>
+ * Failures and timeouts feed a circuit breaker. While it is open no request is sent, and users whose
+ * count could not be fetched are left out of the result.
+ */
 @Service
 public class PostClientService {
 
     private static final Logger logger = LoggerFactory.getLogger(PostClientService.class);
-    private final RestTemplate restTemplate;
 
-    @Value("${SERVICE_POST_URL}")
-    private String postServiceUrl;
+    static final String COUNTED_AT_HEADER = "X-Counted-At";
 
-    @Value("${service.shared-key}")
-    private String sharedKey;
+    private static final ParameterizedTypeReference<Map<Long, Integer>> COUNTS_TYPE = new ParameterizedTypeReference<>() {
+    };
 
-    public PostClientService(RestTemplate restTemplate) {
+    private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String postServiceUrl;
+    private final String sharedKey;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long callTimeoutMillis;
+    private final long bulkRetryMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService executor;
+    private final DistributionSummary batchSizes;
+
+    private final Object pendingLock = new Object();
+    private Map<Long, CompletableFuture<PostCount>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private volatile long bulkUnsupportedUntil;
+
+    public PostClientService(RestTemplate restTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${SERVICE_POST_URL}") String postServiceUrl,
+                             @Value("${service.shared-key}") String sharedKey,
+                             @Value("${post-client.batch.window-millis:5}") long windowMillis,
+                             @Value("${post-client.batch.max-size:100}") int maxBatchSize,
+                             @Value("${post-client.call-timeout-ms:1500}") long callTimeoutMillis,
+                             @Value("${post-client.bulk-retry-ms:600000}") long bulkRetryMillis,
+                             @Value("${post-client.circuit.failure-threshold:5}") int failureThreshold,
+                             @Value("${post-client.circuit.open-ms:10000}") long openMillis,
+                             @Value("${post-client.threads:4}") int threads) {
         this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.postServiceUrl = postServiceUrl;
+        this.sharedKey = sharedKey;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.bulkRetryMillis = bulkRetryMillis;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+        this.batchSizes = DistributionSummary.builder("post.client.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "post-client-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("post.client.circuit.open", circuitBreaker, breaker -> breaker.isOpen() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Fetches several counts at once through the batching path. Users whose count could not be
+     * fetched are left out of the result.
+     */
+    public Map<Long, PostCount> getPostsCounts(Collection<Long> userIds) {
+        Map<Long, PostCount> counts = new HashMap<>();
+        // Checked first: an empty call would take the half-open trial and never report back
+        if (userIds.isEmpty() || !circuitBreaker.allowRequest()) {
+            return counts;
+        }
+        Map<Long, CompletableFuture<PostCount>> futures = new LinkedHashMap<>();
+        userIds.forEach(userId -> futures.computeIfAbsent(userId, this::enqueue));
+        for (Map.Entry<Long, CompletableFuture<PostCount>> entry : futures.entrySet()) {
+            try {
+                PostCount count = entry.getValue().get(callTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (count != null) {
+                    counts.put(entry.getKey(), count);
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                logger.debug("Failed to fetch posts count for user ID {}: {}", entry.getKey(), e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return counts;
+    }
+
+    private CompletableFuture<PostCount> enqueue(Long userId) {
+        Map<Long, CompletableFuture<PostCount>> fullBatch = null;
+        CompletableFuture<PostCount> future;
+        synchronized (pendingLock) {
+            future = pending.get(userId);
+            if (future != null) {
+                meterRegistry.counter("post.client.coalesced").increment();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(userId, future);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush();
+            }
+        }
+        if (fullBatch != null) {
+            Map<Long, CompletableFuture<PostCount>> batch = fullBatch;
+            submit(() -> send(batch), batch);
+        }
+        return future;
+    }
+
+    private void scheduleFlush() {
+        try {
+            executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled = false;
+            circuitBreaker.recordFailure();
+            takePending().values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    void flush() {
+        Map<Long, CompletableFuture<PostCount>> batch;
+        synchronized (pendingLock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
     }
 
-    public Integer getPostsCount(Long userId) {
-        logger.debug("Fetching posts count for user ID: {}", userId);
+    private Map<Long, CompletableFuture<PostCount>> takePending() {
+        Map<Long, CompletableFuture<PostCount>> batch = pending;
+        pending = new LinkedHashMap<>();
+        flushScheduled = false;
+        return batch;
+    }
+
+    private void submit(Runnable task, Map<Long, CompletableFuture<PostCount>> batch) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.recordFailure();
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void send(Map<Long, CompletableFuture<PostCount>> batch) {
+        batchSizes.record(batch.size());
+        if (batch.size() > 1 && System.currentTimeMillis() >= bulkUnsupportedUntil) {
+            try {
+                ResponseEntity<Map<Long, Integer>> response = fetchBulk(new ArrayList<>(batch.keySet()));
+                circuitBreaker.recordSuccess();
+                Map<Long, Integer> counts = response.getBody() != null ? response.getBody() : Map.of();
+                LocalDateTime countedAt = countedAt(response);
+                batch.forEach((userId, future) ->
+                        future.complete(new PostCount(counts.getOrDefault(userId, 0), countedAt)));
+                return;
+            } catch (HttpClientErrorException e) {
+                int status = e.getStatusCode().value();
+                if (status != HttpStatus.NOT_FOUND.value() && status != HttpStatus.METHOD_NOT_ALLOWED.value()) {
+                    failAll(batch, e);
+                    return;
+                }
+                logger.info("post-service has no bulk count endpoint, using single-id requests");
+                bulkUnsupportedUntil = System.currentTimeMillis() + bulkRetryMillis;
+            } catch (RuntimeException e) {
+                failAll(batch, e);
+                return;
+            }
+        }
+
+        batch.forEach((userId, future) -> {
+            if (batch.size() == 1) {
+                fetchSingleInto(userId, future);
+            } else {
+                submit(() -> fetchSingleInto(userId, future), Map.of(userId, future));
+            }
+        });
+    }
+
+    private void fetchSingleInto(Long userId, CompletableFuture<PostCount> future) {
+        try {
+            ResponseEntity<Integer> response = fetchSingle(userId);
+            circuitBreaker.recordSuccess();
+            future.complete(response.getBody() != null ? new PostCount(response.getBody(), countedAt(response)) : null);
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void failAll(Map<Long, CompletableFuture<PostCount>> batch, RuntimeException e) {
+        circuitBreaker.recordFailure();
+        batch.values().forEach(future -> future.completeExceptionally(e));
+    }
+
+    private ResponseEntity<Map<Long, Integer>> fetchBulk(List<Long> userIds) {
+        String ids = userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String url = postServiceUrl + "/posts/counts?userIds=" + ids;
+        return timed("bulk", () -> restTemplate.exchange(url, HttpMethod.GET, authorizedEntity(), COUNTS_TYPE));
+    }
+
+    private ResponseEntity<Integer> fetchSingle(Long userId) {
         String url = postServiceUrl + "/posts/count?userId=" + userId;
+        return timed("single", () -> restTemplate.exchange(url, HttpMethod.GET, authorizedEntity(), Integer.class));
+    }
+
+    /**
+     * The instant post-service counted at, from its {@value #COUNTED_AT_HEADER} response header.
+     */
+    private static LocalDateTime countedAt(ResponseEntity<?> response) {
+        String value = response.getHeaders().getFirst(COUNTED_AT_HEADER);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            logger.warn("Ignoring unparseable {} header from post-service: {}", COUNTED_AT_HEADER, value);
+            return null;
+        }
+    }
+
+    private HttpEntity<Void> authorizedEntity() {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + sharedKey);
+        return new HttpEntity<>(headers);
+    }
+
+    private <T> T timed(String type, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            Timer.builder("post.client.request")
+                    .tag("type", type)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Opens after {@code failureThreshold} consecutive failures and lets a single trial request through
+     * once {@code openMillis} have passed; the trial closes it again on success. Every path that was allowed
+     * through must end in {@link #recordSuccess()} or {@link #recordFailure()}, or the trial stays in flight and
+     * the circuit stays open.
+     */
+    static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMillis;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = Math.max(1, failureThreshold);
+            this.openMillis = openMillis;
+        }
+
+        synchronized boolean allowRequest() {
+            if (consecutiveFailures < failureThreshold) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
 
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (consecutiveFailures >= failureThreshold) {
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+        }
 
-        return restTemplate.exchange(url, HttpMethod.GET, entity, Integer.class).getBody();
+        synchronized boolean isOpen() {
+            return consecutiveFailures >= failureThreshold;
+        }
     }
 }
@@ -0,0 +1,82 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.PostCount;
+import com.toiter.userservice.repository.UserStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-off import of post counts from post-service for users that existed before the post counter
+ * was fed by events. Enabled with {@code stats.posts.backfill.enabled=true}; users that already have
+ * a baseline are skipped, so an interrupted run can simply be restarted. Each count must come with the instant
+ * post-service took it at (see {@link PostClientService}); users without one are left for the next run.
+ */
+@Service
+public class PostCountBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(PostCountBackfill.class);
+
+    private final UserStatsRepository userStatsRepository;
+    private final UserStatsService userStatsService;
+    private final PostClientService postClientService;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public PostCountBackfill(UserStatsRepository userStatsRepository,
+                             UserStatsService userStatsService,
+                             PostClientService postClientService,
+                             @Value("${stats.posts.backfill.enabled:false}") boolean enabled,
+                             @Value("${stats.posts.backfill.batch-size:100}") int batchSize) {
+        this.userStatsRepository = userStatsRepository;
+        this.userStatsService = userStatsService;
+        this.postClientService = postClientService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void runOnStartup() {
+        if (enabled) {
+            backfill();
+        }
+    }
+
+    /**
+     * @return the number of users whose post count was imported
+     */
+    public long backfill() {
+        long start = System.currentTimeMillis();
+        long imported = 0;
+        long failed = 0;
+        long lastId = 0;
+        List<Long> userIds;
+        do {
+            userIds = userStatsRepository.findUserIdsWithoutPostBaseline(lastId, batchSize);
+            if (userIds.isEmpty()) {
+                break;
+            }
+            Map<Long, PostCount> counts = postClientService.getPostsCounts(userIds);
+            for (Long userId : userIds) {
+                PostCount count = counts.get(userId);
+                // Without post-service's own counting instant the events cannot be placed around the count
+                if (count == null || count.countedAt() == null) {
+                    failed++;
+                    continue;
+                }
+                userStatsService.applyPostBaseline(userId, count.count(), count.countedAt());
+                imported++;
+            }
+            lastId = userIds.getLast();
+        } while (userIds.size() == batchSize);
+
+        logger.info("Post count backfill imported {} users ({} failed, will be retried on the next run) in {} ms",
+                imported, failed, System.currentTimeMillis() - start);
+        return imported;
+    }
+}
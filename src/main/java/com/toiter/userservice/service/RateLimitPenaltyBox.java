@@ -0,0 +1,98 @@
+package com.toiter.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of clients that were denied by the rate limiter, so their later requests are rejected
+ * without a Redis call or a JWT parse until the window resets.
+ * <p>
+ * Entries are keyed by policy and by the raw credential of the request (the JWT as sent, or the IP when
+ * there is none) and expire at the reset deadline returned with the first 429. A client presenting a new
+ * token goes back to Redis and is boxed again on its next denial.
+ */
+@Service
+public class RateLimitPenaltyBox {
+
+    private final boolean enabled;
+    private final Cache<String, Denial> denials;
+    private final Counter blockedLocally;
+    private final Counter blockedByRedis;
+
+    public RateLimitPenaltyBox(MeterRegistry meterRegistry,
+                               @Value("${rate-limit.penalty-box.enabled:true}") boolean enabled,
+                               @Value("${rate-limit.penalty-box.max-size:10000}") long maxSize) {
+        this.enabled = enabled;
+        this.denials = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxSize))
+                .expireAfter(new Expiry<String, Denial>() {
+                    @Override
+                    public long expireAfterCreate(String key, Denial denial, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, denial.deadlineMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Denial denial, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, denial, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Denial denial, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.blockedLocally = meterRegistry.counter("rate.limit.blocked", "source", "local");
+        this.blockedByRedis = meterRegistry.counter("rate.limit.blocked", "source", "redis");
+        Gauge.builder("rate.limit.penalty.box.size", denials, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /**
+     * @param jwt the token as sent by the client, not parsed; {@code null} for anonymous requests
+     */
+    public String keyFor(RateLimitPolicy policy, String jwt, String ipAddress) {
+        return policy.name() + (jwt != null ? ":token:" + jwt : ":ip:" + ipAddress);
+    }
+
+    /**
+     * @return a denial for a client still in the box, or {@code null} if the request must go to the limiter
+     */
+    public RateLimitDecision check(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Denial denial = denials.getIfPresent(key);
+        if (denial == null) {
+            return null;
+        }
+        long remainingMillis = denial.deadlineMillis() - System.currentTimeMillis();
+        if (remainingMillis <= 0) {
+            return null;
+        }
+        blockedLocally.increment();
+        return new RateLimitDecision(false, denial.limit(), 0, (remainingMillis + 999) / 1000);
+    }
+
+    /**
+     * Boxes the client until the reset of a denial from the limiter.
+     */
+    public void block(String key, RateLimitDecision decision) {
+        blockedByRedis.increment();
+        if (enabled && decision.resetSeconds() > 0) {
+            denials.put(key, new Denial(System.currentTimeMillis() + decision.resetSeconds() * 1000, decision.limit()));
+        }
+    }
+
+    private record Denial(long deadlineMillis, int limit) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.config.RateLimitProperties;
+import com.toiter.userservice.model.RateLimitPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the rate-limit policy of a request from {@link RateLimitProperties}, compiled once into a
+ * {@link RouteTrie}. Routes without a rule fall back to the login/GET/other defaults of {@link RateLimitService}.
+ */
+@Service
+public class RateLimitPolicyEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitPolicyEngine.class);
+
+    // Marks skipped routes in the trie; compared by reference
+    private static final RateLimitPolicy SKIP = new RateLimitPolicy("skip", 0, 0, RateLimitPolicy.Algorithm.FIXED_WINDOW);
+
+    private static final String LOGIN_PATH = "/auth/login";
+
+    private final RouteTrie<RateLimitPolicy> routes = new RouteTrie<>();
+    private final RateLimitPolicy getPolicy;
+    private final RateLimitPolicy otherPolicy;
+
+    public RateLimitPolicyEngine(RateLimitProperties properties, RateLimitService rateLimitService) {
+        this.getPolicy = rateLimitService.policyFor(RateLimitService.RequestType.GET);
+        this.otherPolicy = rateLimitService.policyFor(RateLimitService.RequestType.OTHER);
+
+        for (String pattern : properties.getSkip()) {
+            routes.add(RouteTrie.ANY_METHOD, pattern, SKIP);
+        }
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            if (rule.getName() == null || rule.getRequests() < 1 || rule.getWindowSeconds() < 1) {
+                throw new IllegalArgumentException("Rate limit rule needs a name, requests >= 1 and window-seconds >= 1: " + rule.getName());
+            }
+            for (String pattern : rule.getPatterns()) {
+                routes.add(rule.getMethod(), pattern, rule.toPolicy());
+            }
+        }
+        // Login keeps its own, stricter default unless a rule above already covers it
+        RateLimitPolicy loginPolicy = rateLimitService.policyFor(RateLimitService.RequestType.LOGIN);
+        if (routes.match(HttpMethod.POST.name(), LOGIN_PATH) == null) {
+            routes.add(RouteTrie.ANY_METHOD, LOGIN_PATH, loginPolicy);
+        }
+        logger.info("Loaded {} rate limit rules and {} skipped routes", properties.getRules().size(), properties.getSkip().size());
+    }
+
+    /**
+     * @param path the request path without the servlet context path
+     * @return the policy for the request, or {@code null} if the route is not rate limited
+     */
+    public RateLimitPolicy resolve(String method, String path) {
+        RateLimitPolicy policy = routes.match(method, path);
+        if (policy == SKIP) {
+            return null;
+        }
+        if (policy != null) {
+            return policy;
+        }
+        return HttpMethod.GET.matches(method) ? getPolicy : otherPolicy;
+    }
+}
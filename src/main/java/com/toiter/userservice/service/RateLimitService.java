@@ -1,17 +1,114 @@
 package com.toiter.userservice.service;
 
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service for managing rate limiting using Redis.
- * Implements sliding window rate limiting per user.
+ * Limits each user (or IP for unauthenticated requests) per policy, with the policy's algorithm
+ * (fixed window, sliding log or GCRA), in one script call per request.
+ * This is the default {@link RateLimiter}; it also hands out quota leases to {@link HybridRateLimiter}.
  */
 @Service
-public class RateLimitService {
+public class RateLimitService implements RateLimiter {
+
+    /**
+     * Increments the window counter, starting the window on the first request, and returns
+     * {@code {allowed, remaining, ttlMillis}} so a check costs a single round trip.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> FIXED_WINDOW_SCRIPT = new DefaultRedisScript<>(
+            "local count = redis.call('incr', KEYS[1]) " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl < 0 then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "ttl = tonumber(ARGV[2]) " +
+                    "end " +
+                    "local limit = tonumber(ARGV[1]) " +
+                    "if count > limit then " +
+                    "return {0, 0, ttl} " +
+                    "end " +
+                    "return {1, limit - count, ttl}",
+            List.class);
+
+    /**
+     * Keeps the timestamps (Redis server time, ms) of the requests admitted in the last window in a sorted set.
+     * {@code ARGV}: limit, window ms, unique member. Returns {@code {allowed, remaining, msUntilOldestExpires}}.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SLIDING_LOG_SCRIPT = new DefaultRedisScript<>(
+            "local limit = tonumber(ARGV[1]) " +
+                    "local window = tonumber(ARGV[2]) " +
+                    "local time = redis.call('time') " +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+                    "redis.call('zremrangebyscore', KEYS[1], '-inf', now - window) " +
+                    "local count = redis.call('zcard', KEYS[1]) " +
+                    "local allowed = 0 " +
+                    "if count < limit then " +
+                    "redis.call('zadd', KEYS[1], now, now .. ':' .. ARGV[3]) " +
+                    "count = count + 1 " +
+                    "allowed = 1 " +
+                    "end " +
+                    "redis.call('pexpire', KEYS[1], window) " +
+                    "local reset = window " +
+                    "local oldest = redis.call('zrange', KEYS[1], 0, 0, 'WITHSCORES') " +
+                    "if oldest[2] then " +
+                    "reset = tonumber(oldest[2]) + window - now " +
+                    "end " +
+                    "return {allowed, limit - count, reset}",
+            List.class);
+
+    /**
+     * GCRA: stores the theoretical arrival time (TAT) of the next request. {@code ARGV}: limit, period ms.
+     * Returns {@code {allowed, remaining, ms}} where ms is the retry delay when denied, else the time until the
+     * bucket is fully drained.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> GCRA_SCRIPT = new DefaultRedisScript<>(
+            "local limit = tonumber(ARGV[1]) " +
+                    "local period = tonumber(ARGV[2]) " +
+                    "local interval = period / limit " +
+                    "local time = redis.call('time') " +
+                    "local now = tonumber(time[1]) * 1000 + tonumber(time[2]) / 1000 " +
+                    "local tat = tonumber(redis.call('get', KEYS[1])) or now " +
+                    "if tat < now then " +
+                    "tat = now " +
+                    "end " +
+                    "local newTat = tat + interval " +
+                    "local allowAt = newTat - period " +
+                    "if allowAt > now then " +
+                    "return {0, 0, math.ceil(allowAt - now)} " +
+                    "end " +
+                    "redis.call('set', KEYS[1], string.format('%.3f', newTat), 'PX', math.ceil(newTat - now)) " +
+                    "return {1, math.floor((now - allowAt) / interval), math.ceil(newTat - now)}",
+            List.class);
+
+    /**
+     * Takes up to {@code ARGV[1]} requests of the window's quota at once; returns {@code {granted, ttlMillis}}.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local requested = tonumber(ARGV[1]) " +
+                    "local used = redis.call('incrby', KEYS[1], requested) " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl < 0 then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "ttl = tonumber(ARGV[2]) " +
+                    "end " +
+                    "local granted = requested " +
+                    "local limit = tonumber(ARGV[3]) " +
+                    "if used > limit then " +
+                    "granted = math.max(0, requested - (used - limit)) " +
+                    "end " +
+                    "return {granted, ttl}",
+            List.class);
 
     private final RedisTemplate<String, Long> redisTemplateForLong;
 
@@ -38,81 +135,73 @@ public class RateLimitService {
     }
 
     /**
-     * Check if a user is allowed to make a request based on rate limits.
+     * Counts a request against the caller's window for {@code policy} and decides whether it is allowed.
      *
      * @param userId The user ID (can be null for unauthenticated requests)
      * @param ipAddress The IP address of the request (used for unauthenticated users)
-     * @param requestType The type of request (GET, OTHER, LOGIN)
-     * @return true if the request is allowed, false otherwise
+     * @param policy The policy resolved for the route
+     * @return the decision together with the remaining requests and the time until the window resets
      */
-    public boolean isAllowed(Long userId, String ipAddress, RequestType requestType) {
-        String key = buildRateLimitKey(userId, ipAddress, requestType);
-        int limit = getLimit(requestType);
-        int windowSeconds = getWindowSeconds(requestType);
-
-        // Read raw value from Redis bypassing the generic type to avoid ClassCastException
-        Object rawCount = ((RedisTemplate) redisTemplateForLong).opsForValue().get(key);
-        Long currentCount = convertToLong(rawCount);
-
-        if (currentCount == null) {
-            // First request in the window
-            redisTemplateForLong.opsForValue().set(key, 1L, Duration.ofSeconds(windowSeconds));
-            return true;
-        }
-
-        if (currentCount >= limit) {
-            // Rate limit exceeded
-            return false;
+    @Override
+    public RateLimitDecision tryAcquire(Long userId, String ipAddress, RateLimitPolicy policy) {
+        String key = buildRateLimitKey(userId, ipAddress, policy.name());
+        long limit = policy.limit();
+        long windowMillis = policy.windowSeconds() * 1000L;
+
+        // Each algorithm keeps a different Redis type, so they get separate keys
+        List<?> result = switch (policy.algorithm()) {
+            case FIXED_WINDOW -> redisTemplateForLong.execute(FIXED_WINDOW_SCRIPT, List.of(key), limit, windowMillis);
+            case SLIDING_LOG -> redisTemplateForLong.execute(SLIDING_LOG_SCRIPT, List.of(key + ":log"), limit, windowMillis,
+                    ThreadLocalRandom.current().nextLong());
+            case GCRA -> redisTemplateForLong.execute(GCRA_SCRIPT, List.of(key + ":gcra"), limit, windowMillis);
+        };
+        if (result == null || result.size() < 3) {
+            throw new IllegalStateException("Unexpected rate limit script result: " + result);
         }
 
-        // Increment the counter
-        redisTemplateForLong.opsForValue().increment(key);
-        return true;
+        boolean allowed = toLong(result.get(0)) == 1;
+        long remaining = Math.max(0, toLong(result.get(1)));
+        long resetSeconds = (Math.max(0, toLong(result.get(2))) + 999) / 1000;
+        return new RateLimitDecision(allowed, policy.limit(), remaining, resetSeconds);
     }
 
     /**
-     * Get the remaining number of requests for a user.
-     *
-     * @param userId The user ID
-     * @param ipAddress The IP address of the request
-     * @param requestType The type of request
-     * @return The number of remaining requests
+     * Same as {@link #tryAcquire(Long, String, RateLimitPolicy)} with the default policy of {@code requestType}.
      */
-    public long getRemainingRequests(Long userId, String ipAddress, RequestType requestType) {
-        String key = buildRateLimitKey(userId, ipAddress, requestType);
-        int limit = getLimit(requestType);
-
-        // Read raw value from Redis and convert safely
-        Object rawCount = ((RedisTemplate) redisTemplateForLong).opsForValue().get(key);
-        Long currentCount = convertToLong(rawCount);
-        if (currentCount == null) {
-            return limit;
-        }
+    public RateLimitDecision tryAcquire(Long userId, String ipAddress, RequestType requestType) {
+        return tryAcquire(userId, ipAddress, policyFor(requestType));
+    }
 
-        long remaining = limit - currentCount;
-        return Math.max(0, remaining);
+    /**
+     * The default fixed-window policy for a request type ({@code rate-limit.get|other|login.*}).
+     */
+    public RateLimitPolicy policyFor(RequestType requestType) {
+        return new RateLimitPolicy(requestType.name().toLowerCase(), getLimit(requestType),
+                getWindowSeconds(requestType), RateLimitPolicy.Algorithm.FIXED_WINDOW);
     }
 
     /**
-     * Get the time until the rate limit resets.
+     * Check if a user is allowed to make a request based on rate limits.
      *
-     * @param userId The user ID
-     * @param ipAddress The IP address of the request
-     * @param requestType The type of request
-     * @return The time in seconds until reset, or 0 if no limit is active
+     * @return true if the request is allowed, false otherwise
+     * @see #tryAcquire(Long, String, RequestType)
      */
-    public long getResetTime(Long userId, String ipAddress, RequestType requestType) {
-        String key = buildRateLimitKey(userId, ipAddress, requestType);
-        Long ttl = redisTemplateForLong.getExpire(key);
-        
-        if (ttl == null || ttl < 0) {
-            return 0;
+    public boolean isAllowed(Long userId, String ipAddress, RequestType requestType) {
+        return tryAcquire(userId, ipAddress, requestType).allowed();
+    }
+
+    /**
+     * Reserves up to {@code tokens} requests from the shared window counter in one round trip.
+     */
+    Lease reserve(String key, long tokens, int limit, long windowMillis) {
+        List<?> result = redisTemplateForLong.execute(RESERVE_SCRIPT, List.of(key), tokens, windowMillis, (long) limit);
+        if (result == null || result.size() < 2) {
+            throw new IllegalStateException("Unexpected rate limit reserve result: " + result);
         }
-        
-        return ttl;
+        return new Lease(toLong(result.get(0)), toLong(result.get(1)));
     }
 
-    private String buildRateLimitKey(Long userId, String ipAddress, RequestType requestType) {
+    String buildRateLimitKey(Long userId, String ipAddress, String policyName) {
         String userKey;
         if (userId != null) {
             userKey = "user:" + userId;
@@ -121,7 +210,7 @@ public class RateLimitService {
         } else {
             userKey = "unknown";
         }
-        return String.format("rate_limit:%s:%s", userKey, requestType.name().toLowerCase());
+        return String.format("rate_limit:%s:%s", userKey, policyName);
     }
 
     private int getLimit(RequestType requestType) {
@@ -132,7 +221,7 @@ public class RateLimitService {
         };
     }
 
-    private int getWindowSeconds(RequestType requestType) {
+    int getWindowSeconds(RequestType requestType) {
         return switch (requestType) {
             case GET -> getWindowSeconds;
             case OTHER -> otherWindowSeconds;
@@ -144,23 +233,17 @@ public class RateLimitService {
         return getLimit(requestType);
     }
 
+    private static long toLong(Object raw) {
+        if (raw instanceof Number number) {
+            return number.longValue();
+        }
+        return Long.parseLong(String.valueOf(raw));
+    }
+
     /**
-     * Convert various raw Redis value types into a Long.
-     * Supports Long, Integer, other Number implementations and String numeric values.
-     * Returns null when the raw value is null or cannot be converted.
+     * Quota taken from Redis: {@code granted} requests, valid until the window ends in {@code ttlMillis}.
      */
-    private Long convertToLong(Object raw) {
-        if (raw == null) return null;
-        if (raw instanceof Long) return (Long) raw;
-        if (raw instanceof Number) return ((Number) raw).longValue();
-        if (raw instanceof String) {
-            try {
-                return Long.parseLong((String) raw);
-            } catch (NumberFormatException e) {
-                // fall through
-            }
-        }
-        return null;
+    record Lease(long granted, long ttlMillis) {
     }
 
     public enum RequestType {
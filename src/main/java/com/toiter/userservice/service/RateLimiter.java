@@ -0,0 +1,13 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+
+/**
+ * Decides whether a request fits in the caller's rate limit. Selected with {@code rate-limit.mode}:
+ * {@code redis} (default, {@link RateLimitService}) or {@code hybrid} ({@link HybridRateLimiter}).
+ */
+public interface RateLimiter {
+
+    RateLimitDecision tryAcquire(Long userId, String ipAddress, RateLimitPolicy policy);
+}
@@ -0,0 +1,191 @@
+package com.toiter.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.toiter.userservice.model.RefreshSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Refresh-token families in Redis. Each session is a hash {@code auth:session:<sid>} holding the owner and
+ * the id ({@code jti}) of the only refresh token that may be used next; the user's sessions are indexed in
+ * the set {@code auth:user-sessions:<userId>}. Every operation is a single script call.
+ * <p>
+ * Presenting a refresh token that is not the current one of its family means it was used before, so
+ * someone holds a copy: the whole family is ended. Session liveness is cached in-process for
+ * {@code auth.session.cache-ttl-ms}, so a session ended on another instance may still look alive here
+ * for that long.
+ */
+@Service
+public class RefreshSessionStore {
+
+    static final String SESSION_PREFIX = "auth:session:";
+    static final String USER_SESSIONS_PREFIX = "auth:user-sessions:";
+
+    /**
+     * Creates the session and indexes it. {@code ARGV}: userId, token id, now ms, ttl ms.
+     */
+    private static final DefaultRedisScript<Long> CREATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hset', KEYS[1], 'user', ARGV[1], 'current', ARGV[2], 'created', ARGV[3], 'used', ARGV[3]) " +
+                    "redis.call('pexpire', KEYS[1], ARGV[4]) " +
+                    "redis.call('sadd', KEYS[2], KEYS[1]) " +
+                    "redis.call('pexpire', KEYS[2], ARGV[4]) " +
+                    "return 1",
+            Long.class);
+
+    /**
+     * Swaps the current token id if the presented one is current (1). A missing session returns 0; a stale
+     * token ends the family and returns -1. {@code ARGV}: presented id, new id, now ms, ttl ms.
+     */
+    private static final DefaultRedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('hget', KEYS[1], 'current') " +
+                    "if not current then " +
+                    "return 0 " +
+                    "end " +
+                    "if current ~= ARGV[1] then " +
+                    "redis.call('del', KEYS[1]) " +
+                    "redis.call('srem', KEYS[2], KEYS[1]) " +
+                    "return -1 " +
+                    "end " +
+                    "redis.call('hset', KEYS[1], 'current', ARGV[2], 'used', ARGV[3]) " +
+                    "redis.call('pexpire', KEYS[1], ARGV[4]) " +
+                    "redis.call('pexpire', KEYS[2], ARGV[4]) " +
+                    "return 1",
+            Long.class);
+
+    /**
+     * Lists the user's live sessions as flat {@code [key, created, used, ...]}, dropping expired ones from the index.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> LIST_SCRIPT = new DefaultRedisScript<>(
+            "local result = {} " +
+                    "for _, key in ipairs(redis.call('smembers', KEYS[1])) do " +
+                    "local fields = redis.call('hmget', key, 'created', 'used') " +
+                    "if fields[1] then " +
+                    "table.insert(result, key) " +
+                    "table.insert(result, fields[1]) " +
+                    "table.insert(result, fields[2]) " +
+                    "else " +
+                    "redis.call('srem', KEYS[1], key) " +
+                    "end " +
+                    "end " +
+                    "return result",
+            List.class);
+
+    /**
+     * Ends one session (KEYS[1] set) if it belongs to the user, or all of them when no session key is given.
+     */
+    private static final DefaultRedisScript<Long> END_SCRIPT = new DefaultRedisScript<>(
+            "if KEYS[2] then " +
+                    "local removed = redis.call('srem', KEYS[1], KEYS[2]) " +
+                    "if removed == 1 then redis.call('del', KEYS[2]) end " +
+                    "return removed " +
+                    "end " +
+                    "local keys = redis.call('smembers', KEYS[1]) " +
+                    "for _, key in ipairs(keys) do redis.call('del', key) end " +
+                    "redis.call('del', KEYS[1]) " +
+                    "return #keys",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplateForLocks;
+    private final long ttlMillis;
+    private final Cache<String, Boolean> liveSessions;
+
+    public RefreshSessionStore(RedisTemplate<String, String> redisTemplateForLocks,
+                               MeterRegistry meterRegistry,
+                               @Value("${jwt.refresh-token-expiration}") long ttlMillis,
+                               @Value("${auth.session.cache-ttl-ms:5000}") long cacheTtlMillis,
+                               @Value("${auth.session.cache-max-size:10000}") long cacheMaxSize) {
+        this.redisTemplateForLocks = redisTemplateForLocks;
+        this.ttlMillis = ttlMillis;
+        this.liveSessions = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMillis))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, liveSessions, "refreshSessions");
+    }
+
+    public void create(String sessionId, Long userId, String tokenId) {
+        redisTemplateForLocks.execute(CREATE_SCRIPT, List.of(sessionKey(sessionId), userSessionsKey(userId)),
+                userId.toString(), tokenId, Long.toString(System.currentTimeMillis()), Long.toString(ttlMillis));
+        liveSessions.put(sessionId, true);
+    }
+
+    /**
+     * Makes {@code newTokenId} the only usable refresh token of the session.
+     */
+    public RotationResult rotate(String sessionId, Long userId, String presentedTokenId, String newTokenId) {
+        Long result = redisTemplateForLocks.execute(ROTATE_SCRIPT, List.of(sessionKey(sessionId), userSessionsKey(userId)),
+                presentedTokenId, newTokenId, Long.toString(System.currentTimeMillis()), Long.toString(ttlMillis));
+        if (result == null || result == 0) {
+            liveSessions.invalidate(sessionId);
+            return RotationResult.UNKNOWN_SESSION;
+        }
+        if (result < 0) {
+            liveSessions.invalidate(sessionId);
+            return RotationResult.REUSE_DETECTED;
+        }
+        return RotationResult.ROTATED;
+    }
+
+    /**
+     * Whether the session still exists, answered from the local cache when possible.
+     */
+    public boolean isActive(String sessionId) {
+        return liveSessions.get(sessionId, id -> Boolean.TRUE.equals(redisTemplateForLocks.hasKey(sessionKey(id))));
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<RefreshSession> list(Long userId) {
+        List<Object> flat = redisTemplateForLocks.execute(LIST_SCRIPT, List.of(userSessionsKey(userId)));
+        List<RefreshSession> sessions = new ArrayList<>();
+        if (flat == null) {
+            return sessions;
+        }
+        for (int i = 0; i + 2 < flat.size(); i += 3) {
+            sessions.add(new RefreshSession(
+                    flat.get(i).toString().substring(SESSION_PREFIX.length()),
+                    Instant.ofEpochMilli(Long.parseLong(flat.get(i + 1).toString())),
+                    Instant.ofEpochMilli(Long.parseLong(flat.get(i + 2).toString()))));
+        }
+        return sessions;
+    }
+
+    /**
+     * @return {@code true} if the session existed and belonged to the user
+     */
+    public boolean end(Long userId, String sessionId) {
+        Long removed = redisTemplateForLocks.execute(END_SCRIPT, List.of(userSessionsKey(userId), sessionKey(sessionId)));
+        liveSessions.invalidate(sessionId);
+        return removed != null && removed > 0;
+    }
+
+    public void endAll(Long userId) {
+        redisTemplateForLocks.execute(END_SCRIPT, List.of(userSessionsKey(userId)));
+        liveSessions.invalidateAll();
+    }
+
+    private static String sessionKey(String sessionId) {
+        return SESSION_PREFIX + sessionId;
+    }
+
+    private static String userSessionsKey(Long userId) {
+        return USER_SESSIONS_PREFIX + userId;
+    }
+
+    public enum RotationResult {
+        ROTATED,
+        UNKNOWN_SESSION,
+        REUSE_DETECTED
+    }
+}
@@ -0,0 +1,102 @@
+package com.toiter.userservice.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps (HTTP method, path) to a value using route patterns compiled into a segment trie.
+ * <p>
+ * Pattern segments are literals, {@code *} (exactly one segment) or a trailing {@code **} (zero or more
+ * segments). Lookup walks the path once, preferring literal over {@code *} over {@code **} at each
+ * segment, so its cost depends on the path length rather than on the number of patterns. A method of
+ * {@code *} matches any method; a value registered for the exact method wins.
+ */
+public final class RouteTrie<T> {
+    public static final String ANY_METHOD = "*";
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * @throws IllegalArgumentException if {@code **} is not the last segment or the route is already mapped
+     */
+    public void add(String method, String pattern, T value) {
+        String[] segments = split(pattern);
+        Node<T> node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**")) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("'**' must be the last segment: " + pattern);
+                }
+                if (node.catchAll == null) {
+                    node.catchAll = new Node<>();
+                }
+                node = node.catchAll;
+            } else if (segment.equals("*")) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node<>();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node<>());
+            }
+        }
+        String key = method == null || method.isBlank() ? ANY_METHOD : method.toUpperCase();
+        if (node.values.putIfAbsent(key, value) != null) {
+            throw new IllegalArgumentException("Route already mapped: " + key + " " + pattern);
+        }
+    }
+
+    /**
+     * @return the value of the most specific matching route, or {@code null} if none matches
+     */
+    public T match(String method, String path) {
+        return match(root, split(path), 0, method == null ? ANY_METHOD : method.toUpperCase());
+    }
+
+    private T match(Node<T> node, String[] segments, int index, String method) {
+        if (index == segments.length) {
+            T value = node.valueFor(method);
+            if (value == null && node.catchAll != null) {
+                value = node.catchAll.valueFor(method);
+            }
+            return value;
+        }
+
+        Node<T> literal = node.literals.get(segments[index]);
+        if (literal != null) {
+            T value = match(literal, segments, index + 1, method);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (node.wildcard != null) {
+            T value = match(node.wildcard, segments, index + 1, method);
+            if (value != null) {
+                return value;
+            }
+        }
+        return node.catchAll != null ? node.catchAll.valueFor(method) : null;
+    }
+
+    private static String[] split(String path) {
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            return new String[0];
+        }
+        int start = path.charAt(0) == '/' ? 1 : 0;
+        int end = path.charAt(path.length() - 1) == '/' ? path.length() - 1 : path.length();
+        return start >= end ? new String[0] : path.substring(start, end).split("/");
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> literals = new HashMap<>();
+        private final Map<String, T> values = new HashMap<>(2);
+        private Node<T> wildcard;
+        private Node<T> catchAll;
+
+        private T valueFor(String method) {
+            T value = values.get(method);
+            return value != null ? value : values.get(ANY_METHOD);
+        }
+    }
+}
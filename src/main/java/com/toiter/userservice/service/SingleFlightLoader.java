@@ -0,0 +1,291 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Loads cache misses without stampeding the database.
+ * <ul>
+ *     <li>Concurrent loads of the same key in this instance share a single future (single-flight).</li>
+ *     <li>Across instances the loader holds a Redis lock; the other instances wait for the
+ *     lock-released notification on pub/sub instead of polling, bounded by {@code cache.loader.lock-wait-millis}.</li>
+ *     <li>Hot entries are refreshed in the background before they expire, with probability
+ *     growing as expiry approaches (XFetch: refresh when {@code -delta * beta * ln(rand) >= ttl}).</li>
+ * </ul>
+ */
+@Service
+public class SingleFlightLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    static final String LOCK_RELEASED_CHANNEL = "user:cache:lock-released";
+    private static final String LOCK_KEY_PREFIX = "lock:";
+    private static final double DELTA_SMOOTHING = 0.2;
+
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "redis.call('del', KEYS[1]) " +
+                    "redis.call('publish', ARGV[2], KEYS[1]) " +
+                    "return 1 " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplateForLocks;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final double beta;
+    private final Duration lockTimeout;
+    private final long lockWaitMillis;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> lockReleases = new ConcurrentHashMap<>();
+    private final Map<String, Double> loadDeltaMillis = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    public SingleFlightLoader(RedisTemplate<String, String> redisTemplateForLocks,
+                              RedisMessageListenerContainer listenerContainer,
+                              MeterRegistry meterRegistry,
+                              @Value("${cache.loader.beta:1.0}") double beta,
+                              @Value("${cache.loader.lock-timeout-seconds:5}") long lockTimeoutSeconds,
+                              @Value("${cache.loader.lock-wait-millis:2000}") long lockWaitMillis,
+                              @Value("${cache.loader.refresh-threads:2}") int refreshThreads) {
+        this.redisTemplateForLocks = redisTemplateForLocks;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.beta = beta;
+        this.lockTimeout = Duration.ofSeconds(lockTimeoutSeconds);
+        this.lockWaitMillis = lockWaitMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256), runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PostConstruct
+    public void subscribeToLockReleases() {
+        listenerContainer.addMessageListener(this::onLockReleased, new ChannelTopic(LOCK_RELEASED_CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the cached value for {@code key}, loading it from the source of truth on a miss.
+     *
+     * @param cacheName  cache name, used for metrics and to namespace the lock
+     * @param key        key within the cache
+     * @param cacheRead  reads the cached entry, or returns {@code null} on a miss
+     * @param source     loads the value from the database; exceptions are propagated to every waiter
+     * @param cacheWrite stores a freshly loaded value
+     */
+    public <T> T load(String cacheName, String key, Supplier<CachedValue<T>> cacheRead,
+                      Supplier<T> source, Consumer<T> cacheWrite) {
+        CachedValue<T> entry = cacheRead.get();
+        if (entry != null) {
+            if (shouldRefreshEarly(cacheName, entry)) {
+                scheduleRefresh(cacheName, key, source, cacheWrite);
+            }
+            return entry.value();
+        }
+
+        String flightKey = cacheName + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            meterRegistry.counter("user.cache.load.coalesced", "cache", cacheName, "scope", "local").increment();
+            return awaitFlight(existing, cacheName, cacheRead, source, cacheWrite);
+        }
+
+        try {
+            T value = loadThroughLock(cacheName, key, cacheRead, source, cacheWrite);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private <T> T loadThroughLock(String cacheName, String key, Supplier<CachedValue<T>> cacheRead,
+                                  Supplier<T> source, Consumer<T> cacheWrite) {
+        String lockKey = LOCK_KEY_PREFIX + cacheName + ":" + key;
+        String token = UUID.randomUUID().toString();
+        if (tryLock(lockKey, token)) {
+            try {
+                CachedValue<T> entry = cacheRead.get();
+                if (entry != null) {
+                    return entry.value();
+                }
+                return loadAndStore(cacheName, source, cacheWrite);
+            } finally {
+                unlock(lockKey, token);
+            }
+        }
+
+        meterRegistry.counter("user.cache.load.coalesced", "cache", cacheName, "scope", "distributed").increment();
+        // Register for the release notification before re-checking, so a release in between is not missed
+        CompletableFuture<Void> released = lockReleases.computeIfAbsent(lockKey, k -> new CompletableFuture<>());
+        try {
+            CachedValue<T> entry = cacheRead.get();
+            if (entry != null) {
+                return entry.value();
+            }
+            released.get(lockWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            meterRegistry.counter("user.cache.lock.wait.timeouts", "cache", cacheName).increment();
+            logger.warn("Timed out waiting for cache lock {}, loading directly", lockKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for cache lock " + lockKey, e);
+        } catch (ExecutionException e) {
+            logger.debug("Lock release future for {} failed: {}", lockKey, e.toString());
+        } finally {
+            lockReleases.remove(lockKey, released);
+        }
+
+        CachedValue<T> entry = cacheRead.get();
+        if (entry != null) {
+            return entry.value();
+        }
+        return loadAndStore(cacheName, source, cacheWrite);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T awaitFlight(CompletableFuture<Object> flight, String cacheName, Supplier<CachedValue<T>> cacheRead,
+                              Supplier<T> source, Consumer<T> cacheWrite) {
+        try {
+            return (T) flight.get(lockWaitMillis + lockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for cache load", e);
+        } catch (TimeoutException e) {
+            logger.warn("Timed out waiting for in-flight load on {}, loading directly", cacheName);
+            CachedValue<T> entry = cacheRead.get();
+            return entry != null ? entry.value() : loadAndStore(cacheName, source, cacheWrite);
+        }
+    }
+
+    private <T> T loadAndStore(String cacheName, Supplier<T> source, Consumer<T> cacheWrite) {
+        long start = System.nanoTime();
+        T value = source.get();
+        long elapsedNanos = System.nanoTime() - start;
+
+        Timer.builder("user.cache.load")
+                .tag("cache", cacheName)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        double elapsedMillis = elapsedNanos / 1_000_000.0;
+        loadDeltaMillis.merge(cacheName, elapsedMillis,
+                (previous, sample) -> previous + DELTA_SMOOTHING * (sample - previous));
+
+        if (value != null) {
+            cacheWrite.accept(value);
+        }
+        return value;
+    }
+
+    boolean shouldRefreshEarly(String cacheName, CachedValue<?> entry) {
+        long remaining = entry.remainingMillis();
+        if (remaining == Long.MAX_VALUE) {
+            return false;
+        }
+        double delta = loadDeltaMillis.getOrDefault(cacheName, 0.0);
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return -delta * beta * Math.log(random) >= remaining;
+    }
+
+    private <T> void scheduleRefresh(String cacheName, String key, Supplier<T> source, Consumer<T> cacheWrite) {
+        String flightKey = cacheName + ":" + key;
+        if (!refreshing.add(flightKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                String lockKey = LOCK_KEY_PREFIX + flightKey;
+                String token = UUID.randomUUID().toString();
+                try {
+                    if (tryLock(lockKey, token)) {
+                        try {
+                            loadAndStore(cacheName, source, cacheWrite);
+                            meterRegistry.counter("user.cache.refresh.early", "cache", cacheName).increment();
+                        } finally {
+                            unlock(lockKey, token);
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.debug("Early refresh of {} failed: {}", flightKey, e.toString());
+                } finally {
+                    refreshing.remove(flightKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(flightKey);
+        }
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        return Boolean.TRUE.equals(redisTemplateForLocks.opsForValue().setIfAbsent(lockKey, token, lockTimeout));
+    }
+
+    private void unlock(String lockKey, String token) {
+        try {
+            redisTemplateForLocks.execute(RELEASE_LOCK_SCRIPT, List.of(lockKey), token, LOCK_RELEASED_CHANNEL);
+        } catch (Exception e) {
+            logger.warn("Failed to release cache lock {}: {}", lockKey, e.toString());
+        }
+    }
+
+    void onLockReleased(Message message, byte[] pattern) {
+        String lockKey = new String(message.getBody(), StandardCharsets.UTF_8);
+        CompletableFuture<Void> released = lockReleases.remove(lockKey);
+        if (released != null) {
+            released.complete(null);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.FollowCreatedEvent;
+import com.toiter.userservice.model.FollowDeletedEvent;
+import com.toiter.userservice.model.PostCountChangedEvent;
+import com.toiter.userservice.model.SocialCounts;
+import com.toiter.userservice.model.UserCountsByUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.KTable;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+import org.springframework.kafka.support.serializer.JsonSerde;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Per-user followers, following and posts counts kept by Kafka Streams in the RocksDB store
+ * {@value #STORE_NAME}, and read with interactive queries.
+ * <p>
+ * The store is seeded from {@code usr.user_stats}: each counter reconciliation publishes the absolute counts of
+ * every user to {@value #SNAPSHOTS_TOPIC} (see {@link UserStatsService#reconcile()}). A snapshot replaces the
+ * user's counts; follow events and post count changes then add to it, except those older than the snapshot,
+ * which it already includes. Both are written through the outbox in the transaction that changes
+ * {@code usr.user_stats} and carry its time as their record timestamp, so the comparison does not depend on relay
+ * or consumer lag. Post counts come from {@value #POST_COUNT_EVENTS_TOPIC}, i.e. after {@code usr.post_ledger}
+ * accepted the post event, not from post-service's topic: a post event still waiting to be consumed is in neither
+ * the snapshot nor the store until the database applies it. Only changes committing while a snapshot is read can
+ * be missed or counted twice, until the next one.
+ * <p>
+ * The store is partitioned by user id across the instances of the streams application. A lookup asks Kafka
+ * which instance owns the key and either reads the local store or calls that instance's
+ * {@code /internal/users/{userId}/social-counts}. {@link #find(Long)} returns empty whenever it cannot answer
+ * (user not seeded yet, store rebalancing, owner unreachable) and callers fall back to {@code usr.user_stats}.
+ */
+@Service
+@ConditionalOnProperty(name = "stats.streams.enabled", havingValue = "true")
+public class SocialCountsStore {
+    private static final Logger logger = LoggerFactory.getLogger(SocialCountsStore.class);
+
+    public static final String STORE_NAME = "user-social-counts";
+    public static final String SNAPSHOTS_TOPIC = "user-stats-snapshots";
+    static final String FOLLOW_EVENTS_TOPIC = "follow-events-topic";
+    public static final String POST_COUNT_EVENTS_TOPIC = "post-count-events-topic";
+
+    private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+    private final KafkaStreamsInteractiveQueryService queryService;
+    private final RestTemplate restTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String sharedKey;
+    private final String contextPath;
+    private final LongSerializer keySerializer = new LongSerializer();
+
+    public SocialCountsStore(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+                             KafkaStreamsInteractiveQueryService queryService,
+                             RestTemplate restTemplate,
+                             @Qualifier("retryKafkaTemplate") KafkaTemplate<String, Object> kafkaTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${service.shared-key}") String sharedKey,
+                             @Value("${server.servlet.context-path:}") String contextPath) {
+        this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+        this.queryService = queryService;
+        this.restTemplate = restTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.sharedKey = sharedKey;
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * Defines the topology: snapshots and per-user deltas from follow and post count events, re-keyed by user id
+     * and folded into {@value #STORE_NAME}.
+     */
+    public static KTable<Long, StoredCounts> buildTopology(StreamsBuilder builder) {
+        JsonSerde<Object> eventSerde = new JsonSerde<>();
+        eventSerde.deserializer().addTrustedPackages("*");
+        // Repartitioned records keep the input's type header, which does not describe these values
+        JsonSerde<SocialCounts> countsSerde = new JsonSerde<>(SocialCounts.class).noTypeInfo().ignoreTypeHeaders();
+        JsonSerde<CountUpdate> updateSerde = new JsonSerde<>(CountUpdate.class).noTypeInfo().ignoreTypeHeaders();
+        JsonSerde<StoredCounts> storedSerde = new JsonSerde<>(StoredCounts.class).noTypeInfo().ignoreTypeHeaders();
+
+        KStream<Long, CountUpdate> snapshots = builder
+                .stream(SNAPSHOTS_TOPIC, Consumed.with(Serdes.String(), countsSerde))
+                .filter((key, counts) -> key != null && counts != null)
+                .<Long, SocialCounts>map((key, counts) -> KeyValue.pair(Long.valueOf(key), counts))
+                .processValues(() -> new Stamp(true));
+
+        KStream<Long, CountUpdate> followDeltas = builder
+                .stream(FOLLOW_EVENTS_TOPIC, Consumed.with(Serdes.String(), eventSerde))
+                .<Long, SocialCounts>flatMap((key, event) -> switch (event) {
+                    case FollowCreatedEvent created -> followDeltas(created.getUserId(), created.getFollowerId(), 1);
+                    case FollowDeletedEvent deleted -> followDeltas(deleted.getUserId(), deleted.getFollowerId(), -1);
+                    case null, default -> List.of();
+                })
+                .processValues(() -> new Stamp(false));
+
+        KStream<Long, CountUpdate> postDeltas = builder
+                .stream(POST_COUNT_EVENTS_TOPIC, Consumed.with(Serdes.String(), eventSerde))
+                .<Long, SocialCounts>flatMap((key, event) -> switch (event) {
+                    case PostCountChangedEvent changed when changed.getUserId() != null ->
+                            List.of(KeyValue.pair(changed.getUserId(), new SocialCounts(0, 0, changed.getDelta())));
+                    case null, default -> List.of();
+                })
+                .processValues(() -> new Stamp(false));
+
+        return snapshots.merge(followDeltas).merge(postDeltas)
+                .groupByKey(Grouped.with("social-counts-by-user", Serdes.Long(), updateSerde))
+                .aggregate(() -> StoredCounts.EMPTY, (userId, update, stored) -> stored.apply(update),
+                        Materialized.<Long, StoredCounts, KeyValueStore<Bytes, byte[]>>as(STORE_NAME)
+                                .withKeySerde(Serdes.Long())
+                                .withValueSerde(storedSerde));
+    }
+
+    /**
+     * Publishes the absolute counts of a range of users, read from {@code usr.user_stats} no earlier than
+     * {@code takenAt} (epoch millis). Changes written to the outbox up to {@code takenAt} are treated as included.
+     */
+    public void publishSnapshots(List<UserCountsByUser> counts, long takenAt) {
+        for (UserCountsByUser user : counts) {
+            SocialCounts snapshot = new SocialCounts(user.getFollowersCount(), user.getFollowingCount(),
+                    user.getPostsCount());
+            kafkaTemplate.send(new ProducerRecord<String, Object>(SNAPSHOTS_TOPIC, null, takenAt,
+                    user.getUserId().toString(), snapshot));
+        }
+        meterRegistry.counter("user.stats.streams.snapshots").increment(counts.size());
+    }
+
+    /**
+     * Counts of {@code userId} from the instance that owns the key, or empty when the store cannot answer.
+     */
+    public Optional<SocialCounts> find(Long userId) {
+        KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+        if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+            return lookup("unavailable", Optional.empty());
+        }
+        try {
+            HostInfo owner = queryService.getKafkaStreamsApplicationHostInfo(STORE_NAME, userId, keySerializer);
+            if (owner == null || owner.port() < 0) {
+                return lookup("unavailable", Optional.empty());
+            }
+            if (owner.equals(queryService.getCurrentKafkaStreamsApplicationHostInfo())) {
+                return lookup("local", findLocal(userId));
+            }
+            return lookup("remote", findRemote(owner, userId));
+        } catch (RuntimeException e) {
+            logger.warn("Social counts lookup for user {} failed: {}", userId, e.toString());
+            return lookup("error", Optional.empty());
+        }
+    }
+
+    /**
+     * Reads this instance's store only; empty when the key is not here, the user has not been seeded from
+     * {@code usr.user_stats} yet, or the store is rebalancing.
+     */
+    public Optional<SocialCounts> findLocal(Long userId) {
+        ReadOnlyKeyValueStore<Long, StoredCounts> store =
+                queryService.retrieveQueryableStore(STORE_NAME, QueryableStoreTypes.keyValueStore());
+        return Optional.ofNullable(store.get(userId))
+                .filter(StoredCounts::seeded)
+                .map(StoredCounts::counts);
+    }
+
+    private Optional<SocialCounts> findRemote(HostInfo owner, Long userId) {
+        String url = "http://" + owner.host() + ":" + owner.port() + contextPath
+                + "/internal/users/" + userId + "/social-counts";
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + sharedKey);
+        try {
+            return Optional.ofNullable(restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers),
+                    SocialCounts.class).getBody());
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        } catch (RestClientException e) {
+            logger.warn("Social counts of user {} unavailable from {}: {}", userId, owner, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<SocialCounts> lookup(String source, Optional<SocialCounts> counts) {
+        meterRegistry.counter("user.stats.streams.lookups",
+                "source", source, "result", counts.isPresent() ? "hit" : "miss").increment();
+        return counts;
+    }
+
+    private static List<KeyValue<Long, SocialCounts>> followDeltas(Long userId, Long followerId, int delta) {
+        return List.of(
+                KeyValue.pair(userId, new SocialCounts(delta, 0, 0)),
+                KeyValue.pair(followerId, new SocialCounts(0, delta, 0)));
+    }
+
+    /**
+     * Absolute counts from a snapshot, or a delta from an event, with the time it was written to the database.
+     */
+    public record CountUpdate(SocialCounts counts, boolean snapshot, long timestamp) {
+    }
+
+    /**
+     * A user's counts and the time of the snapshot they are based on; {@code 0} until the first snapshot.
+     */
+    public record StoredCounts(SocialCounts counts, long seededAt) {
+        static final StoredCounts EMPTY = new StoredCounts(new SocialCounts(0, 0, 0), 0);
+
+        boolean seeded() {
+            return seededAt > 0;
+        }
+
+        StoredCounts apply(CountUpdate update) {
+            if (update.snapshot()) {
+                return update.timestamp() >= seededAt ? new StoredCounts(update.counts(), update.timestamp()) : this;
+            }
+            // Events produced before the snapshot are already part of it
+            return update.timestamp() > seededAt ? new StoredCounts(counts.plus(update.counts()), seededAt) : this;
+        }
+    }
+
+    /**
+     * Wraps counts in a {@link CountUpdate} carrying the record's timestamp, which the aggregation compares
+     * with the snapshot time.
+     */
+    static final class Stamp implements FixedKeyProcessor<Long, SocialCounts, CountUpdate> {
+        private final boolean snapshot;
+        private FixedKeyProcessorContext<Long, CountUpdate> context;
+
+        Stamp(boolean snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void init(FixedKeyProcessorContext<Long, CountUpdate> context) {
+            this.context = context;
+        }
+
+        @Override
+        public void process(FixedKeyRecord<Long, SocialCounts> record) {
+            context.forward(record.withValue(new CountUpdate(record.value(), snapshot, record.timestamp())));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.toiter.userservice.service;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revocation of JWTs by token id ({@code jti}) and by a per-user "not before" time, checked without
+ * leaving the process.
+ * <p>
+ * Redis is the source of truth: revoked ids live in the sorted set {@code jwt:revoked} (scored by the
+ * token's expiry) and user cut-offs in the hash {@code jwt:not-before}. Each instance keeps a full local
+ * replica, updated immediately through pub/sub and reloaded at startup and periodically to recover lost
+ * messages. The replica only holds revocations of tokens that have not expired yet, so it stays small.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    static final String CHANNEL = "jwt:revocations";
+    static final String REVOKED_IDS_KEY = "jwt:revoked";
+    static final String NOT_BEFORE_KEY = "jwt:not-before";
+
+    private final RedisTemplate<String, String> redisTemplateForLocks;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final long maxTokenLifetimeMillis;
+    private final Counter rejected;
+
+    // jti -> token expiry (epoch ms)
+    private final Map<String, Long> revokedIds = new ConcurrentHashMap<>();
+    // userId -> tokens issued before this second are revoked
+    private final Map<Long, Long> notBefore = new ConcurrentHashMap<>();
+
+    public TokenRevocationService(RedisTemplate<String, String> redisTemplateForLocks,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${jwt.refresh-token-expiration}") long maxTokenLifetimeMillis) {
+        this.redisTemplateForLocks = redisTemplateForLocks;
+        this.listenerContainer = listenerContainer;
+        this.maxTokenLifetimeMillis = maxTokenLifetimeMillis;
+        this.rejected = meterRegistry.counter("jwt.revocation.rejected");
+
+        Gauge.builder("jwt.revocation.ids", revokedIds, Map::size).register(meterRegistry);
+        Gauge.builder("jwt.revocation.users", notBefore, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.reload-interval-ms:60000}",
+            initialDelayString = "${jwt.revocation.reload-interval-ms:60000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * Checks the local replica only; never calls Redis.
+     */
+    public boolean isRevoked(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId != null && revokedIds.containsKey(tokenId)) {
+            rejected.increment();
+            return true;
+        }
+        Long userId = claims.get("userId", Long.class);
+        Date issuedAt = claims.getIssuedAt();
+        if (userId != null && issuedAt != null) {
+            Long cutoff = notBefore.get(userId);
+            if (cutoff != null && issuedAt.getTime() / 1000 < cutoff) {
+                rejected.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Revokes a single token until it expires.
+     */
+    public void revokeToken(String tokenId, Date expiration) {
+        long expiresAt = expiration.getTime();
+        if (tokenId == null || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedIds.put(tokenId, expiresAt);
+        redisTemplateForLocks.opsForZSet().add(REVOKED_IDS_KEY, tokenId, expiresAt);
+        publish("jti " + tokenId + " " + expiresAt);
+    }
+
+    /**
+     * Revokes every token of the user issued before the current second. {@code iat} has second precision, so
+     * tokens issued within this second stay valid: a login right after this call must not be rejected. The
+     * caller revokes its own token by id (see {@link AuthService#logoutAll(String)}).
+     */
+    public void revokeAllForUser(Long userId) {
+        long cutoff = System.currentTimeMillis() / 1000;
+        notBefore.merge(userId, cutoff, Math::max);
+        redisTemplateForLocks.opsForHash().put(NOT_BEFORE_KEY, userId.toString(), Long.toString(cutoff));
+        publish("user " + userId + " " + cutoff);
+    }
+
+    public synchronized void reload() {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplateForLocks.opsForZSet().removeRangeByScore(REVOKED_IDS_KEY, Double.NEGATIVE_INFINITY, now);
+            Set<ZSetOperations.TypedTuple<String>> ids = redisTemplateForLocks.opsForZSet().rangeWithScores(REVOKED_IDS_KEY, 0, -1);
+            if (ids != null) {
+                for (ZSetOperations.TypedTuple<String> id : ids) {
+                    if (id.getValue() != null && id.getScore() != null) {
+                        revokedIds.put(id.getValue(), id.getScore().longValue());
+                    }
+                }
+            }
+
+            // Cut-offs older than the longest token lifetime no longer match any valid token
+            long oldestRelevant = (now - maxTokenLifetimeMillis) / 1000;
+            Map<Object, Object> cutoffs = redisTemplateForLocks.opsForHash().entries(NOT_BEFORE_KEY);
+            for (Map.Entry<Object, Object> entry : cutoffs.entrySet()) {
+                long userId = Long.parseLong(entry.getKey().toString());
+                long cutoff = Long.parseLong(entry.getValue().toString());
+                if (cutoff < oldestRelevant) {
+                    redisTemplateForLocks.opsForHash().delete(NOT_BEFORE_KEY, entry.getKey());
+                } else {
+                    notBefore.merge(userId, cutoff, Math::max);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to reload token revocations, keeping the local replica", e);
+        } finally {
+            purgeExpired(now);
+        }
+    }
+
+    private void purgeExpired(long now) {
+        revokedIds.values().removeIf(expiresAt -> expiresAt <= now);
+        long oldestRelevant = (now - maxTokenLifetimeMillis) / 1000;
+        notBefore.values().removeIf(cutoff -> cutoff < oldestRelevant);
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplateForLocks.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            // The other instances pick it up on their next reload
+            logger.warn("Failed to broadcast token revocation: {}", e.toString());
+        }
+    }
+
+    void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (parts.length != 3) {
+            logger.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        try {
+            switch (parts[0]) {
+                case "jti" -> revokedIds.put(parts[1], Long.parseLong(parts[2]));
+                case "user" -> notBefore.merge(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Math::max);
+                default -> logger.warn("Ignoring token revocation message of type {}", parts[0]);
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed token revocation message");
+        }
+    }
+}
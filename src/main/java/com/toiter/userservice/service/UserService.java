@@ -15,36 +15,44 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final FollowRepository followRepository;
-    private final PostClientService postClientService;
     private final ImageService imageService;
     private final CacheService cacheService;
     private final KafkaProducer kafkaProducer;
+    private final SingleFlightLoader singleFlightLoader;
+    private final UsernameBloomFilter usernameBloomFilter;
+    private final UserStatsService userStatsService;
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final int BATCH_QUERY_SIZE = 500;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FollowRepository followRepository, PostClientService postClientService, ImageService imageService, CacheService cacheService, KafkaProducer kafkaProducer) {
+    public UserService(UserRepository userRepository, PasswordHashingService passwordHashingService, FollowRepository followRepository, ImageService imageService, CacheService cacheService, KafkaProducer kafkaProducer, SingleFlightLoader singleFlightLoader, UsernameBloomFilter usernameBloomFilter, UserStatsService userStatsService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
         this.followRepository = followRepository;
-        this.postClientService = postClientService;
         this.imageService = imageService;
         this.cacheService = cacheService;
         this.kafkaProducer = kafkaProducer;
+        this.singleFlightLoader = singleFlightLoader;
+        this.usernameBloomFilter = usernameBloomFilter;
+        this.userStatsService = userStatsService;
     }
 
     @Transactional
@@ -106,6 +114,10 @@ public class UserService {
         try {
             if (!changedFields.isEmpty()) {
                 userRepository.save(user);
+                if (changedFields.contains("username")) {
+                    usernameBloomFilter.add(user.getUsername());
+                    cacheService.clearMissingUsername(user.getUsername());
+                }
                 UserUpdatedEvent event = new UserUpdatedEvent(user, changedFields);
                 kafkaProducer.sendUserUpdatedEvent(event);
                 logger.debug("User updated successfully for ID: {}", id);
@@ -160,42 +172,11 @@ public class UserService {
     public UserPublicData getPublicUserDataByUsername(@NotNull String username, @Min(1) Long authenticatedUserId) {
         logger.info("Fetching public data for username: {}", username);
 
-        Long userId = cacheService.getUserIdByUsername(username);
-        if (userId == null) {
-            userId = userRepository.findUserIdByUsername(username)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-            cacheService.setUserIdByUsername(username, userId);
-        }
-
-        UserPublicData publicData = cacheService.getUserPublicData(userId);
-        if (publicData == null) {
-            UserPublicProjection userProjection = userRepository.findProjectedById(userId)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-            int followersCount = followRepository.countByUserId(userId);
-            int followingCount = followRepository.countByFollowerId(userId);
-            Integer postsCount = postClientService.getPostsCount(userId);
-
-            String profileKey = userProjection.getProfileImageUrl();
-            String headerKey = userProjection.getHeaderImageUrl();
-            String profilePublic = imageService.getPublicUrl(profileKey);
-            String headerPublic = imageService.getPublicUrl(headerKey);
-
-            publicData = new UserPublicData(
-                    userId,
-                    userProjection.getUsername(),
-                    userProjection.getDisplayName(),
-                    userProjection.getBio(),
-                    profilePublic,
-                    headerPublic,
-                    followersCount,
-                    followingCount,
-                    null,
-                    null,
-                    postsCount
-            );
-            cacheService.setUserPublicData(userId, publicData);
-        }
+        Long userId = getUserIdByUsername(username);
+        UserPublicData publicData = singleFlightLoader.load(CacheService.CACHE_USER_PUBLIC_DATA, userId.toString(),
+                () -> cacheService.getUserPublicDataEntry(userId),
+                () -> loadUserPublicData(userId),
+                data -> cacheService.setUserPublicData(userId, data));
 
         if (!userId.equals(authenticatedUserId) && authenticatedUserId != null) {
             logger.debug("Processing relationship data (isFollowing, isFollowingMe) for user ID: {}", userId);
@@ -223,6 +204,33 @@ public class UserService {
         return publicData;
     }
 
+    private UserPublicData loadUserPublicData(Long userId) {
+        UserPublicProjection userProjection = userRepository.findProjectedById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        UserCounts counts = userStatsService.getCounts(userId);
+        int followersCount = Math.toIntExact(counts.getFollowersCount());
+        int followingCount = Math.toIntExact(counts.getFollowingCount());
+        int postsCount = Math.toIntExact(counts.getPostsCount());
+
+        String profilePublic = imageService.getPublicUrl(userProjection.getProfileImageUrl());
+        String headerPublic = imageService.getPublicUrl(userProjection.getHeaderImageUrl());
+
+        return new UserPublicData(
+                userId,
+                userProjection.getUsername(),
+                userProjection.getDisplayName(),
+                userProjection.getBio(),
+                profilePublic,
+                headerPublic,
+                followersCount,
+                followingCount,
+                null,
+                null,
+                postsCount
+        );
+    }
+
     public void registerUser(@NotNull UserRequest userRequest) {
         logger.info("Registrando usuário {}", userRequest.getUsername());
 
@@ -286,10 +294,12 @@ public class UserService {
         user.setUsername(userRequest.getUsername());
         user.setDisplayName(userRequest.getUsername().substring(0, Math.min(userRequest.getUsername().length(), 30)));
         user.setEmail(userRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(userRequest.getPassword()));
+        user.setPassword(passwordHashingService.encode(userRequest.getPassword()));
         user.setBio(userRequest.getBio());
 
         userRepository.save(user);
+        usernameBloomFilter.add(user.getUsername());
+        cacheService.clearMissingUsername(user.getUsername());
     }
 
     public User getUserByUsername(String username) {
@@ -298,78 +308,118 @@ public class UserService {
     }
 
     public User getUserById(Long userId) {
-        User user = cacheService.getUserById(userId);
-        if (user != null) {
-            return user;
+        return singleFlightLoader.load(CacheService.CACHE_USER, userId.toString(),
+                () -> cacheService.getUserByIdEntry(userId),
+                () -> loadUser(userId),
+                user -> cacheService.setUserById(userId, user));
+    }
+
+    private User loadUser(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        hydrateImages(user);
+        return user;
+    }
+
+    /**
+     * Batch variant of {@link #getUserIdByUsername(String)}. Unknown usernames are absent from the returned map.
+     */
+    public Map<String, Long> getUserIdsByUsernames(Collection<String> usernames) {
+        Map<String, Long> userIds = new HashMap<>(cacheService.getUserIdsByUsernames(usernames));
+        List<String> missing = usernames.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(username -> !userIds.containsKey(username))
+                .filter(usernameBloomFilter::mightContain)
+                .toList();
+        if (missing.isEmpty()) {
+            return userIds;
         }
 
-        String lockKey = "lock:user:" + userId;
-        if (cacheService.trySetLock(lockKey, 5)) {
-            user = cacheService.getUserById(userId);
-            if (user != null) {
-                cacheService.deleteLock(lockKey);
-                return user;
+        Map<String, Long> loaded = new HashMap<>();
+        for (int from = 0; from < missing.size(); from += BATCH_QUERY_SIZE) {
+            List<String> chunk = missing.subList(from, Math.min(from + BATCH_QUERY_SIZE, missing.size()));
+            for (UserIdentityProjection identity : userRepository.findIdentitiesByUsernameIn(chunk)) {
+                loaded.put(identity.getUsername(), identity.getId());
             }
-            user = userRepository.findById(userId)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        }
+        cacheService.putUserIdsByUsernames(loaded);
+        userIds.putAll(loaded);
+        return userIds;
+    }
 
-            try {
-                if (user.getProfileImageUrl() != null && !user.getProfileImageUrl().isBlank() && !user.getProfileImageUrl().startsWith("http")) {
-                    String profilePublic = imageService.getPublicUrl(user.getProfileImageUrl());
-                    user.setProfileImageUrl(profilePublic);
-                }
-            } catch (Exception e) {
-                logger.debug("Failed to hydrate profile image for user {}: {}", userId, e.toString());
+    /**
+     * Resolves the public profile image URL of several users at once, for rows that carry no user data
+     * (e.g. chat lists). Prefers the cached public data (already presigned); the rest are read with a
+     * projection of just the image key, without loading or caching whole users.
+     */
+    public Map<Long, String> getProfileImageUrls(Collection<Long> userIds) {
+        Map<Long, String> imageUrls = new HashMap<>();
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return imageUrls;
+        }
+
+        cacheService.getUserPublicDataBatch(ids)
+                .forEach((id, data) -> imageUrls.put(id, data.getProfileImageUrl()));
+
+        List<Long> missing = ids.stream()
+                .filter(id -> !imageUrls.containsKey(id))
+                .toList();
+        for (int from = 0; from < missing.size(); from += BATCH_QUERY_SIZE) {
+            List<Long> chunk = missing.subList(from, Math.min(from + BATCH_QUERY_SIZE, missing.size()));
+            for (UserImageProjection image : userRepository.findProfileImagesByIdIn(chunk)) {
+                imageUrls.put(image.getId(), getProfilePictureUrl(image.getProfileImageUrl()));
             }
+        }
+        return imageUrls;
+    }
 
-            try {
-                if (user.getHeaderImageUrl() != null && !user.getHeaderImageUrl().isBlank() && !user.getHeaderImageUrl().startsWith("http")) {
-                    String headerPublic = imageService.getPublicUrl(user.getHeaderImageUrl());
-                    user.setHeaderImageUrl(headerPublic);
-                }
-            } catch (Exception e) {
-                logger.debug("Failed to hydrate header image for user {}: {}", userId, e.toString());
+    private void hydrateImages(User user) {
+        Long userId = user.getId();
+        try {
+            if (user.getProfileImageUrl() != null && !user.getProfileImageUrl().isBlank() && !user.getProfileImageUrl().startsWith("http")) {
+                String profilePublic = imageService.getPublicUrl(user.getProfileImageUrl());
+                user.setProfileImageUrl(profilePublic);
             }
+        } catch (Exception e) {
+            logger.debug("Failed to hydrate profile image for user {}: {}", userId, e.toString());
+        }
 
-            cacheService.setUserById(userId, user);
-            cacheService.deleteLock(lockKey);
-            return user;
-        } else {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        try {
+            if (user.getHeaderImageUrl() != null && !user.getHeaderImageUrl().isBlank() && !user.getHeaderImageUrl().startsWith("http")) {
+                String headerPublic = imageService.getPublicUrl(user.getHeaderImageUrl());
+                user.setHeaderImageUrl(headerPublic);
             }
-            return getUserById(userId);
+        } catch (Exception e) {
+            logger.debug("Failed to hydrate header image for user {}: {}", userId, e.toString());
         }
     }
 
+    /**
+     * Resolves a username to its ID. Names rejected by the Bloom filter or recently not found
+     * (negative cache) fail without touching the database.
+     */
     public Long getUserIdByUsername(String username) {
-        Long userId = cacheService.getUserIdByUsername(username);
-        if (userId != null) {
-            return userId;
+        if (!usernameBloomFilter.mightContain(username)) {
+            throw new IllegalArgumentException("User not found");
         }
+        return singleFlightLoader.load(CacheService.CACHE_USER_ID, username,
+                () -> cacheService.getUserIdByUsernameEntry(username),
+                () -> loadUserIdByUsername(username),
+                userId -> cacheService.setUserIdByUsername(username, userId));
+    }
 
-        String lockKey = "lock:userid:" + username;
-        if (cacheService.trySetLock(lockKey, 5)) {
-            userId = cacheService.getUserIdByUsername(username);
-            if (userId != null) {
-                cacheService.deleteLock(lockKey);
-                return userId;
-            }
-            userId = userRepository.findUserIdByUsername(username)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-            cacheService.setUserIdByUsername(username, userId);
-            cacheService.deleteLock(lockKey);
-            return userId;
-        } else {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            return getUserIdByUsername(username);
+    private Long loadUserIdByUsername(String username) {
+        if (cacheService.isUsernameMissing(username)) {
+            throw new IllegalArgumentException("User not found");
+        }
+        Optional<Long> userId = userRepository.findUserIdByUsername(username);
+        if (userId.isEmpty()) {
+            cacheService.markUsernameMissing(username);
+            throw new IllegalArgumentException("User not found");
         }
+        return userId.get();
     }
 
     public Page<String> getExistingUsers(String username, int page, int size) {
@@ -388,11 +438,18 @@ public class UserService {
         String usernameQuery = username.toLowerCase();
         Pageable pageable = PageRequest.of(page, size);
         Page<FollowData> followingPage = userRepository.findFollowingDataByQuery(userId, usernameQuery, pageable);
-        return followingPage.map(fd -> {
-            String imageUrl = imageService.getPublicUrl(fd.getProfileImageUrl());
-            fd.setProfileImageUrl(imageUrl);
-            return fd;
-        });
+        hydrateFollowData(followingPage.getContent());
+        return followingPage;
+    }
+
+    /**
+     * Replaces the stored image keys of a page of follow rows with public URLs. The rows already carry
+     * the key, so it is only presigned; no cache or database lookup per row.
+     */
+    public void hydrateFollowData(List<FollowData> follows) {
+        for (FollowData fd : follows) {
+            fd.setProfileImageUrl(getProfilePictureUrl(fd.getProfileImageUrl()));
+        }
     }
 
     public String getUsernameByUserId(Long userId) {
@@ -412,9 +469,10 @@ public class UserService {
     }
 
     public UserPublicData createUserPublicData(User user) {
-        int followersCount = followRepository.countByUserId(user.getId());
-        int followingCount = followRepository.countByFollowerId(user.getId());
-        Integer postsCount = postClientService.getPostsCount(user.getId());
+        UserCounts counts = userStatsService.getCounts(user.getId());
+        int followersCount = Math.toIntExact(counts.getFollowersCount());
+        int followingCount = Math.toIntExact(counts.getFollowingCount());
+        int postsCount = Math.toIntExact(counts.getPostsCount());
 
         return new UserPublicData(
                 user.getId(),
@@ -0,0 +1,199 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.PostCountChangedEvent;
+import com.toiter.userservice.model.SocialCounts;
+import com.toiter.userservice.model.UserCounts;
+import com.toiter.userservice.producer.KafkaProducer;
+import com.toiter.userservice.repository.UserStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Denormalized follower/following/post counters in {@code usr.user_stats}.
+ * <p>
+ * Follows and unfollows update the counters in the same transaction as the {@code followers} row.
+ * Each change lands on one of {@code stats.counter-shards} rows per user, picked from the other side
+ * of the relationship, so a popular account's followers are spread over several rows. Reads sum the shards.
+ * <p>
+ * Post counts are fed by post-service events. {@code usr.post_ledger} makes them idempotent, and
+ * {@code usr.post_count_baselines} records users whose count was backfilled (see {@link PostCountBackfill}).
+ * <p>
+ * With {@code stats.streams.enabled}, reads go to the Kafka Streams store first (see {@link SocialCountsStore}),
+ * which is seeded from these tables and fed the post count changes written here, and fall back to them for users
+ * it has no snapshot of yet.
+ */
+@Service
+public class UserStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsService.class);
+
+    static final long RECONCILE_LOCK_KEY = 0x7265636F6E63L; // "reconc"
+    static final int POST_COUNT_LOCK_NAMESPACE = 0x706F7374; // "post"
+
+    private final UserStatsRepository userStatsRepository;
+    private final KafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int shards;
+    private final int reconcileBatchSize;
+    private final SocialCountsStore socialCountsStore;
+
+    public UserStatsService(UserStatsRepository userStatsRepository,
+                            Optional<SocialCountsStore> socialCountsStore,
+                            KafkaProducer kafkaProducer,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${stats.counter-shards:16}") int shards,
+                            @Value("${stats.reconcile.batch-size:1000}") int reconcileBatchSize) {
+        if (shards < 1 || shards > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("stats.counter-shards must be between 1 and " + Short.MAX_VALUE);
+        }
+        this.userStatsRepository = userStatsRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.shards = shards;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.socialCountsStore = socialCountsStore.orElse(null);
+    }
+
+    /**
+     * Applies a follow ({@code delta = 1}) or unfollow ({@code delta = -1}) of {@code userId} by {@code followerId}.
+     * Must run inside the transaction that writes the {@code followers} row.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordFollow(Long userId, Long followerId, int delta) {
+        userStatsRepository.addToShard(userId, shardFor(followerId), delta, 0);
+        userStatsRepository.addToShard(followerId, shardFor(userId), 0, delta);
+    }
+
+    /**
+     * Applies a post-service event to the user's post count, at most once per post and event kind.
+     * A delete that arrives before its create is remembered, so the late create is ignored. With a backfilled
+     * baseline, {@code createdAt} and {@code deletedAt} (post-service's timestamps) tell whether the baseline
+     * already has the post.
+     *
+     * @return the delta applied: 1, -1 or 0 when the event was a duplicate or already counted
+     */
+    @Transactional
+    public int recordPost(Long postId, Long userId, LocalDateTime createdAt, LocalDateTime deletedAt, boolean created) {
+        userStatsRepository.advisoryXactLockShared(POST_COUNT_LOCK_NAMESPACE, Long.hashCode(userId));
+        int delta;
+        if (created) {
+            boolean firstSeen = userStatsRepository.insertPostLedgerEntry(postId, userId, createdAt, null, false) == 1;
+            delta = firstSeen && !inBaseline(userId, createdAt) ? 1 : 0;
+        } else if (userStatsRepository.markPostDeleted(postId, deletedAt) == 1) {
+            // Counted, unless it was created and deleted before the baseline, which already leaves it out
+            delta = inBaseline(userId, createdAt) && inBaseline(userId, deletedAt) ? 0 : -1;
+        } else {
+            // Not in the ledger: either the create is still on its way, or the post predates the ledger.
+            // Only the latter, if still live when the baseline was taken, is in the count.
+            boolean firstSeen = userStatsRepository.insertPostLedgerEntry(postId, userId, createdAt, deletedAt, true) == 1;
+            delta = firstSeen && inBaseline(userId, createdAt) && !inBaseline(userId, deletedAt) ? -1 : 0;
+        }
+        if (delta != 0) {
+            userStatsRepository.addPostsToShard(userId, shardFor(postId), delta);
+            publishPostCountChange(userId, postId, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Sets the user's post count to {@code postsCount}, counted by post-service at {@code countedUntil} on its own
+     * clock, plus the ledger's posts on the other side of that instant. Holds the user's post count lock
+     * exclusively, so no post event of the user runs in between.
+     */
+    @Transactional
+    public void applyPostBaseline(Long userId, long postsCount, LocalDateTime countedUntil) {
+        userStatsRepository.advisoryXactLock(POST_COUNT_LOCK_NAMESPACE, Long.hashCode(userId));
+        long sinceBaseline = userStatsRepository.sumPostLedgerSince(userId, countedUntil);
+        long previous = socialCountsStore != null ? userStatsRepository.sumCountsByUserId(userId).getPostsCount() : 0;
+        userStatsRepository.clearPostsCount(userId);
+        userStatsRepository.addPostsToShard(userId, (short) 0, postsCount + sinceBaseline);
+        userStatsRepository.upsertPostBaseline(userId, countedUntil);
+        publishPostCountChange(userId, null, Math.toIntExact(postsCount + sinceBaseline - previous));
+    }
+
+    /**
+     * Feeds the Kafka Streams store the change just written to {@code posts_count}, through the outbox in the
+     * same transaction, so its timestamp orders it against the counter snapshots.
+     */
+    private void publishPostCountChange(Long userId, Long postId, int delta) {
+        if (socialCountsStore != null && delta != 0) {
+            kafkaProducer.sendPostCountChangedEvent(new PostCountChangedEvent(userId, postId, delta));
+        }
+    }
+
+    private boolean inBaseline(Long userId, LocalDateTime instant) {
+        return instant != null && userStatsRepository.isCoveredByPostBaseline(userId, instant);
+    }
+
+    public UserCounts getCounts(Long userId) {
+        if (socialCountsStore != null) {
+            Optional<SocialCounts> counts = socialCountsStore.find(userId);
+            if (counts.isPresent()) {
+                return counts.get();
+            }
+        }
+        return userStatsRepository.sumCountsByUserId(userId);
+    }
+
+    /**
+     * Recomputes the counters from {@code usr.followers} in id ranges and adds the difference where they drifted
+     * (e.g. rows written before this table existed or changed outside the application).
+     * <p>
+     * Each range is repaired in its own transaction holding a Postgres advisory lock. Two runs computing the
+     * same drift from the same snapshot would add it twice, so when another instance holds the lock this run
+     * stops and leaves the rest to it. With the Kafka Streams store enabled, the repaired counts of each range are
+     * also published as its snapshots, seeding and re-anchoring it.
+     */
+    @Scheduled(fixedDelayString = "${stats.reconcile.interval-ms:3600000}",
+            initialDelayString = "${stats.reconcile.initial-delay-ms:60000}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        long maxId = userStatsRepository.findMaxUserId();
+        long repaired = 0;
+        for (long afterId = 0; afterId < maxId; afterId += reconcileBatchSize) {
+            long from = afterId;
+            Integer fixed = transactionTemplate.execute(status -> reconcileLocked(from, from + reconcileBatchSize));
+            if (fixed == null) {
+                logger.debug("Counter reconciliation already running on another instance, stopping at user ID {}", from);
+                break;
+            }
+            repaired += fixed;
+        }
+        meterRegistry.counter("user.stats.reconciled").increment(repaired);
+        if (repaired > 0) {
+            logger.warn("Reconciled follower counters for {} users in {} ms", repaired, System.currentTimeMillis() - start);
+        } else {
+            logger.debug("Follower counters consistent, checked up to user ID {} in {} ms", maxId, System.currentTimeMillis() - start);
+        }
+    }
+
+    private Integer reconcileLocked(long afterId, long upToId) {
+        if (!userStatsRepository.tryAdvisoryXactLock(RECONCILE_LOCK_KEY)) {
+            return null;
+        }
+        int repaired = userStatsRepository.reconcileRange(afterId, upToId);
+        if (socialCountsStore != null) {
+            // Taken before the read, so events produced after it are never treated as part of the snapshot
+            long takenAt = System.currentTimeMillis();
+            socialCountsStore.publishSnapshots(userStatsRepository.sumCountsByUserIdRange(afterId, upToId), takenAt);
+        }
+        return repaired;
+    }
+
+    private short shardFor(Long otherUserId) {
+        return (short) Math.floorMod(otherUserId, shards);
+    }
+}
@@ -0,0 +1,243 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.UserIdentityProjection;
+import com.toiter.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory Bloom filter of every existing username, used to reject lookups for names that cannot
+ * exist before they reach Redis or Postgres.
+ * <p>
+ * The filter is rebuilt from the database at startup and periodically (to drop renamed names and
+ * recover from lost notifications). Registrations and renames are added immediately and broadcast
+ * to the other instances over Redis pub/sub. Until the first build completes every name is allowed.
+ */
+@Service
+public class UsernameBloomFilter {
+    private static final Logger logger = LoggerFactory.getLogger(UsernameBloomFilter.class);
+
+    static final String ADD_CHANNEL = "user:bloom:add";
+    private static final int REBUILD_PAGE_SIZE = 5000;
+
+    private final UserRepository userRepository;
+    private final RedisTemplate<String, String> redisTemplateForLocks;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Counter rejectedLookups;
+
+    private volatile Bits current;
+    private volatile Bits building;
+
+    public UsernameBloomFilter(UserRepository userRepository,
+                               RedisTemplate<String, String> redisTemplateForLocks,
+                               RedisMessageListenerContainer listenerContainer,
+                               MeterRegistry meterRegistry,
+                               @Value("${bloom.username.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${bloom.username.fpp:0.01}") double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("bloom.username.fpp must be between 0 and 1");
+        }
+        this.userRepository = userRepository;
+        this.redisTemplateForLocks = redisTemplateForLocks;
+        this.listenerContainer = listenerContainer;
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        this.falsePositiveRate = falsePositiveRate;
+        this.rejectedLookups = meterRegistry.counter("user.bloom.rejected");
+
+        Gauge.builder("user.bloom.fpp", this, filter -> filter.current != null ? filter.current.expectedFpp() : 0)
+                .description("Estimated false-positive probability for the current number of insertions")
+                .register(meterRegistry);
+        Gauge.builder("user.bloom.memory", this, filter -> filter.current != null ? filter.current.sizeInBytes() : 0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("user.bloom.insertions", this, filter -> filter.current != null ? filter.current.insertions.get() : 0)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribeToAdditions() {
+        listenerContainer.addMessageListener(this::onAddMessage, new ChannelTopic(ADD_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${bloom.username.rebuild-interval-ms:3600000}",
+            initialDelayString = "${bloom.username.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Returns {@code false} only if the username certainly does not exist.
+     */
+    public boolean mightContain(String username) {
+        Bits bits = current;
+        if (username == null || bits == null) {
+            return true;
+        }
+        boolean present = bits.mightContain(username);
+        if (!present) {
+            rejectedLookups.increment();
+        }
+        return present;
+    }
+
+    /**
+     * Adds a newly registered or renamed username here and on the other instances.
+     */
+    public void add(String username) {
+        addLocal(username);
+        try {
+            redisTemplateForLocks.convertAndSend(ADD_CHANNEL, username);
+        } catch (Exception e) {
+            logger.warn("Failed to broadcast username to bloom filter: {}", e.toString());
+        }
+    }
+
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            long size = Math.max(expectedInsertions, userRepository.count());
+            Bits next = new Bits(size, falsePositiveRate);
+            building = next;
+
+            long lastId = 0;
+            List<UserIdentityProjection> page;
+            do {
+                page = userRepository.findIdentitiesAfterId(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                for (UserIdentityProjection identity : page) {
+                    next.put(identity.getUsername());
+                    lastId = identity.getId();
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+
+            current = next;
+            logger.info("Username bloom filter rebuilt with {} names ({} bytes) in {} ms",
+                    next.insertions.get(), next.sizeInBytes(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Failed to rebuild username bloom filter, keeping the previous one", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    private void addLocal(String username) {
+        if (username == null) {
+            return;
+        }
+        Bits bits = current;
+        if (bits != null) {
+            bits.put(username);
+        }
+        // A rebuild in progress may already have passed this user's id
+        Bits next = building;
+        if (next != null) {
+            next.put(username);
+        }
+    }
+
+    void onAddMessage(Message message, byte[] pattern) {
+        addLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lock-free bit array with k hash functions derived from one 64-bit hash (Kirsch-Mitzenmacher).
+     */
+    static final class Bits {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Bits(long expectedInsertions, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = Math.toIntExact(Math.max(1, (bits + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = wordCount * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            boolean changed = false;
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(h1 + i * h2);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long previous = words.getAndUpdate(word, w -> w | mask);
+                changed |= (previous & mask) == 0;
+            }
+            if (changed) {
+                insertions.incrementAndGet();
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(h1 + i * h2);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double expectedFpp() {
+            return Math.pow(1 - Math.exp(-hashCount * (double) insertions.get() / bitCount), hashCount);
+        }
+
+        long sizeInBytes() {
+            return words.length() * 8L;
+        }
+
+        private long index(int combinedHash) {
+            return (combinedHash & Integer.MAX_VALUE) % bitCount;
+        }
+
+        /**
+         * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 fmix64 avalanche step.
+         */
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb93fe51afe53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
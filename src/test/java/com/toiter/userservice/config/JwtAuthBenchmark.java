@@ -0,0 +1,92 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.service.JwtKeyRing;
+import com.toiter.userservice.service.JwtService;
+import com.toiter.userservice.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Per-request JWT cost of the rate-limit and authentication filters: the previous four parses with a new
+ * parser each (rate limit user id, then username, validity and user id), versus one parse shared through
+ * {@link JwtClaimsHolder}, with and without the verified-claims cache.
+ * Excluded from {@code test}; run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class JwtAuthBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final int WARMUP_REQUESTS = 20_000;
+    private static final int MEASURED_REQUESTS = 100_000;
+
+    @Test
+    void compareAuthCostPerRequest() {
+        JwtService cached = jwtService(10_000);
+        JwtService uncached = jwtService(0);
+        String token = cached.generateToken("someone", 42L);
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+
+        double legacy = run("4 parses, new parser", () -> {
+            Long rateLimitUserId = legacyParse(key, token).get("userId", Long.class);
+            String username = legacyParse(key, token).getSubject();
+            boolean valid = legacyParse(key, token).getExpiration().getTime() > System.currentTimeMillis();
+            Long userId = legacyParse(key, token).get("userId", Long.class);
+            return valid && username != null ? userId + rateLimitUserId : 0L;
+        });
+        double shared = run("1 parse per request", () -> perRequest(uncached, token));
+        double cachedCost = run("claims cache", () -> perRequest(cached, token));
+
+        assertTrue(shared < legacy);
+        assertTrue(cachedCost < legacy);
+    }
+
+    private static long perRequest(JwtService jwtService, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/me");
+        Long rateLimitUserId = jwtService.extractUserId(JwtClaimsHolder.resolve(request, token, jwtService));
+        Claims claims = JwtClaimsHolder.resolve(request, token, jwtService);
+        boolean valid = jwtService.isTokenValid(claims);
+        return valid && claims.getSubject() != null ? jwtService.extractUserId(claims) + rateLimitUserId : 0L;
+    }
+
+    private static Claims legacyParse(SecretKey key, String token) {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+
+    private static JwtService jwtService(long cacheSize) {
+        // No ES256 key configured: tokens are HMAC-signed, like the legacy path
+        JwtKeyRing keyRing = new JwtKeyRing(new JwtSigningProperties(), SECRET);
+        JwtService jwtService = new JwtService(new SimpleMeterRegistry(), mock(TokenRevocationService.class), keyRing, cacheSize);
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 3_600_000L);
+        jwtService.init();
+        return jwtService;
+    }
+
+    private static double run(String name, Supplier<Long> request) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            sink += request.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            sink += request.get();
+        }
+        double perRequestMicros = (System.nanoTime() - start) / 1_000.0 / MEASURED_REQUESTS;
+        assertEquals(84L * (WARMUP_REQUESTS + MEASURED_REQUESTS), sink);
+        System.out.printf("%-22s %,8.2f us/request%n", name, perRequestMicros);
+        return perRequestMicros;
+    }
+}
@@ -1,6 +1,8 @@
 package com.toiter.userservice.config;
 
 import com.toiter.userservice.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,6 +11,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -47,6 +50,27 @@ class JwtAuthenticationFilterTest {
         when(response.getWriter()).thenReturn(writer);
     }
 
+    private void givenVerifiedToken(String token, boolean valid) {
+        Claims claims = Jwts.claims().setSubject("testuser");
+        when(jwtService.parseClaims(token)).thenReturn(claims);
+        when(jwtService.isTokenValid(claims)).thenReturn(valid);
+        when(jwtService.extractUserId(claims)).thenReturn(123L);
+    }
+
+    @Test
+    void testClaimsParsedByRateLimitFilter_AreReused() throws Exception {
+        String validToken = "valid-jwt-token";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/me");
+        request.addHeader("Authorization", "Bearer " + validToken);
+        givenVerifiedToken(validToken, true);
+        JwtClaimsHolder.resolve(request, validToken, jwtService);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(jwtService, times(1)).parseClaims(validToken);
+        assertEquals(123L, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+
     @Test
     void testPublicRouteAuth_SkipsAuthentication() throws Exception {
         when(request.getRequestURI()).thenReturn("/auth/login");
@@ -114,9 +138,7 @@ class JwtAuthenticationFilterTest {
         when(request.getRequestURI()).thenReturn("/users/me");
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(new Cookie[]{accessTokenCookie});
-        when(jwtService.extractUsername(validToken)).thenReturn("testuser");
-        when(jwtService.isTokenValid(validToken)).thenReturn(true);
-        when(jwtService.extractUserId(validToken)).thenReturn(123L);
+        givenVerifiedToken(validToken, true);
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -134,9 +156,7 @@ class JwtAuthenticationFilterTest {
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(null);
         when(request.getHeader("Authorization")).thenReturn("Bearer " + validToken);
-        when(jwtService.extractUsername(validToken)).thenReturn("testuser");
-        when(jwtService.isTokenValid(validToken)).thenReturn(true);
-        when(jwtService.extractUserId(validToken)).thenReturn(123L);
+        givenVerifiedToken(validToken, true);
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -156,16 +176,14 @@ class JwtAuthenticationFilterTest {
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(new Cookie[]{accessTokenCookie});
         when(request.getHeader("Authorization")).thenReturn("Bearer " + headerToken);
-        when(jwtService.extractUsername(cookieToken)).thenReturn("testuser");
-        when(jwtService.isTokenValid(cookieToken)).thenReturn(true);
-        when(jwtService.extractUserId(cookieToken)).thenReturn(123L);
+        givenVerifiedToken(cookieToken, true);
 
         filter.doFilterInternal(request, response, filterChain);
 
         verify(filterChain).doFilter(request, response);
         // Should use cookie token, not header token
-        verify(jwtService).extractUsername(cookieToken);
-        verify(jwtService, never()).extractUsername(headerToken);
+        verify(jwtService).parseClaims(cookieToken);
+        verify(jwtService, never()).parseClaims(headerToken);
     }
 
     @Test
@@ -176,7 +194,7 @@ class JwtAuthenticationFilterTest {
         when(request.getRequestURI()).thenReturn("/users/me");
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(new Cookie[]{accessTokenCookie});
-        when(jwtService.extractUsername(invalidToken)).thenThrow(new RuntimeException("Invalid token"));
+        when(jwtService.parseClaims(invalidToken)).thenThrow(new RuntimeException("Invalid token"));
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -192,8 +210,7 @@ class JwtAuthenticationFilterTest {
         when(request.getRequestURI()).thenReturn("/users/me");
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(new Cookie[]{accessTokenCookie});
-        when(jwtService.extractUsername(expiredToken)).thenReturn("testuser");
-        when(jwtService.isTokenValid(expiredToken)).thenReturn(false);
+        givenVerifiedToken(expiredToken, false);
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -225,9 +242,7 @@ class JwtAuthenticationFilterTest {
         when(request.getRequestURI()).thenReturn("/chat");
         when(request.getMethod()).thenReturn("GET");
         when(request.getCookies()).thenReturn(new Cookie[]{accessTokenCookie});
-        when(jwtService.extractUsername(validToken)).thenReturn("testuser");
-        when(jwtService.isTokenValid(validToken)).thenReturn(true);
-        when(jwtService.extractUserId(validToken)).thenReturn(123L);
+        givenVerifiedToken(validToken, true);
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -0,0 +1,90 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.producer.OutboxRelay;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaListenerMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private KafkaListenerMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new KafkaListenerMetrics(meterRegistry);
+    }
+
+    @Test
+    void testRecordInterceptor_ShouldRecordProcessingAndEndToEndLatency() {
+        // Arrange
+        RecordInterceptor<String, Object> interceptor = metrics.recordInterceptor();
+        ConsumerRecord<String, Object> record = record("user-updated-topic", System.currentTimeMillis() - 2_000);
+
+        // Act
+        interceptor.intercept(record, null);
+        interceptor.success(record, null);
+        interceptor.afterRecord(record, null);
+
+        // Assert
+        Timer processing = meterRegistry.get("kafka.consumer.processing").tag("topic", "user-updated-topic").timer();
+        Timer endToEnd = meterRegistry.get("kafka.consumer.end.to.end").tag("topic", "user-updated-topic").timer();
+        assertEquals(1, processing.count());
+        assertEquals(1, endToEnd.count());
+        assertTrue(endToEnd.totalTime(TimeUnit.MILLISECONDS) >= 2_000);
+    }
+
+    @Test
+    void testRecordInterceptor_WithoutHeader_ShouldOnlyRecordProcessing() {
+        // Arrange
+        RecordInterceptor<String, Object> interceptor = metrics.recordInterceptor();
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("post-created-topic", 0, 0L, "1", "event");
+
+        // Act
+        interceptor.intercept(record, null);
+        interceptor.failure(record, new IllegalStateException("boom"), null);
+        interceptor.afterRecord(record, null);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("kafka.consumer.processing").tag("topic", "post-created-topic").timer().count());
+        assertNull(meterRegistry.find("kafka.consumer.end.to.end").timer());
+    }
+
+    @Test
+    void testBatchInterceptor_ShouldRecordOneProcessingSampleAndEveryRecordLatency() {
+        // Arrange
+        BatchInterceptor<String, Object> interceptor = metrics.batchInterceptor();
+        long producedAt = System.currentTimeMillis() - 500;
+        ConsumerRecords<String, Object> records = new ConsumerRecords<>(Map.of(
+                new TopicPartition("follow-events-topic", 0),
+                List.of(record("follow-events-topic", producedAt), record("follow-events-topic", producedAt))));
+
+        // Act
+        interceptor.intercept(records, null);
+        interceptor.success(records, null);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("kafka.consumer.processing").tag("topic", "follow-events-topic").timer().count());
+        assertEquals(2, meterRegistry.get("kafka.consumer.end.to.end").tag("topic", "follow-events-topic").timer().count());
+    }
+
+    private static ConsumerRecord<String, Object> record(String topic, long producedAt) {
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(topic, 0, 0L, "1", "event");
+        record.headers().add(OutboxRelay.PRODUCED_AT_HEADER, Long.toString(producedAt).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
@@ -0,0 +1,110 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.model.FollowCreatedEvent;
+import com.toiter.userservice.service.DeadLetterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link KafkaConfig}'s consumer setup against an embedded broker: keyed events are consumed by several
+ * listener threads at once, and every key still sees its events in the order they were produced.
+ */
+@SpringJUnitConfig(classes = {KafkaConfig.class, KafkaListenerMetrics.class, DeadLetterService.class,
+        SimpleMeterRegistry.class, KafkaOrderingTest.OrderRecordingListener.class})
+@EmbeddedKafka(partitions = KafkaOrderingTest.PARTITIONS, topics = KafkaOrderingTest.TOPIC,
+        bootstrapServersProperty = "SPRING_KAFKA_BOOTSTRAP_SERVERS")
+class KafkaOrderingTest {
+    static final String TOPIC = "ordering-test-topic";
+    static final int PARTITIONS = 3;
+    private static final int KEYS = 12;
+    private static final int EVENTS_PER_KEY = 50;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private OrderRecordingListener listener;
+
+    @Test
+    void testKeyedEvents_ShouldBeConsumedInParallelAndInOrderPerKey() throws Exception {
+        // Arrange
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, PARTITIONS);
+        }
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+
+        // Act: interleave the keys, as the outbox relay would
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(props)) {
+            for (long sequence = 0; sequence < EVENTS_PER_KEY; sequence++) {
+                for (long userId = 1; userId <= KEYS; userId++) {
+                    String payload = "{\"followId\":" + sequence + ",\"userId\":" + userId + ",\"followerId\":0}";
+                    ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, Long.toString(userId), payload);
+                    record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                            FollowCreatedEvent.class.getName().getBytes(StandardCharsets.UTF_8));
+                    producer.send(record);
+                }
+            }
+        }
+
+        // Assert
+        assertTrue(listener.done.await(30, TimeUnit.SECONDS), "not all events were consumed");
+        for (long userId = 1; userId <= KEYS; userId++) {
+            List<Long> sequences = listener.sequencesByKey.get(Long.toString(userId));
+            List<Long> expected = new ArrayList<>();
+            for (long sequence = 0; sequence < EVENTS_PER_KEY; sequence++) {
+                expected.add(sequence);
+            }
+            assertEquals(expected, sequences, "events of user " + userId + " out of order");
+        }
+        assertTrue(listener.threads.size() > 1, "expected several consumer threads, got " + listener.threads);
+    }
+
+    @Component
+    static class OrderRecordingListener {
+        final Map<String, List<Long>> sequencesByKey = new ConcurrentHashMap<>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(KEYS * EVENTS_PER_KEY);
+
+        @KafkaListener(topics = TOPIC, groupId = "ordering-test", concurrency = "" + PARTITIONS,
+                properties = "auto.offset.reset=earliest")
+        public void consume(ConsumerRecord<String, Object> record) {
+            FollowCreatedEvent event = (FollowCreatedEvent) record.value();
+            // Only this key's partition thread appends to its list
+            sequencesByKey.computeIfAbsent(record.key(), key -> new ArrayList<>()).add(event.getFollowId());
+            threads.add(Thread.currentThread().getName());
+            done.countDown();
+        }
+    }
+}
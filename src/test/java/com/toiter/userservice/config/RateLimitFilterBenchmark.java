@@ -0,0 +1,128 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+import com.toiter.userservice.service.JwtService;
+import com.toiter.userservice.service.RateLimitPenaltyBox;
+import com.toiter.userservice.service.RateLimitPolicyEngine;
+import com.toiter.userservice.service.RateLimitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Per-request overhead of {@link RateLimitFilter} with the previous GET / INCR / GET / PTTL sequence
+ * versus the single script call. Redis is simulated with a fixed round-trip time
+ * ({@code -Dbenchmark.redis.rtt-micros}, default 200). Excluded from {@code test}; run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class RateLimitFilterBenchmark {
+
+    private static final int WARMUP_REQUESTS = 500;
+    private static final int MEASURED_REQUESTS = 2_000;
+    private static final long RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("benchmark.redis.rtt-micros", 200));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void compareRoundTripsPerRequest() throws Exception {
+        AtomicLong roundTrips = new AtomicLong();
+        RedisTemplate<String, Long> redis = mock(RedisTemplate.class);
+        ValueOperations<String, Long> valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get(anyString())).thenAnswer(invocation -> roundTrip(roundTrips, 1L));
+        when(valueOps.increment(anyString())).thenAnswer(invocation -> roundTrip(roundTrips, 2L));
+        when(redis.getExpire(anyString())).thenAnswer(invocation -> roundTrip(roundTrips, 60L));
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenAnswer(invocation -> roundTrip(roundTrips, List.of(1L, 99L, 60_000L)));
+
+        Result before = run("GET/INCR/GET/PTTL", filter(new LegacyRateLimitService(redis)), roundTrips);
+        Result after = run("single script", filter(new RateLimitService(redis)), roundTrips);
+        assertTrue(after.roundTripsPerRequest < before.roundTripsPerRequest);
+    }
+
+    private static RateLimitFilter filter(RateLimitService service) {
+        ReflectionTestUtils.setField(service, "getRequestsLimit", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(service, "getWindowSeconds", 60);
+        RateLimitPolicyEngine policyEngine = new RateLimitPolicyEngine(new RateLimitProperties(), service);
+        // Penalty box off: every request must reach the limiter
+        RateLimitPenaltyBox penaltyBox = new RateLimitPenaltyBox(new SimpleMeterRegistry(), false, 1);
+        return new RateLimitFilter(service, policyEngine, penaltyBox, mock(JwtService.class), true);
+    }
+
+    private static Result run(String name, RateLimitFilter filter, AtomicLong roundTrips) throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            filter.doFilter(request(), new MockHttpServletResponse(), new MockFilterChain());
+        }
+        roundTrips.set(0);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            filter.doFilter(request(), new MockHttpServletResponse(), new MockFilterChain());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        double perRequestMicros = elapsedNanos / 1_000.0 / MEASURED_REQUESTS;
+        double tripsPerRequest = (double) roundTrips.get() / MEASURED_REQUESTS;
+        System.out.printf("%-20s round trips/request=%.1f  overhead=%,8.1f us/request (rtt %d us)%n",
+                name, tripsPerRequest, perRequestMicros, TimeUnit.NANOSECONDS.toMicros(RTT_NANOS));
+        return new Result(tripsPerRequest);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/someone");
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+
+    private static <T> T roundTrip(AtomicLong roundTrips, T value) {
+        roundTrips.incrementAndGet();
+        long deadline = System.nanoTime() + RTT_NANOS;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(deadline - System.nanoTime());
+        }
+        return value;
+    }
+
+    /**
+     * The previous implementation: a GET, then INCR, and two more calls from the filter for the headers.
+     */
+    private static final class LegacyRateLimitService extends RateLimitService {
+        private final RedisTemplate<String, Long> redis;
+
+        LegacyRateLimitService(RedisTemplate<String, Long> redis) {
+            super(redis);
+            this.redis = redis;
+        }
+
+        @Override
+        public RateLimitDecision tryAcquire(Long userId, String ipAddress, RateLimitPolicy policy) {
+            String key = "rate_limit:ip:" + ipAddress + ":get";
+            int limit = policy.limit();
+            Long count = redis.opsForValue().get(key);
+            redis.opsForValue().increment(key);
+            Long current = redis.opsForValue().get(key);
+            Long ttl = redis.getExpire(key);
+            long remaining = Math.max(0, limit - (current != null ? current : 0));
+            return new RateLimitDecision(count == null || count < limit, limit, remaining, ttl != null ? ttl : 0);
+        }
+    }
+
+    private record Result(double roundTripsPerRequest) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+import com.toiter.userservice.service.JwtService;
+import com.toiter.userservice.service.RateLimitPenaltyBox;
+import com.toiter.userservice.service.RateLimitPolicyEngine;
+import com.toiter.userservice.service.RateLimiter;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+    private static final RateLimitPolicy POLICY = new RateLimitPolicy("other", 30, 60, RateLimitPolicy.Algorithm.FIXED_WINDOW);
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private RateLimitPolicyEngine policyEngine;
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private FilterChain filterChain;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        RateLimitPenaltyBox penaltyBox = new RateLimitPenaltyBox(meterRegistry, true, 100);
+        filter = new RateLimitFilter(rateLimiter, policyEngine, penaltyBox, jwtService, true);
+        when(policyEngine.resolve(anyString(), anyString())).thenReturn(POLICY);
+        Claims claims = Jwts.claims().setSubject("user");
+        when(jwtService.parseClaims("token")).thenReturn(claims);
+        when(jwtService.extractUserId(claims)).thenReturn(7L);
+    }
+
+    @Test
+    void testDoFilter_AfterDenial_ShouldRejectLocallyWithoutParsingOrLimiter() throws Exception {
+        // Arrange
+        when(rateLimiter.tryAcquire(7L, "10.0.0.1", POLICY)).thenReturn(new RateLimitDecision(false, 30, 0, 45));
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilterInternal(request(), first, filterChain);
+
+        // Act
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilterInternal(request(), second, filterChain);
+
+        // Assert
+        assertEquals(429, first.getStatus());
+        assertEquals(429, second.getStatus());
+        assertNotNull(second.getHeader("Retry-After"));
+        assertTrue(Long.parseLong(second.getHeader("Retry-After")) <= 45);
+        verify(jwtService, times(1)).parseClaims("token");
+        verify(rateLimiter, times(1)).tryAcquire(any(), any(), any());
+        verifyNoInteractions(filterChain);
+        assertEquals(1.0, meterRegistry.counter("rate.limit.blocked", "source", "redis").count());
+        assertEquals(1.0, meterRegistry.counter("rate.limit.blocked", "source", "local").count());
+    }
+
+    @Test
+    void testDoFilter_Allowed_ShouldSetHeadersAndContinue() throws Exception {
+        // Arrange
+        when(rateLimiter.tryAcquire(7L, "10.0.0.1", POLICY)).thenReturn(new RateLimitDecision(true, 30, 29, 60));
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilterInternal(request, response, filterChain);
+        filter.doFilterInternal(request, new MockHttpServletResponse(), filterChain);
+
+        // Assert
+        assertEquals("29", response.getHeader("X-RateLimit-Remaining"));
+        verify(filterChain, times(2)).doFilter(any(), any());
+        verify(rateLimiter, times(2)).tryAcquire(7L, "10.0.0.1", POLICY);
+    }
+
+    @Test
+    void testDoFilter_WithContextPath_ShouldResolveTheRouteWithoutIt() throws Exception {
+        // Arrange
+        when(rateLimiter.tryAcquire(7L, "10.0.0.1", POLICY)).thenReturn(new RateLimitDecision(true, 30, 29, 60));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/query");
+        request.setContextPath("/api");
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("Authorization", "Bearer token");
+
+        // Act
+        filter.doFilterInternal(request, new MockHttpServletResponse(), filterChain);
+
+        // Assert
+        verify(policyEngine).resolve("GET", "/users/query");
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/follows/1");
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
+}
@@ -0,0 +1,81 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.entity.User;
+import com.toiter.userservice.model.UserPublicData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares payload size and encode/decode throughput of the binary codecs against the JSON serializers
+ * they replace. Excluded from {@code test}; run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class RedisSerializerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    @Test
+    void compareUserSerializers() {
+        User user = VersionedBinaryRedisSerializerTest.sampleUser();
+        GenericJackson2JsonRedisSerializer json = RedisConfig.legacyUserSerializer();
+        Result jsonResult = run("User json", json, user);
+        Result binaryResult = run("User binary", new UserRedisSerializer(json), user);
+        assertTrue(binaryResult.size < jsonResult.size);
+    }
+
+    @Test
+    void compareUserPublicDataSerializers() {
+        UserPublicData data = VersionedBinaryRedisSerializerTest.samplePublicData();
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        Result jsonResult = run("UserPublicData json", json, data);
+        Result binaryResult = run("UserPublicData binary", new UserPublicDataRedisSerializer(json), data);
+        assertTrue(binaryResult.size < jsonResult.size);
+    }
+
+    @Test
+    void compareLongSerializers() {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        Result jsonResult = run("Long json", json, 1_234_567L);
+        Result decimalResult = run("Long decimal", new LongRedisSerializer(json), 1_234_567L);
+        assertTrue(decimalResult.size <= jsonResult.size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Result run(String name, RedisSerializer<? super T> serializer, T value) {
+        RedisSerializer<Object> codec = (RedisSerializer<Object>) serializer;
+        byte[] payload = codec.serialize(value);
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += codec.serialize(value).length;
+            sink += codec.deserialize(payload) != null ? 1 : 0;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += codec.serialize(value).length;
+        }
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += codec.deserialize(payload) != null ? 1 : 0;
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        System.out.printf("%-24s size=%4d B  encode=%,12.0f ops/s  decode=%,12.0f ops/s  (sink %d)%n",
+                name, payload.length,
+                MEASURED_ITERATIONS * 1e9 / encodeNanos,
+                MEASURED_ITERATIONS * 1e9 / decodeNanos,
+                sink);
+        return new Result(payload.length);
+    }
+
+    private record Result(int size) {
+    }
+}
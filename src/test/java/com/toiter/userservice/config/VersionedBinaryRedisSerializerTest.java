@@ -0,0 +1,119 @@
+package com.toiter.userservice.config;
+
+import com.toiter.userservice.entity.User;
+import com.toiter.userservice.model.UserPublicData;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedBinaryRedisSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer legacyJson = new GenericJackson2JsonRedisSerializer();
+    private final UserRedisSerializer userSerializer = new UserRedisSerializer(RedisConfig.legacyUserSerializer());
+    private final UserPublicDataRedisSerializer publicDataSerializer = new UserPublicDataRedisSerializer(legacyJson);
+    private final LongRedisSerializer longSerializer = new LongRedisSerializer(legacyJson);
+
+    @Test
+    void testUser_RoundTrip_ShouldPreserveAllFields() {
+        User user = sampleUser();
+
+        User decoded = userSerializer.deserialize(userSerializer.serialize(user));
+
+        assertNotNull(decoded);
+        assertEquals(user.getId(), decoded.getId());
+        assertEquals(user.getUsername(), decoded.getUsername());
+        assertEquals(user.getDisplayName(), decoded.getDisplayName());
+        assertEquals(user.getEmail(), decoded.getEmail());
+        assertEquals(user.getPassword(), decoded.getPassword());
+        assertNull(decoded.getBio());
+        assertEquals(user.getProfileImageUrl(), decoded.getProfileImageUrl());
+        assertEquals(user.getHeaderImageUrl(), decoded.getHeaderImageUrl());
+        assertEquals(user.getCreationDate(), decoded.getCreationDate());
+    }
+
+    @Test
+    void testUser_LegacyJson_ShouldBeDecoded() {
+        User user = sampleUser();
+        byte[] legacy = RedisConfig.legacyUserSerializer().serialize(user);
+
+        User decoded = userSerializer.deserialize(legacy);
+
+        assertNotNull(decoded);
+        assertEquals(user.getId(), decoded.getId());
+        assertEquals(user.getUsername(), decoded.getUsername());
+        assertEquals(user.getCreationDate(), decoded.getCreationDate());
+    }
+
+    @Test
+    void testUserPublicData_RoundTrip_ShouldPreserveAllFields() {
+        UserPublicData data = samplePublicData();
+
+        UserPublicData decoded = publicDataSerializer.deserialize(publicDataSerializer.serialize(data));
+
+        assertNotNull(decoded);
+        assertEquals(data.getUserId(), decoded.getUserId());
+        assertEquals(data.getUsername(), decoded.getUsername());
+        assertEquals(data.getDisplayName(), decoded.getDisplayName());
+        assertEquals(data.getBio(), decoded.getBio());
+        assertEquals(data.getProfileImageUrl(), decoded.getProfileImageUrl());
+        assertNull(decoded.getHeaderImageUrl());
+        assertEquals(data.getFollowersCount(), decoded.getFollowersCount());
+        assertEquals(data.getFollowingCount(), decoded.getFollowingCount());
+        assertEquals(data.getFollowing(), decoded.getFollowing());
+        assertNull(decoded.getIsFollowingMe());
+        assertNull(decoded.getPostsCount());
+    }
+
+    @Test
+    void testUserPublicData_LegacyJson_ShouldBeDecoded() {
+        UserPublicData data = samplePublicData();
+
+        UserPublicData decoded = publicDataSerializer.deserialize(legacyJson.serialize(data));
+
+        assertNotNull(decoded);
+        assertEquals(data.getUserId(), decoded.getUserId());
+        assertEquals(data.getBio(), decoded.getBio());
+        assertEquals(data.getFollowersCount(), decoded.getFollowersCount());
+    }
+
+    @Test
+    void testUnknownVersion_ShouldFail() {
+        byte[] payload = publicDataSerializer.serialize(samplePublicData());
+        payload[1] = 99;
+
+        assertThrows(SerializationException.class, () -> publicDataSerializer.deserialize(payload));
+    }
+
+    @Test
+    void testLong_ShouldUseDecimalAndReadLegacyJson() {
+        assertArrayEquals("-42".getBytes(StandardCharsets.US_ASCII), longSerializer.serialize(-42L));
+        assertEquals(123456789L, longSerializer.deserialize(longSerializer.serialize(123456789L)));
+        assertEquals(7L, longSerializer.deserialize(legacyJson.serialize(7L)));
+        assertNull(longSerializer.deserialize(null));
+    }
+
+    static User sampleUser() {
+        User user = new User();
+        user.setId(4242L);
+        user.setUsername("joao_moreno");
+        user.setDisplayName("João Moreno");
+        user.setEmail("joao@example.com");
+        user.setPassword("$2a$10$abcdefghijklmnopqrstuuN1oVq0bBq5C8eQ2bX7lHk6W3h0Yt8i");
+        user.setBio(null);
+        user.setProfileImageUrl("https://cdn.example.com/profile/6f1c2d3e-4b5a-6978-8a9b-0c1d2e3f4a5b");
+        user.setHeaderImageUrl("6f1c2d3e-4b5a-6978-8a9b-0c1d2e3f4a5c");
+        user.setCreationDate(LocalDateTime.of(2024, 11, 3, 14, 25, 31, 123456000));
+        return user;
+    }
+
+    static UserPublicData samplePublicData() {
+        return new UserPublicData(4242L, "joao_moreno", "João Moreno", "Desenvolvedor backend ☕",
+                "https://cdn.example.com/profile/6f1c2d3e-4b5a-6978-8a9b-0c1d2e3f4a5b", null,
+                1532, 87, Boolean.TRUE, null, null);
+    }
+}
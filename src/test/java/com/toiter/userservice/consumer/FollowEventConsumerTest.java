@@ -0,0 +1,112 @@
+package com.toiter.userservice.consumer;
+
+import com.toiter.userservice.model.FollowCreatedEvent;
+import com.toiter.userservice.model.FollowDeletedEvent;
+import com.toiter.userservice.service.CacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FollowEventConsumerTest {
+
+    @Mock
+    private CacheService cacheService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FollowEventConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        consumer = new FollowEventConsumer(cacheService, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConsumeFollowEvents_ShouldMergeDeltasPerUserIntoOneWrite() {
+        // Arrange: 1000 users follow user 1, one of them unfollows again
+        List<ConsumerRecord<String, Object>> records = new ArrayList<>();
+        for (long follower = 2; follower < 1002; follower++) {
+            records.add(record(records.size(), created(1L, follower)));
+        }
+        records.add(record(records.size(), deleted(1L, 2L)));
+
+        // Act
+        consumer.consumeFollowEvents(records);
+
+        // Assert
+        ArgumentCaptor<Map<Long, Map<CacheService.UserCounter, Integer>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService, times(1)).incrementUserCounts(captor.capture());
+        verify(cacheService, never()).incrementUserCount(any(), any(), anyInt());
+        Map<Long, Map<CacheService.UserCounter, Integer>> deltas = captor.getValue();
+        assertEquals(1001, deltas.size());
+        assertEquals(999, deltas.get(1L).get(CacheService.UserCounter.FOLLOWERS));
+        assertEquals(0, deltas.get(2L).get(CacheService.UserCounter.FOLLOWING));
+        assertEquals(1, deltas.get(3L).get(CacheService.UserCounter.FOLLOWING));
+        assertEquals(1001, meterRegistry.summary("follow.events.batch.size").totalAmount());
+    }
+
+    @Test
+    void testConsumeFollowEvents_ShouldSkipUnknownEvents() {
+        // Arrange
+        List<ConsumerRecord<String, Object>> records = List.of(record(0, "not a follow event"));
+
+        // Act
+        consumer.consumeFollowEvents(records);
+
+        // Assert
+        verify(cacheService, never()).incrementUserCounts(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConsumeFollowEvents_ShouldApplyRecordsBeforeUnreadableOneAndReportIt() {
+        // Arrange
+        List<ConsumerRecord<String, Object>> records = List.of(
+                record(0, created(1L, 2L)),
+                record(1, null),
+                record(2, created(1L, 3L)));
+
+        // Act
+        BatchListenerFailedException thrown = assertThrows(BatchListenerFailedException.class,
+                () -> consumer.consumeFollowEvents(records));
+
+        // Assert
+        assertEquals(1, thrown.getIndex());
+        ArgumentCaptor<Map<Long, Map<CacheService.UserCounter, Integer>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).incrementUserCounts(captor.capture());
+        assertEquals(1, captor.getValue().get(1L).get(CacheService.UserCounter.FOLLOWERS));
+    }
+
+    private static ConsumerRecord<String, Object> record(long offset, Object value) {
+        return new ConsumerRecord<>("follow-events-topic", 0, offset, null, value);
+    }
+
+    private static FollowCreatedEvent created(Long userId, Long followerId) {
+        FollowCreatedEvent event = new FollowCreatedEvent();
+        event.setUserId(userId);
+        event.setFollowerId(followerId);
+        return event;
+    }
+
+    private static FollowDeletedEvent deleted(Long userId, Long followerId) {
+        FollowDeletedEvent event = new FollowDeletedEvent();
+        event.setUserId(userId);
+        event.setFollowerId(followerId);
+        return event;
+    }
+}
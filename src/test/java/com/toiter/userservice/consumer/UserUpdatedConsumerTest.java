@@ -0,0 +1,83 @@
+package com.toiter.userservice.consumer;
+
+import com.toiter.userservice.entity.User;
+import com.toiter.userservice.model.UserPublicData;
+import com.toiter.userservice.model.UserUpdatedEvent;
+import com.toiter.userservice.service.CacheService;
+import com.toiter.userservice.service.DeadLetterService;
+import com.toiter.userservice.service.ImageService;
+import com.toiter.userservice.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserUpdatedConsumerTest {
+
+    @Mock
+    private CacheService cacheService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private DeadLetterService deadLetterService;
+
+    private UserUpdatedConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        consumer = new UserUpdatedConsumer(cacheService, userService, imageService, deadLetterService);
+    }
+
+    @Test
+    void testConsumeUserUpdatedEvent_FromMainTopic_ShouldCacheTheProfile() {
+        // Arrange
+        User user = user();
+        UserPublicData publicData = new UserPublicData(1L, "alice", "Alice", null, null, null, 0, 0);
+        when(userService.createUserPublicData(user)).thenReturn(publicData);
+
+        // Act
+        consumer.consumeUserUpdatedEvent(new UserUpdatedEvent(user, List.of("displayName")), null);
+
+        // Assert
+        verify(cacheService).setUserIdByUsername("alice", 1L);
+        verify(cacheService).setUserById(1L, user);
+        verify(cacheService).setUserPublicData(1L, publicData);
+        verify(cacheService, never()).evictUser(anyLong(), any());
+    }
+
+    @Test
+    void testConsumeUserUpdatedEvent_FromRetryTopic_ShouldEvictInsteadOfCachingAPossiblyStaleProfile() {
+        // Arrange: a newer update may have been cached while this one waited on the retry topic
+        User user = user();
+        byte[] attempts = ByteBuffer.allocate(Integer.BYTES).putInt(2).array();
+
+        // Act
+        consumer.consumeUserUpdatedEvent(new UserUpdatedEvent(user, List.of("displayName")), attempts);
+
+        // Assert
+        verify(cacheService).evictUser(1L, "alice");
+        verify(cacheService, never()).setUserIdByUsername(any(), any());
+        verify(cacheService, never()).setUserById(any(), any());
+        verify(cacheService, never()).setUserPublicData(any(), any());
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("alice");
+        return user;
+    }
+}
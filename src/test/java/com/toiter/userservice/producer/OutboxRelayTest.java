@@ -0,0 +1,119 @@
+package com.toiter.userservice.producer;
+
+import com.toiter.userservice.entity.OutboxEvent;
+import com.toiter.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Mock
+    private KafkaOperations<String, String> kafkaOperations;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate, transactionManager, meterRegistry, 2, 5);
+        when(kafkaTemplate.executeInTransaction(any())).thenAnswer(invocation ->
+                ((KafkaOperations.OperationsCallback<String, String, Object>) invocation.getArgument(0))
+                        .doInOperations(kafkaOperations));
+        when(kafkaOperations.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRelayBatch_ShouldSendWithTypeHeaderAndDeleteRows() {
+        // Arrange
+        OutboxEvent event = event(1L, "follow-events-topic", "42", "com.toiter.userservice.model.FollowCreatedEvent");
+        when(outboxEventRepository.tryAdvisoryXactLock(OutboxRelay.ADVISORY_LOCK_KEY)).thenReturn(true);
+        when(outboxEventRepository.findOldest(any(Pageable.class))).thenReturn(List.of(event));
+
+        // Act
+        int relayed = relay.relayBatch();
+
+        // Assert
+        assertEquals(1, relayed);
+        ArgumentCaptor<ProducerRecord<String, String>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaOperations).send(captor.capture());
+        ProducerRecord<String, String> record = captor.getValue();
+        assertEquals("follow-events-topic", record.topic());
+        assertEquals("42", record.key());
+        assertEquals("{}", record.value());
+        assertEquals("com.toiter.userservice.model.FollowCreatedEvent", new String(
+                record.headers().lastHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME).value(), StandardCharsets.UTF_8));
+        long producedAt = event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(Long.toString(producedAt), new String(
+                record.headers().lastHeader(OutboxRelay.PRODUCED_AT_HEADER).value(), StandardCharsets.UTF_8));
+        assertEquals(producedAt, record.timestamp());
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L));
+        assertEquals(1, meterRegistry.counter("outbox.relayed").count());
+    }
+
+    @Test
+    void testRelayBatch_LockHeldElsewhere_ShouldSkip() {
+        // Arrange
+        when(outboxEventRepository.tryAdvisoryXactLock(anyLong())).thenReturn(false);
+
+        // Act
+        int relayed = relay.relayBatch();
+
+        // Assert
+        assertEquals(0, relayed);
+        verify(outboxEventRepository, never()).findOldest(any());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRelayBatch_SendFails_ShouldNotDeleteRows() {
+        // Arrange
+        when(outboxEventRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        when(outboxEventRepository.findOldest(any(Pageable.class)))
+                .thenReturn(List.of(event(1L, "user-updated-topic", "7", "com.toiter.userservice.model.UserUpdatedEvent")));
+        when(kafkaOperations.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> relay.relayBatch());
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private static OutboxEvent event(Long id, String topic, String key, String type) {
+        OutboxEvent event = new OutboxEvent(topic, key, type, "{}");
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,257 @@
+package com.toiter.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.toiter.userservice.entity.User;
+import com.toiter.userservice.model.UserPublicData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheServiceTest {
+
+    private static final long LOCAL_TTL_SECONDS = 30;
+
+    @Mock
+    private RedisTemplate<String, Long> redisTemplateForLong;
+
+    @Mock
+    private RedisTemplate<String, UserPublicData> redisTemplateForUserPublicData;
+
+    @Mock
+    private RedisTemplate<String, User> redisTemplateForUser;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplateForLocks;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ValueOperations<String, User> userValueOps;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheService cacheService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = node(meterRegistry);
+        when(redisTemplateForUser.opsForValue()).thenReturn(userValueOps);
+        when(redisTemplateForLong.executePipelined(any(SessionCallback.class)))
+                .thenReturn(List.<Object>of(5L, 60_000L));
+        when(redisTemplateForUser.executePipelined(any(SessionCallback.class)))
+                .thenReturn(List.<Object>of(user(1L, "alice"), 60_000L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetUserIdByUsername_SecondRead_ShouldBeServedFromLocalCache() {
+        // Act
+        CachedValue<Long> first = cacheService.getUserIdByUsernameEntry("alice");
+        CachedValue<Long> second = cacheService.getUserIdByUsernameEntry("alice");
+
+        // Assert
+        assertEquals(5L, first.value());
+        assertSame(first, second);
+        assertTrue(first.remainingMillis() > 0 && first.remainingMillis() <= 60_000L);
+        verify(redisTemplateForLong, times(1)).executePipelined(any(SessionCallback.class));
+        assertEquals(1, lookups(CacheService.CACHE_USER_ID, "local", "miss"));
+        assertEquals(1, lookups(CacheService.CACHE_USER_ID, "redis", "hit"));
+        assertEquals(1, lookups(CacheService.CACHE_USER_ID, "local", "hit"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetUserIdByUsername_MissingEverywhere_ShouldRecordMissOnBothTiers() {
+        // Arrange
+        when(redisTemplateForLong.executePipelined(any(SessionCallback.class))).thenReturn(List.<Object>of());
+
+        // Act
+        Long userId = cacheService.getUserIdByUsername("ghost");
+
+        // Assert
+        assertNull(userId);
+        assertEquals(1, lookups(CacheService.CACHE_USER_ID, "local", "miss"));
+        assertEquals(1, lookups(CacheService.CACHE_USER_ID, "redis", "miss"));
+        assertEquals(0, lookups(CacheService.CACHE_USER_ID, "redis", "hit"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLocalEntry_AfterLocalTtl_ShouldBeReloadedFromRedis() {
+        // Arrange
+        cacheService.getUserById(1L);
+
+        // Act
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(LOCAL_TTL_SECONDS - 1));
+        cacheService.getUserById(1L);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cacheService.getUserById(1L);
+
+        // Assert
+        verify(redisTemplateForUser, times(2)).executePipelined(any(SessionCallback.class));
+        assertEquals(1, lookups(CacheService.CACHE_USER, "local", "hit"));
+        assertEquals(2, lookups(CacheService.CACHE_USER, "local", "miss"));
+    }
+
+    @Test
+    void testSetUserById_ShouldPublishAnInvalidationTaggedWithTheCache() {
+        // Act
+        cacheService.setUserById(1L, user(1L, "alice"));
+
+        // Assert
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplateForLocks).convertAndSend(eq(CacheService.INVALIDATION_CHANNEL), payload.capture());
+        String[] parts = payload.getValue().split("\\|", 3);
+        assertEquals(3, parts.length);
+        assertFalse(parts[0].isBlank());
+        assertEquals(CacheService.CACHE_USER, parts[1]);
+        assertEquals("1", parts[2]);
+    }
+
+    @Test
+    void testSetUserById_PublishFails_ShouldStillCacheLocally() {
+        // Arrange
+        when(redisTemplateForLocks.convertAndSend(anyString(), any())).thenThrow(new IllegalStateException("down"));
+        User user = user(1L, "alice");
+
+        // Act
+        cacheService.setUserById(1L, user);
+
+        // Assert
+        assertSame(user, cacheService.getUserById(1L));
+        verify(userValueOps).set(eq("user:id:1"), eq(user), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInvalidationFromAnotherNode_ShouldEvictTheLocalEntry() {
+        // Arrange: this node has user 1 in L1, another node rewrites it
+        cacheService.getUserById(1L);
+        CacheService otherNode = node(new SimpleMeterRegistry());
+        otherNode.setUserById(1L, user(1L, "alice2"));
+
+        // Act
+        cacheService.onInvalidationMessage(message(publishedPayload()), null);
+        cacheService.getUserById(1L);
+
+        // Assert
+        verify(redisTemplateForUser, times(2)).executePipelined(any(SessionCallback.class));
+        assertEquals(2, lookups(CacheService.CACHE_USER, "local", "miss"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOwnInvalidation_ShouldKeepTheValueThisNodeWrote() {
+        // Arrange
+        User user = user(1L, "alice");
+        cacheService.setUserById(1L, user);
+
+        // Act
+        cacheService.onInvalidationMessage(message(publishedPayload()), null);
+        User cached = cacheService.getUserById(1L);
+
+        // Assert
+        assertSame(user, cached);
+        verify(redisTemplateForUser, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testUsernameInvalidation_ShouldAlsoDropTheNegativeEntry() {
+        // Arrange
+        when(redisTemplateForLocks.hasKey("user:missing:alice")).thenReturn(true, false);
+        assertTrue(cacheService.isUsernameMissing("alice"));
+
+        // Act
+        cacheService.onInvalidationMessage(message("other-node|" + CacheService.CACHE_USER_ID + "|alice"), null);
+        boolean missing = cacheService.isUsernameMissing("alice");
+
+        // Assert
+        assertFalse(missing);
+        verify(redisTemplateForLocks, times(2)).hasKey("user:missing:alice");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMalformedInvalidation_ShouldBeIgnored() {
+        // Arrange
+        cacheService.getUserById(1L);
+
+        // Act
+        assertDoesNotThrow(() -> {
+            cacheService.onInvalidationMessage(message("garbage"), null);
+            cacheService.onInvalidationMessage(message("other-node|" + CacheService.CACHE_USER + "|not-a-number"), null);
+            cacheService.onInvalidationMessage(message("other-node|unknownCache|1"), null);
+        });
+        cacheService.getUserById(1L);
+
+        // Assert
+        verify(redisTemplateForUser, times(1)).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testSubscribeToInvalidations_ShouldListenOnTheInvalidationChannel() {
+        // Act
+        cacheService.subscribeToInvalidations();
+
+        // Assert
+        ArgumentCaptor<Topic> topic = ArgumentCaptor.forClass(Topic.class);
+        verify(listenerContainer).addMessageListener(any(), topic.capture());
+        assertEquals(CacheService.INVALIDATION_CHANNEL, topic.getValue().getTopic());
+    }
+
+    private CacheService node(SimpleMeterRegistry registry) {
+        return new CacheService(redisTemplateForLong, redisTemplateForUserPublicData, redisTemplateForUser,
+                redisTemplateForLocks, listenerContainer, registry, 1000, LOCAL_TTL_SECONDS, 60, 60, ticker);
+    }
+
+    private String publishedPayload() {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplateForLocks, atLeastOnce()).convertAndSend(eq(CacheService.INVALIDATION_CHANNEL), payload.capture());
+        return payload.getValue();
+    }
+
+    private static DefaultMessage message(String payload) {
+        return new DefaultMessage(CacheService.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double lookups(String cache, String tier, String result) {
+        Counter counter = meterRegistry.find("user.cache.lookups")
+                .tags("cache", cache, "tier", tier, "result", result)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}
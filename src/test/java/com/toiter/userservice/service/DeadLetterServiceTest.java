@@ -0,0 +1,58 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeadLetterServiceTest {
+
+    @Mock
+    private ConsumerFactory<String, byte[]> deadLetterConsumerFactory;
+
+    @Mock
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DeadLetterService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new DeadLetterService(deadLetterConsumerFactory, retryKafkaTemplate, meterRegistry);
+    }
+
+    @Test
+    void testReplay_ShouldRejectUnknownTopics() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.replay("user-updated-topic", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.replay("some-other-topic-dlt", 10));
+        verifyNoInteractions(deadLetterConsumerFactory, retryKafkaTemplate);
+    }
+
+    @Test
+    void testRecordDeadLetter_ShouldCountPerTopic() {
+        // Arrange
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("user-updated-topic-dlt", 0, 5L, "7", null);
+        record.headers().add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, "boom".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        service.recordDeadLetter(record);
+        service.recordRetry("user-updated-topic");
+
+        // Assert
+        assertEquals(1, meterRegistry.counter("kafka.consumer.dead.letters", "topic", "user-updated-topic-dlt").count());
+        assertEquals(1, meterRegistry.counter("kafka.consumer.retries", "topic", "user-updated-topic").count());
+    }
+}
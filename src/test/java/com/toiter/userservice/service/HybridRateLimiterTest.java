@@ -0,0 +1,104 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HybridRateLimiterTest {
+
+    private static final RateLimitPolicy GET = new RateLimitPolicy("get", 100, 60, RateLimitPolicy.Algorithm.FIXED_WINDOW);
+
+    @Mock
+    private RateLimitService rateLimitService;
+
+    private HybridRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(rateLimitService.buildRateLimitKey(anyLong(), any(), eq("get"))).thenReturn("rate_limit:user:1:get");
+        limiter = new HybridRateLimiter(rateLimitService, new SimpleMeterRegistry(), 10, 2, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void testTryAcquire_FirstRequest_ShouldAllowOnCreditAndLeaseInBackground() {
+        // Arrange
+        when(rateLimitService.reserve(anyString(), anyLong(), anyInt(), anyLong()))
+                .thenReturn(new RateLimitService.Lease(11, 60_000));
+
+        // Act
+        RateLimitDecision first = limiter.tryAcquire(1L, null, GET);
+
+        // Assert
+        assertTrue(first.allowed());
+        verify(rateLimitService, timeout(1000)).reserve("rate_limit:user:1:get", 11L, 100, 60_000L);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1L, null, GET).allowed());
+        }
+        verify(rateLimitService, times(1)).reserve(anyString(), anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    void testTryAcquire_NoLeaseYet_ShouldCapCreditAtMaxDrift() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(rateLimitService.reserve(anyString(), anyLong(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new RateLimitService.Lease(10, 60_000);
+        });
+
+        // Act
+        boolean first = limiter.tryAcquire(1L, null, GET).allowed();
+        boolean second = limiter.tryAcquire(1L, null, GET).allowed();
+        boolean third = limiter.tryAcquire(1L, null, GET).allowed();
+        release.countDown();
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+    }
+
+    @Test
+    void testTryAcquire_RedisQuotaExhausted_ShouldDenyLocally() {
+        // Arrange
+        when(rateLimitService.reserve(anyString(), anyLong(), anyInt(), anyLong()))
+                .thenReturn(new RateLimitService.Lease(0, 30_000));
+        limiter.tryAcquire(1L, null, GET);
+        verify(rateLimitService, timeout(1000)).reserve(anyString(), anyLong(), anyInt(), anyLong());
+
+        // Act
+        RateLimitDecision decision = awaitDenied();
+
+        // Assert
+        assertFalse(decision.allowed());
+        assertTrue(decision.resetSeconds() <= 30);
+        verify(rateLimitService, times(1)).reserve(anyString(), anyLong(), anyInt(), anyLong());
+    }
+
+    private RateLimitDecision awaitDenied() {
+        long deadline = System.currentTimeMillis() + 1000;
+        RateLimitDecision decision;
+        do {
+            decision = limiter.tryAcquire(1L, null, GET);
+        } while (decision.allowed() && System.currentTimeMillis() < deadline);
+        return decision;
+    }
+}
@@ -0,0 +1,105 @@
+package com.toiter.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toiter.userservice.config.JwtSigningProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksTokenVerifierTest {
+
+    private HttpServer server;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicReference<String> jwks = new AtomicReference<>("{\"keys\":[]}");
+    private URI jwksUri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/.well-known/jwks.json", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = jwks.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        jwksUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/.well-known/jwks.json");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testVerify_TokenFromUserService_ShouldVerifyWithPublishedKeysOnce() throws Exception {
+        // Arrange
+        KeyPair keyPair = JwtKeyRingTest.generateKeyPair();
+        publish(JwtKeyRingTest.key("k1", keyPair, true));
+        String token = JwtKeyRingTest.jwtService(JwtKeyRingTest.properties("k1", true, JwtKeyRingTest.key("k1", keyPair, true)))
+                .generateToken("alice", 42L);
+        JwksTokenVerifier verifier = new JwksTokenVerifier(jwksUri, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        // Act
+        String first = verifier.verify(token).getSubject();
+        Long second = verifier.verify(token).get("userId", Long.class);
+
+        // Assert
+        assertEquals("alice", first);
+        assertEquals(42L, second);
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testVerify_KeyRotatedAfterFirstFetch_ShouldRefreshOnUnknownKid() throws Exception {
+        // Arrange
+        KeyPair oldKey = JwtKeyRingTest.generateKeyPair();
+        KeyPair newKey = JwtKeyRingTest.generateKeyPair();
+        publish(JwtKeyRingTest.key("k1", oldKey, true));
+        JwksTokenVerifier verifier = new JwksTokenVerifier(jwksUri, Duration.ofMinutes(5), Duration.ZERO);
+        verifier.verify(JwtKeyRingTest.jwtService(JwtKeyRingTest.properties("k1", true, JwtKeyRingTest.key("k1", oldKey, true)))
+                .generateToken("alice", 1L));
+        publish(JwtKeyRingTest.key("k1", oldKey, false), JwtKeyRingTest.key("k2", newKey, true));
+        String rotated = JwtKeyRingTest.jwtService(JwtKeyRingTest.properties("k2", true, JwtKeyRingTest.key("k2", newKey, true)))
+                .generateToken("bob", 2L);
+
+        // Act
+        String subject = verifier.verify(rotated).getSubject();
+
+        // Assert
+        assertEquals("bob", subject);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testVerify_HmacToken_ShouldBeRejected() {
+        // Arrange
+        String hmacToken = JwtKeyRingTest.jwtService(JwtKeyRingTest.properties(null, true)).generateToken("alice", 1L);
+        JwksTokenVerifier verifier = new JwksTokenVerifier(jwksUri, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        // Act & Assert
+        assertThrows(JwtException.class, () -> verifier.verify(hmacToken));
+        assertEquals(0, fetches.get());
+    }
+
+    private void publish(JwtSigningProperties.Key... keys) throws IOException {
+        JwtKeyRing keyRing = new JwtKeyRing(JwtKeyRingTest.properties(null, true, keys), JwtKeyRingTest.SECRET);
+        jwks.set(new ObjectMapper().writeValueAsString(keyRing.getJwks()));
+    }
+}
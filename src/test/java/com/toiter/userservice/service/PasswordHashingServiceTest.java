@@ -0,0 +1,204 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testEncodeAndMatches_ShouldUseConfiguredCost() {
+        // Arrange
+        service = new PasswordHashingService(new SimpleMeterRegistry(), 1, 4, 4, 5000, false, 250, 4, 4);
+
+        // Act
+        String hash = service.encode("s3cret!");
+
+        // Assert
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(service.matches("s3cret!", hash));
+        assertFalse(service.matches("wrong", hash));
+    }
+
+    @Test
+    void testNeedsRehash_ShouldFlagHashesWeakerThanTheCalibratedCost() {
+        // Arrange
+        service = new PasswordHashingService(new SimpleMeterRegistry(), 1, 4, 4, 5000, false, 250, 5, 5);
+
+        // Act & Assert
+        assertTrue(service.needsRehash(new BCryptPasswordEncoder(4).encode("s3cret!")));
+        assertFalse(service.needsRehash(new BCryptPasswordEncoder(5).encode("s3cret!")));
+        assertTrue(service.needsRehash("plain"));
+    }
+
+    @Test
+    void testNeedsRehash_StrongerHash_ShouldBeLeftAlone() {
+        // Arrange: another instance calibrated a higher cost on faster hardware
+        service = new PasswordHashingService(new SimpleMeterRegistry(), 1, 4, 4, 5000, false, 250, 5, 5);
+
+        // Act & Assert
+        assertFalse(service.needsRehash(new BCryptPasswordEncoder(6).encode("s3cret!")));
+    }
+
+    @Test
+    void testCalibrate_ShouldStayWithinBounds() {
+        // Arrange
+        service = new PasswordHashingService(new SimpleMeterRegistry(), 1, 4, 4, 5000, true, 1, 4, 6);
+
+        // Act
+        service.calibrate();
+
+        // Assert
+        assertEquals(4, service.getCost());
+    }
+
+    @Test
+    void testEncode_ShouldShedWhenQueueIsFull() throws Exception {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        service = new PasswordHashingService(meterRegistry, 1, 1, 4, 5000, false, 250, 4, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread busy = runInBackground(() -> service.run(() -> {
+            started.countDown();
+            return awaitQuietly(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread queued = runInBackground(() -> service.run(() -> true)); // fills the only queue slot
+        awaitQueueDepth(meterRegistry, 1);
+
+        // Act & Assert
+        try {
+            assertThrows(RejectedExecutionException.class, () -> service.encode("c"));
+        } finally {
+            release.countDown();
+            busy.join(5000);
+            queued.join(5000);
+        }
+    }
+
+    @Test
+    void testEncode_RehashesPending_ShouldStillBeServed() throws Exception {
+        // Arrange: the rehash thread is busy and its queue is full
+        service = new PasswordHashingService(new SimpleMeterRegistry(), 1, 1, 1, 5000, false, 250, 4, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger rehashed = new AtomicInteger();
+        service.encodeAsync("a", hash -> {
+            started.countDown();
+            awaitQuietly(release);
+            rehashed.incrementAndGet();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        service.encodeAsync("b", hash -> rehashed.incrementAndGet());
+        service.encodeAsync("c", hash -> rehashed.incrementAndGet()); // dropped, the rehash queue is full
+
+        // Act
+        String hash;
+        try {
+            hash = service.encode("s3cret!");
+        } finally {
+            release.countDown();
+        }
+
+        // Assert
+        assertTrue(service.matches("s3cret!", hash));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rehashed.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, rehashed.get());
+    }
+
+    @Test
+    void testRun_TimedOutHash_ShouldCountInQueueDepthUntilItFinishes() throws Exception {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        service = new PasswordHashingService(meterRegistry, 1, 4, 4, 200, false, 250, 4, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        Gauge depth = meterRegistry.get("auth.password.hash.queue.depth").gauge();
+
+        // Act
+        try {
+            assertThrows(RejectedExecutionException.class, () -> service.run(() -> awaitUninterruptibly(release)));
+
+            // Assert: the cancelled task ignores the interrupt and keeps the only thread
+            assertEquals(1.0, depth.value());
+        } finally {
+            release.countDown();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (depth.value() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, depth.value());
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.rejected").counter().count());
+    }
+
+    private Thread runInBackground(Runnable action) {
+        Thread thread = new Thread(() -> {
+            try {
+                action.run();
+            } catch (RuntimeException ignored) {
+                // the outcome of background hashes is not under test
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueueDepth(SimpleMeterRegistry meterRegistry, double expected) throws InterruptedException {
+        Gauge depth = meterRegistry.get("auth.password.hash.queue.depth").gauge();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (depth.value() == expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Queue depth never reached " + expected);
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Behaves like BCrypt under {@code Future.cancel(true)}: keeps running until released.
+     */
+    private static boolean awaitUninterruptibly(CountDownLatch latch) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                return latch.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
+                // keep going, as a running hash would
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package com.toiter.userservice.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.toiter.userservice.model.PostCount;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostClientServiceTest {
+
+    private static final LocalDateTime COUNTED_AT = LocalDateTime.of(2026, 3, 1, 12, 0, 0);
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean bulkSupported = new AtomicBoolean(true);
+    private final AtomicBoolean failing = new AtomicBoolean(false);
+    private PostClientService client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/posts/counts", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            if (failing.get()) {
+                respond(exchange, 500, "");
+            } else if (!bulkSupported.get()) {
+                respond(exchange, 404, "");
+            } else {
+                String ids = exchange.getRequestURI().getQuery().substring("userIds=".length());
+                String body = "{" + List.of(ids.split(",")).stream()
+                        .map(id -> "\"" + id + "\":" + Long.parseLong(id) * 10)
+                        .collect(Collectors.joining(",")) + "}";
+                exchange.getResponseHeaders().set(PostClientService.COUNTED_AT_HEADER, COUNTED_AT.toString());
+                respond(exchange, 200, body);
+            }
+        });
+        server.createContext("/posts/count", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            if (failing.get()) {
+                respond(exchange, 500, "");
+            } else {
+                long id = Long.parseLong(exchange.getRequestURI().getQuery().substring("userId=".length()));
+                exchange.getResponseHeaders().set(PostClientService.COUNTED_AT_HEADER, COUNTED_AT.toString());
+                respond(exchange, 200, String.valueOf(id * 10));
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+
+        client = client(100, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testGetPostsCounts_ConcurrentCalls_ShouldSendOneBulkRequest() throws Exception {
+        // Arrange
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Long, PostCount>>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < callers; i++) {
+            long userId = i % 4 + 1;
+            results.add(executor.submit(() -> {
+                start.await();
+                return client.getPostsCounts(List.of(userId));
+            }));
+        }
+        start.countDown();
+
+        // Assert
+        for (int i = 0; i < callers; i++) {
+            long userId = i % 4 + 1;
+            assertEquals(Map.of(userId, new PostCount((int) userId * 10, COUNTED_AT)), results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertTrue(requests.stream().anyMatch(uri -> uri.startsWith("/posts/counts?")));
+        assertTrue(requests.size() < callers);
+    }
+
+    @Test
+    void testGetPostsCounts_BulkEndpointMissing_ShouldFallBackToSingleRequests() {
+        // Arrange
+        bulkSupported.set(false);
+
+        // Act
+        Map<Long, PostCount> counts = client.getPostsCounts(List.of(1L, 2L));
+
+        // Assert
+        assertEquals(Map.of(1L, new PostCount(10, COUNTED_AT), 2L, new PostCount(20, COUNTED_AT)), counts);
+        assertTrue(requests.contains("/posts/count?userId=1"));
+        assertTrue(requests.contains("/posts/count?userId=2"));
+    }
+
+    @Test
+    void testGetPostsCounts_CircuitOpen_ShouldLeaveUsersOutWithoutCalling() {
+        // Arrange
+        assertEquals(30, client.getPostsCounts(List.of(3L)).get(3L).count());
+        failing.set(true);
+        client.getPostsCounts(List.of(3L));
+        client.getPostsCounts(List.of(3L));
+        int requestsBeforeOpen = requests.size();
+
+        // Act
+        Map<Long, PostCount> counts = client.getPostsCounts(List.of(3L));
+
+        // Assert
+        assertTrue(counts.isEmpty());
+        assertEquals(requestsBeforeOpen, requests.size());
+    }
+
+    @Test
+    void testGetPostsCounts_NoCountedAtHeader_ShouldLeaveTheInstantOut() {
+        // Arrange
+        server.removeContext("/posts/count");
+        server.createContext("/posts/count", exchange -> respond(exchange, 200, "40"));
+
+        // Act
+        Map<Long, PostCount> counts = client.getPostsCounts(List.of(4L));
+
+        // Assert
+        assertEquals(Map.of(4L, new PostCount(40, null)), counts);
+    }
+
+    @Test
+    void testGetPostsCounts_EmptyWhileHalfOpen_ShouldNotTakeTheTrial() throws Exception {
+        // Arrange
+        PostClientService quickClient = client(100, 50);
+        openCircuit(quickClient);
+        failing.set(false);
+        Thread.sleep(100);
+
+        // Act
+        Map<Long, PostCount> none = quickClient.getPostsCounts(List.of());
+        Map<Long, PostCount> counts = quickClient.getPostsCounts(List.of(3L));
+
+        // Assert
+        assertTrue(none.isEmpty());
+        assertEquals(30, counts.get(3L).count());
+        assertFalse(quickClient.circuitBreaker().isOpen());
+        quickClient.shutdown();
+    }
+
+    @Test
+    void testGetPostsCounts_ScheduleRejectedDuringTrial_ShouldReportTheFailure() throws Exception {
+        // Arrange: a batch smaller than max-size waits for a scheduled flush
+        PostClientService quickClient = client(100, 50);
+        openCircuit(quickClient);
+        Thread.sleep(100);
+        quickClient.shutdown();
+
+        // Act
+        Map<Long, PostCount> counts = quickClient.getPostsCounts(List.of(3L));
+
+        // Assert: the trial ended, so another one is allowed once the circuit has been open long enough
+        assertTrue(counts.isEmpty());
+        Thread.sleep(100);
+        assertTrue(quickClient.circuitBreaker().allowRequest());
+    }
+
+    @Test
+    void testGetPostsCounts_SubmitRejectedDuringTrial_ShouldReportTheFailure() throws Exception {
+        // Arrange: a batch of max-size is submitted right away
+        PostClientService quickClient = client(1, 50);
+        openCircuit(quickClient);
+        Thread.sleep(100);
+        quickClient.shutdown();
+
+        // Act
+        Map<Long, PostCount> counts = quickClient.getPostsCounts(List.of(3L));
+
+        // Assert
+        assertTrue(counts.isEmpty());
+        Thread.sleep(100);
+        assertTrue(quickClient.circuitBreaker().allowRequest());
+    }
+
+    private PostClientService client(int maxBatchSize, long openMillis) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new PostClientService(
+                new RestTemplateBuilder().readTimeout(Duration.ofMillis(500)).build(),
+                new SimpleMeterRegistry(), url, "secret", 20, maxBatchSize, 1000, 60000, 2, openMillis, 4);
+    }
+
+    private void openCircuit(PostClientService target) {
+        failing.set(true);
+        target.getPostsCounts(List.of(3L));
+        target.getPostsCounts(List.of(3L));
+        assertTrue(target.circuitBreaker().isOpen());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
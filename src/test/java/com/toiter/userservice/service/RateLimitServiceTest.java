@@ -1,15 +1,17 @@
 package com.toiter.userservice.service;
 
+import com.toiter.userservice.model.RateLimitDecision;
+import com.toiter.userservice.model.RateLimitPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.time.Duration;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -20,17 +22,13 @@ class RateLimitServiceTest {
     @Mock
     private RedisTemplate<String, Long> redisTemplateForLong;
 
-    @Mock
-    private ValueOperations<String, Long> valueOperations;
-
     @InjectMocks
     private RateLimitService rateLimitService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        when(redisTemplateForLong.opsForValue()).thenReturn(valueOperations);
-        
+
         // Set default configuration values
         ReflectionTestUtils.setField(rateLimitService, "getRequestsLimit", 100);
         ReflectionTestUtils.setField(rateLimitService, "getWindowSeconds", 60);
@@ -40,168 +38,129 @@ class RateLimitServiceTest {
         ReflectionTestUtils.setField(rateLimitService, "loginWindowSeconds", 60);
     }
 
-    @Test
-    void testIsAllowed_FirstRequest_ShouldBeAllowed() {
-        // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(null);
-
-        // Act
-        boolean allowed = rateLimitService.isAllowed(userId, ipAddress, requestType);
-
-        // Assert
-        assertTrue(allowed);
-        verify(valueOperations).set(anyString(), eq(1L), any(Duration.class));
+    @SuppressWarnings("unchecked")
+    private void givenScriptResult(long allowed, long remaining, long ttlMillis) {
+        when(redisTemplateForLong.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(allowed, remaining, ttlMillis));
     }
 
     @Test
-    void testIsAllowed_WithinLimit_ShouldBeAllowed() {
+    @SuppressWarnings("unchecked")
+    void testTryAcquire_FirstRequest_ShouldBeAllowedWithOneRoundTrip() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(50L);
+        givenScriptResult(1, 99, 60000);
 
         // Act
-        boolean allowed = rateLimitService.isAllowed(userId, ipAddress, requestType);
+        RateLimitDecision decision = rateLimitService.tryAcquire(123L, "192.168.1.1", RateLimitService.RequestType.GET);
 
         // Assert
-        assertTrue(allowed);
-        verify(valueOperations).increment(anyString());
+        assertTrue(decision.allowed());
+        assertEquals(100, decision.limit());
+        assertEquals(99, decision.remaining());
+        assertEquals(60, decision.resetSeconds());
+        verify(redisTemplateForLong, times(1)).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:user:123:get")), eq(100L), eq(60000L));
+        verifyNoMoreInteractions(redisTemplateForLong);
     }
 
     @Test
-    void testIsAllowed_ExceedLimit_ShouldBeDenied() {
+    void testTryAcquire_ExceedLimit_ShouldBeDenied() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(100L);
+        givenScriptResult(0, 0, 1500);
 
         // Act
-        boolean allowed = rateLimitService.isAllowed(userId, ipAddress, requestType);
+        RateLimitDecision decision = rateLimitService.tryAcquire(123L, "192.168.1.1", RateLimitService.RequestType.GET);
 
         // Assert
-        assertFalse(allowed);
-        verify(valueOperations, never()).increment(anyString());
+        assertFalse(decision.allowed());
+        assertEquals(0, decision.remaining());
+        assertEquals(2, decision.resetSeconds());
     }
 
     @Test
-    void testIsAllowed_LoginRequestType_ShouldUseLowerLimit() {
+    @SuppressWarnings("unchecked")
+    void testTryAcquire_LoginRequestType_ShouldUseLoginLimit() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.LOGIN;
-        when(valueOperations.get(anyString())).thenReturn(5L);
+        givenScriptResult(1, 4, 60000);
 
         // Act
-        boolean allowed = rateLimitService.isAllowed(userId, ipAddress, requestType);
+        RateLimitDecision decision = rateLimitService.tryAcquire(123L, "192.168.1.1", RateLimitService.RequestType.LOGIN);
 
         // Assert
-        assertFalse(allowed);
+        assertEquals(5, decision.limit());
+        verify(redisTemplateForLong).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:user:123:login")), eq(5L), eq(60000L));
     }
 
     @Test
-    void testIsAllowed_UnauthenticatedUserWithIP_ShouldApplyRateLimit() {
+    @SuppressWarnings("unchecked")
+    void testTryAcquire_UnauthenticatedUserWithIP_ShouldKeyByIp() {
         // Arrange
-        Long userId = null;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(null);
+        givenScriptResult(1, 99, 60000);
 
         // Act
-        boolean allowed = rateLimitService.isAllowed(userId, ipAddress, requestType);
+        boolean allowed = rateLimitService.isAllowed(null, "192.168.1.1", RateLimitService.RequestType.GET);
 
         // Assert
         assertTrue(allowed);
-        verify(valueOperations).set(anyString(), eq(1L), any(Duration.class));
-    }
-
-    @Test
-    void testGetRemainingRequests_NoRequestsMade_ShouldReturnFullLimit() {
-        // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(null);
-
-        // Act
-        long remaining = rateLimitService.getRemainingRequests(userId, ipAddress, requestType);
-
-        // Assert
-        assertEquals(100, remaining);
-    }
-
-    @Test
-    void testGetRemainingRequests_SomeRequestsMade_ShouldReturnCorrectRemaining() {
-        // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(40L);
-
-        // Act
-        long remaining = rateLimitService.getRemainingRequests(userId, ipAddress, requestType);
-
-        // Assert
-        assertEquals(60, remaining);
+        verify(redisTemplateForLong).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:ip:192.168.1.1:get")), eq(100L), eq(60000L));
     }
 
     @Test
-    void testGetRemainingRequests_LimitExceeded_ShouldReturnZero() {
+    void testTryAcquire_UnexpectedScriptResult_ShouldThrow() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(valueOperations.get(anyString())).thenReturn(150L);
-
-        // Act
-        long remaining = rateLimitService.getRemainingRequests(userId, ipAddress, requestType);
+        when(redisTemplateForLong.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(null);
 
-        // Assert
-        assertEquals(0, remaining);
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> rateLimitService.tryAcquire(123L, "192.168.1.1", RateLimitService.RequestType.OTHER));
     }
 
     @Test
-    void testGetResetTime_WithActiveLimit_ShouldReturnTTL() {
+    @SuppressWarnings("unchecked")
+    void testTryAcquire_SlidingLogPolicy_ShouldUseLogKeyAndUniqueMember() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(redisTemplateForLong.getExpire(anyString())).thenReturn(45L);
+        RateLimitPolicy policy = new RateLimitPolicy("user-query", 30, 60, RateLimitPolicy.Algorithm.SLIDING_LOG);
+        when(redisTemplateForLong.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+                .thenReturn(List.of(1L, 29L, 60000L));
 
         // Act
-        long resetTime = rateLimitService.getResetTime(userId, ipAddress, requestType);
+        RateLimitDecision decision = rateLimitService.tryAcquire(123L, "192.168.1.1", policy);
 
         // Assert
-        assertEquals(45, resetTime);
+        assertTrue(decision.allowed());
+        assertEquals(30, decision.limit());
+        assertEquals(29, decision.remaining());
+        verify(redisTemplateForLong).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:user:123:user-query:log")), eq(30L), eq(60000L), anyLong());
     }
 
     @Test
-    void testGetResetTime_NoActiveLimit_ShouldReturnZero() {
+    @SuppressWarnings("unchecked")
+    void testTryAcquire_GcraPolicyDenied_ShouldReportRetryDelay() {
         // Arrange
-        Long userId = 123L;
-        String ipAddress = "192.168.1.1";
-        RateLimitService.RequestType requestType = RateLimitService.RequestType.GET;
-        when(redisTemplateForLong.getExpire(anyString())).thenReturn(-1L);
+        RateLimitPolicy policy = new RateLimitPolicy("chat-message", 60, 60, RateLimitPolicy.Algorithm.GCRA);
+        givenScriptResult(0, 0, 800);
 
         // Act
-        long resetTime = rateLimitService.getResetTime(userId, ipAddress, requestType);
+        RateLimitDecision decision = rateLimitService.tryAcquire(null, "192.168.1.1", policy);
 
         // Assert
-        assertEquals(0, resetTime);
+        assertFalse(decision.allowed());
+        assertEquals(1, decision.resetSeconds());
+        verify(redisTemplateForLong).execute(any(RedisScript.class),
+                eq(List.of("rate_limit:ip:192.168.1.1:chat-message:gcra")), eq(60L), eq(60000L));
     }
 
     @Test
     void testGetLimitForType_ShouldReturnCorrectLimits() {
         // Test GET limit
         assertEquals(100, rateLimitService.getLimitForType(RateLimitService.RequestType.GET));
-        
+
         // Test OTHER limit
         assertEquals(30, rateLimitService.getLimitForType(RateLimitService.RequestType.OTHER));
-        
+
         // Test LOGIN limit
         assertEquals(5, rateLimitService.getLimitForType(RateLimitService.RequestType.LOGIN));
     }
@@ -0,0 +1,110 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.RateLimitPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Throughput and Redis round trips of the pure-Redis limiter versus the hybrid one, with many threads
+ * spreading requests over many keys. Redis is simulated with a fixed round-trip time
+ * ({@code -Dbenchmark.redis.rtt-micros}, default 200). Excluded from {@code test}; run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class RateLimiterModeBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 5_000;
+    private static final int REQUESTS_PER_THREAD = 5_000;
+    private static final long RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("benchmark.redis.rtt-micros", 200));
+
+    @Test
+    void compareRedisAndHybridModes() throws Exception {
+        AtomicLong roundTrips = new AtomicLong();
+        RateLimitService redisMode = service(roundTrips);
+        RateLimitPolicy policy = redisMode.policyFor(RateLimitService.RequestType.GET);
+        Result redis = run("redis", redisMode, policy, roundTrips);
+
+        roundTrips.set(0);
+        HybridRateLimiter hybridMode = new HybridRateLimiter(service(roundTrips), new SimpleMeterRegistry(), 20, 5, 4);
+        try {
+            Result hybrid = run("hybrid", hybridMode, policy, roundTrips);
+            assertTrue(hybrid.roundTrips < redis.roundTrips);
+        } finally {
+            hybridMode.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RateLimitService service(AtomicLong roundTrips) {
+        RedisTemplate<String, Long> redis = mock(RedisTemplate.class);
+        // tryAcquire passes (limit, window), reserve passes (tokens, window, limit)
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenAnswer(invocation -> roundTrip(roundTrips, List.of(1L, 1_000L, 60_000L)));
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+                .thenAnswer(invocation -> roundTrip(roundTrips, List.of(invocation.getArgument(2), 60_000L)));
+        RateLimitService service = new RateLimitService(redis);
+        ReflectionTestUtils.setField(service, "getRequestsLimit", 1_000_000);
+        ReflectionTestUtils.setField(service, "getWindowSeconds", 60);
+        return service;
+    }
+
+    private static Result run(String name, RateLimiter limiter, RateLimitPolicy policy, AtomicLong roundTrips) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                long allowed = 0;
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    long userId = ThreadLocalRandom.current().nextInt(KEYS);
+                    if (limiter.tryAcquire(userId, null, policy).allowed()) {
+                        allowed++;
+                    }
+                }
+                return allowed;
+            }));
+        }
+        long allowed = 0;
+        for (Future<Long> future : futures) {
+            allowed += future.get();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        long requests = (long) THREADS * REQUESTS_PER_THREAD;
+        System.out.printf("%-8s %,12.0f req/s  %,8.2f us/req  redis round trips=%,d (%.3f/req)  allowed=%,d%n",
+                name, requests * 1e9 / elapsedNanos, elapsedNanos / 1_000.0 / requests * THREADS,
+                roundTrips.get(), (double) roundTrips.get() / requests, allowed);
+        return new Result(roundTrips.get());
+    }
+
+    private static <T> T roundTrip(AtomicLong roundTrips, T value) {
+        roundTrips.incrementAndGet();
+        long deadline = System.nanoTime() + RTT_NANOS;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(deadline - System.nanoTime());
+        }
+        return value;
+    }
+
+    private record Result(long roundTrips) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.RefreshSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RefreshSessionStoreTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplateForLocks;
+
+    private RefreshSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        store = new RefreshSessionStore(redisTemplateForLocks, new SimpleMeterRegistry(), 86_400_000L, 60_000L, 100);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRotate_ShouldMapScriptResultsAndUseOneCall() {
+        // Arrange
+        when(redisTemplateForLocks.execute(any(RedisScript.class), anyList(), any(), any(), any(), any()))
+                .thenReturn(1L, -1L, 0L);
+
+        // Act
+        RefreshSessionStore.RotationResult rotated = store.rotate("s1", 7L, "t1", "t2");
+        RefreshSessionStore.RotationResult reused = store.rotate("s1", 7L, "t1", "t3");
+        RefreshSessionStore.RotationResult unknown = store.rotate("s1", 7L, "t2", "t4");
+
+        // Assert
+        assertEquals(RefreshSessionStore.RotationResult.ROTATED, rotated);
+        assertEquals(RefreshSessionStore.RotationResult.REUSE_DETECTED, reused);
+        assertEquals(RefreshSessionStore.RotationResult.UNKNOWN_SESSION, unknown);
+        verify(redisTemplateForLocks).execute(any(RedisScript.class),
+                eq(List.of("auth:session:s1", "auth:user-sessions:7")), eq("t1"), eq("t2"), anyString(), eq("86400000"));
+    }
+
+    @Test
+    void testIsActive_ShouldBeServedFromLocalCacheUntilSessionEnds() {
+        // Arrange
+        when(redisTemplateForLocks.hasKey("auth:session:s1")).thenReturn(true, false);
+
+        // Act
+        boolean first = store.isActive("s1");
+        boolean cached = store.isActive("s1");
+        store.end(7L, "s1");
+        boolean afterEnd = store.isActive("s1");
+
+        // Assert
+        assertTrue(first);
+        assertTrue(cached);
+        assertFalse(afterEnd);
+        verify(redisTemplateForLocks, times(2)).hasKey("auth:session:s1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testList_ShouldParseFlatScriptResult() {
+        // Arrange
+        when(redisTemplateForLocks.execute(any(RedisScript.class), eq(List.of("auth:user-sessions:7"))))
+                .thenReturn(List.of("auth:session:s1", "1000", "2000", "auth:session:s2", "3000", "3000"));
+
+        // Act
+        List<RefreshSession> sessions = store.list(7L);
+
+        // Assert
+        assertEquals(List.of(
+                new RefreshSession("s1", Instant.ofEpochMilli(1000), Instant.ofEpochMilli(2000)),
+                new RefreshSession("s2", Instant.ofEpochMilli(3000), Instant.ofEpochMilli(3000))), sessions);
+    }
+}
@@ -0,0 +1,55 @@
+package com.toiter.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTrieTest {
+
+    private RouteTrie<String> routes;
+
+    @BeforeEach
+    void setUp() {
+        routes = new RouteTrie<>();
+        routes.add(RouteTrie.ANY_METHOD, "/swagger-ui/**", "skip");
+        routes.add("PUT", "/users/profile-image", "image-upload");
+        routes.add("POST", "/chats/*/message", "chat-message");
+        routes.add(RouteTrie.ANY_METHOD, "/chats/**", "chats");
+        routes.add("GET", "/chats/42/message", "literal");
+    }
+
+    @Test
+    void testMatch_LiteralRoute_ShouldRespectMethod() {
+        // Act & Assert
+        assertEquals("image-upload", routes.match("PUT", "/users/profile-image"));
+        assertEquals("image-upload", routes.match("put", "/users/profile-image/"));
+        assertNull(routes.match("GET", "/users/profile-image"));
+    }
+
+    @Test
+    void testMatch_ShouldPreferLiteralOverWildcardOverCatchAll() {
+        // Act & Assert
+        assertEquals("literal", routes.match("GET", "/chats/42/message"));
+        assertEquals("chat-message", routes.match("POST", "/chats/42/message"));
+        assertEquals("chat-message", routes.match("POST", "/chats/7/message"));
+        assertEquals("chats", routes.match("GET", "/chats/7/message"));
+        assertEquals("chats", routes.match("DELETE", "/chats/7/messages/1"));
+    }
+
+    @Test
+    void testMatch_CatchAll_ShouldMatchZeroOrMoreSegments() {
+        // Act & Assert
+        assertEquals("skip", routes.match("GET", "/swagger-ui"));
+        assertEquals("skip", routes.match("GET", "/swagger-ui/index.html"));
+        assertNull(routes.match("GET", "/swagger"));
+        assertNull(routes.match("GET", "/"));
+    }
+
+    @Test
+    void testAdd_InvalidOrDuplicateRoute_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> routes.add("GET", "/a/**/b", "x"));
+        assertThrows(IllegalArgumentException.class, () -> routes.add("PUT", "/users/profile-image", "x"));
+    }
+}
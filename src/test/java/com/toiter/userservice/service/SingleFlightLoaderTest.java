@@ -0,0 +1,162 @@
+package com.toiter.userservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SingleFlightLoaderTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplateForLocks;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlightLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplateForLocks.opsForValue()).thenReturn(valueOperations);
+        meterRegistry = new SimpleMeterRegistry();
+        loader = new SingleFlightLoader(redisTemplateForLocks, listenerContainer, meterRegistry, 1.0, 5, 2000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.shutdown();
+    }
+
+    @Test
+    void testLoad_CacheHit_ShouldNotCallSource() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        String value = loader.load("test", "1",
+                () -> new CachedValue<>("cached", CachedValue.UNKNOWN_EXPIRY),
+                () -> { loads.incrementAndGet(); return "loaded"; },
+                v -> { });
+
+        // Assert
+        assertEquals("cached", value);
+        assertEquals(0, loads.get());
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    void testLoad_ConcurrentMisses_ShouldLoadOnce() throws Exception {
+        // Arrange
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        AtomicReference<CachedValue<String>> cache = new AtomicReference<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Act
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return loader.load("test", "1", cache::get,
+                        () -> {
+                            loads.incrementAndGet();
+                            sleep(100);
+                            return "loaded";
+                        },
+                        v -> cache.set(new CachedValue<>(v, CachedValue.UNKNOWN_EXPIRY)));
+            }));
+        }
+        start.countDown();
+
+        // Assert
+        for (Future<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertTrue(meterRegistry.counter("user.cache.load.coalesced", "cache", "test", "scope", "local").count() > 0);
+        assertEquals(1, meterRegistry.timer("user.cache.load", "cache", "test").count());
+    }
+
+    @Test
+    void testLoad_SourceFails_ShouldPropagateToCaller() {
+        // Arrange
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> loader.load("test", "1", () -> null,
+                () -> { throw new IllegalArgumentException("User not found"); },
+                v -> { }));
+    }
+
+    @Test
+    void testLoad_LockHeldElsewhere_ShouldWaitForReleaseNotification() throws Exception {
+        // Arrange
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        AtomicReference<CachedValue<String>> cache = new AtomicReference<>();
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        Future<String> result = executor.submit(() -> loader.load("test", "1", cache::get,
+                () -> { loads.incrementAndGet(); return "loaded"; },
+                v -> { }));
+        sleep(100);
+        cache.set(new CachedValue<>("from-other-node", CachedValue.UNKNOWN_EXPIRY));
+        loader.onLockReleased(new DefaultMessage(
+                SingleFlightLoader.LOCK_RELEASED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "lock:test:1".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        assertEquals("from-other-node", result.get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void testShouldRefreshEarly_UnknownExpiry_ShouldNotRefresh() {
+        assertFalse(loader.shouldRefreshEarly("test", new CachedValue<>("v", CachedValue.UNKNOWN_EXPIRY)));
+    }
+
+    @Test
+    void testShouldRefreshEarly_Expired_ShouldRefresh() {
+        assertTrue(loader.shouldRefreshEarly("test", new CachedValue<>("v", System.currentTimeMillis() - 1)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.FollowCreatedEvent;
+import com.toiter.userservice.model.FollowDeletedEvent;
+import com.toiter.userservice.model.PostCountChangedEvent;
+import com.toiter.userservice.model.SocialCounts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.QueryableStoreType;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SocialCountsStoreTest {
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, Object> followEvents;
+    private TestInputTopic<String, Object> postCountEvents;
+    private TestInputTopic<String, Object> snapshots;
+    private KeyValueStore<Long, SocialCountsStore.StoredCounts> store;
+
+    @BeforeEach
+    void setUp() {
+        StreamsBuilder builder = new StreamsBuilder();
+        SocialCountsStore.buildTopology(builder);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "social-counts-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        // Type headers are set per record, as the outbox relay and post-service do
+        JsonSerializer<Object> valueSerializer = new JsonSerializer<>().noTypeInfo();
+        followEvents = driver.createInputTopic(SocialCountsStore.FOLLOW_EVENTS_TOPIC,
+                new StringSerializer(), valueSerializer);
+        postCountEvents = driver.createInputTopic(SocialCountsStore.POST_COUNT_EVENTS_TOPIC,
+                new StringSerializer(), valueSerializer);
+        snapshots = driver.createInputTopic(SocialCountsStore.SNAPSHOTS_TOPIC,
+                new StringSerializer(), valueSerializer);
+        store = driver.getKeyValueStore(SocialCountsStore.STORE_NAME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void testFollowEvents_ShouldCountFollowersAndFollowingOfBothUsers() {
+        // Act
+        pipe(followEvents, "1", created(1L, 2L));
+        pipe(followEvents, "1", created(1L, 3L));
+        pipe(followEvents, "4", created(4L, 2L));
+        pipe(followEvents, "1", deleted(1L, 2L));
+
+        // Assert
+        assertEquals(new SocialCounts(1, 0, 0), store.get(1L).counts());
+        assertEquals(new SocialCounts(0, 1, 0), store.get(2L).counts());
+        assertEquals(new SocialCounts(0, 1, 0), store.get(3L).counts());
+        assertEquals(new SocialCounts(1, 0, 0), store.get(4L).counts());
+    }
+
+    @Test
+    void testPostCountEvents_ShouldAddTheirDeltas() {
+        // Act
+        pipe(postCountEvents, "7", new PostCountChangedEvent(7L, 100L, 1));
+        pipe(postCountEvents, "7", new PostCountChangedEvent(7L, 101L, 1));
+        pipe(postCountEvents, "7", new PostCountChangedEvent(7L, 101L, -1));
+
+        // Assert
+        assertEquals(new SocialCounts(0, 0, 1), store.get(7L).counts());
+    }
+
+    @Test
+    void testUnknownEvents_ShouldBeIgnored() {
+        // Act
+        pipe(followEvents, "1", "not a follow event");
+        pipe(followEvents, "1", created(1L, 2L));
+
+        // Assert
+        assertEquals(new SocialCounts(1, 0, 0), store.get(1L).counts());
+    }
+
+    @Test
+    void testSnapshot_NonZeroDatabaseBaseline_ShouldBeAddedToByLaterEventsOnly() {
+        // Arrange: usr.user_stats already has 100 followers, 20 following and 7 posts for user 1
+        pipe(snapshots, "1", new SocialCounts(100, 20, 7), 1_000);
+
+        // Act
+        pipe(followEvents, "1", created(1L, 2L), 500); // produced before the snapshot, already in it
+        pipe(followEvents, "1", created(1L, 3L), 2_000);
+        pipe(postCountEvents, "1", new PostCountChangedEvent(1L, 100L, 1), 2_000);
+
+        // Assert
+        assertEquals(new SocialCounts(101, 20, 8), store.get(1L).counts());
+        assertEquals(1_000, store.get(1L).seededAt());
+    }
+
+    @Test
+    void testSnapshot_ShouldReplaceCountsBuiltFromEarlierEvents() {
+        // Arrange
+        pipe(followEvents, "1", created(1L, 2L), 500);
+        pipe(followEvents, "1", created(1L, 3L), 600);
+
+        // Act
+        pipe(snapshots, "1", new SocialCounts(250, 0, 0), 1_000);
+
+        // Assert
+        assertEquals(new SocialCounts(250, 0, 0), store.get(1L).counts());
+    }
+
+    @Test
+    void testSnapshot_LaggingPostEvent_ShouldBeCountedOnceTheDatabaseAppliesIt() {
+        // Arrange: post-service produced post 100 before the snapshot, but user-service had not consumed it yet,
+        // so usr.user_stats (and the snapshot) do not have it; post 99 was applied before and is in the snapshot
+        pipe(postCountEvents, "1", new PostCountChangedEvent(1L, 99L, 1), 900);
+        pipe(snapshots, "1", new SocialCounts(0, 0, 7), 1_000);
+
+        // Act: the consumer catches up and the ledger accepts post 100 after the snapshot
+        pipe(postCountEvents, "1", new PostCountChangedEvent(1L, 100L, 1), 1_500);
+
+        // Assert
+        assertEquals(new SocialCounts(0, 0, 8), store.get(1L).counts());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFindLocal_ShouldOnlyAnswerForSeededUsers() {
+        // Arrange
+        pipe(snapshots, "1", new SocialCounts(100, 20, 7), 1_000);
+        pipe(followEvents, "1", created(1L, 2L), 2_000);
+        KafkaStreamsInteractiveQueryService queryService = mock(KafkaStreamsInteractiveQueryService.class);
+        when(queryService.retrieveQueryableStore(eq(SocialCountsStore.STORE_NAME), any(QueryableStoreType.class)))
+                .thenReturn(store);
+        SocialCountsStore socialCountsStore = new SocialCountsStore(mock(StreamsBuilderFactoryBean.class),
+                queryService, mock(RestTemplate.class), mock(KafkaTemplate.class), new SimpleMeterRegistry(),
+                "key", "/api");
+
+        // Act
+        Optional<SocialCounts> seeded = socialCountsStore.findLocal(1L);
+        Optional<SocialCounts> eventsOnly = socialCountsStore.findLocal(2L);
+
+        // Assert
+        assertEquals(Optional.of(new SocialCounts(101, 20, 7)), seeded);
+        assertTrue(eventsOnly.isEmpty(), "user 2 has only events, its count would be too low");
+    }
+
+    private static void pipe(TestInputTopic<String, Object> topic, String key, Object event) {
+        topic.pipeInput(new TestRecord<>(key, event, typeHeaders(event)));
+    }
+
+    private static void pipe(TestInputTopic<String, Object> topic, String key, Object event, long timestamp) {
+        topic.pipeInput(new TestRecord<>(key, event, typeHeaders(event), Instant.ofEpochMilli(timestamp)));
+    }
+
+    private static RecordHeaders typeHeaders(Object event) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                event.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    private static FollowCreatedEvent created(Long userId, Long followerId) {
+        FollowCreatedEvent event = new FollowCreatedEvent();
+        event.setUserId(userId);
+        event.setFollowerId(followerId);
+        return event;
+    }
+
+    private static FollowDeletedEvent deleted(Long userId, Long followerId) {
+        FollowDeletedEvent event = new FollowDeletedEvent();
+        event.setUserId(userId);
+        event.setFollowerId(followerId);
+        return event;
+    }
+}
@@ -0,0 +1,68 @@
+package com.toiter.userservice.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Latency the revocation check adds to each authenticated request, with a large local replica
+ * ({@code -Dbenchmark.revocation.entries}, default 100 000 revoked ids and 10 000 users).
+ * Excluded from {@code test}; run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class TokenRevocationBenchmark {
+
+    private static final int ENTRIES = Integer.getInteger("benchmark.revocation.entries", 100_000);
+    private static final int WARMUP_CHECKS = 200_000;
+    private static final int MEASURED_CHECKS = 2_000_000;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void measureCheckLatency() {
+        RedisTemplate<String, String> redis = mock(RedisTemplate.class);
+        when(redis.opsForZSet()).thenReturn(mock(ZSetOperations.class));
+        when(redis.<Object, Object>opsForHash()).thenReturn(mock(HashOperations.class));
+        TokenRevocationService service = new TokenRevocationService(redis, mock(RedisMessageListenerContainer.class),
+                new SimpleMeterRegistry(), 86_400_000L);
+        Date expiration = new Date(System.currentTimeMillis() + 3_600_000);
+        for (int i = 0; i < ENTRIES; i++) {
+            service.revokeToken(UUID.randomUUID().toString(), expiration);
+        }
+        for (long userId = 0; userId < ENTRIES / 10; userId++) {
+            service.revokeAllForUser(userId);
+        }
+
+        Claims[] tokens = new Claims[1024];
+        for (int i = 0; i < tokens.length; i++) {
+            Claims claims = Jwts.claims().setId(UUID.randomUUID().toString()).setIssuedAt(new Date(System.currentTimeMillis() + 10_000));
+            claims.put("userId", (long) i * 7);
+            tokens[i] = claims;
+        }
+
+        long revoked = 0;
+        for (int i = 0; i < WARMUP_CHECKS; i++) {
+            revoked += service.isRevoked(tokens[i & 1023]) ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_CHECKS; i++) {
+            revoked += service.isRevoked(tokens[i & 1023]) ? 1 : 0;
+        }
+        double nanosPerCheck = (double) (System.nanoTime() - start) / MEASURED_CHECKS;
+
+        System.out.printf("revocation check: %,8.1f ns/request (%,d revoked ids, %,d users, %d revoked hits)%n",
+                nanosPerCheck, ENTRIES, ENTRIES / 10, revoked);
+        assertTrue(nanosPerCheck < 10_000);
+    }
+}
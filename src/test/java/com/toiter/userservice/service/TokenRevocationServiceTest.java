@@ -0,0 +1,149 @@
+package com.toiter.userservice.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationServiceTest {
+
+    private static final long MAX_LIFETIME_MILLIS = 86_400_000L;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplateForLocks;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOps;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOps;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplateForLocks.opsForZSet()).thenReturn(zSetOps);
+        when(redisTemplateForLocks.<Object, Object>opsForHash()).thenReturn(hashOps);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new TokenRevocationService(redisTemplateForLocks, listenerContainer, meterRegistry, MAX_LIFETIME_MILLIS);
+    }
+
+    @Test
+    void testRevokeToken_ShouldRejectThatTokenOnlyAndBroadcast() {
+        // Arrange
+        Date expiration = new Date(System.currentTimeMillis() + 60_000);
+
+        // Act
+        service.revokeToken("jti-1", expiration);
+
+        // Assert
+        assertTrue(service.isRevoked(claims("jti-1", 1L, new Date())));
+        assertFalse(service.isRevoked(claims("jti-2", 1L, new Date())));
+        verify(zSetOps).add(TokenRevocationService.REVOKED_IDS_KEY, "jti-1", expiration.getTime());
+        verify(redisTemplateForLocks).convertAndSend(TokenRevocationService.CHANNEL, "jti jti-1 " + expiration.getTime());
+        assertEquals(1, meterRegistry.counter("jwt.revocation.rejected").count());
+    }
+
+    @Test
+    void testRevokeAllForUser_ShouldRejectTokensIssuedBeforeAndKeepOtherUsers() {
+        // Arrange
+        Date issuedEarlier = new Date(System.currentTimeMillis() - 5_000);
+
+        // Act
+        service.revokeAllForUser(7L);
+
+        // Assert
+        assertTrue(service.isRevoked(claims("a", 7L, issuedEarlier)));
+        assertFalse(service.isRevoked(claims("b", 8L, issuedEarlier)));
+        assertFalse(service.isRevoked(claims("c", 7L, new Date(System.currentTimeMillis() + 2_000))));
+        verify(hashOps).put(eq(TokenRevocationService.NOT_BEFORE_KEY), eq("7"), anyString());
+    }
+
+    @Test
+    void testRevokeAllForUser_LoginRightAfter_ShouldAcceptTheNewTokenAndRejectTheRevokingOne() {
+        // Arrange: the session that runs logout-all was issued in the same second
+        Date issuedNow = new Date();
+        Date expiration = new Date(System.currentTimeMillis() + 60_000);
+
+        // Act
+        service.revokeAllForUser(7L);
+        service.revokeToken("revoking", expiration);
+        Claims freshLogin = claims("fresh", 7L, new Date());
+
+        // Assert
+        assertFalse(service.isRevoked(freshLogin));
+        assertTrue(service.isRevoked(claims("revoking", 7L, issuedNow)));
+    }
+
+    @Test
+    void testOnMessage_ShouldApplyRevocationsFromOtherInstances() {
+        // Arrange
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        long cutoff = System.currentTimeMillis() / 1000;
+
+        // Act
+        service.onMessage(message("jti remote " + expiresAt), null);
+        service.onMessage(message("user 9 " + cutoff), null);
+        service.onMessage(message("garbage"), null);
+
+        // Assert
+        assertTrue(service.isRevoked(claims("remote", 1L, new Date())));
+        assertTrue(service.isRevoked(claims("other", 9L, new Date(cutoff * 1000 - 1_000))));
+        verifyNoInteractions(zSetOps, hashOps);
+    }
+
+    @Test
+    void testReload_ShouldLoadReplicaAndDropStaleCutoffs() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        when(zSetOps.rangeWithScores(TokenRevocationService.REVOKED_IDS_KEY, 0, -1))
+                .thenReturn(Set.<ZSetOperations.TypedTuple<String>>of(new DefaultTypedTuple<>("stored", (double) (now + 60_000))));
+        long staleCutoff = (now - MAX_LIFETIME_MILLIS) / 1000 - 10;
+        when(hashOps.entries(TokenRevocationService.NOT_BEFORE_KEY))
+                .thenReturn(Map.<Object, Object>of("3", Long.toString(now / 1000), "4", Long.toString(staleCutoff)));
+
+        // Act
+        service.reload();
+
+        // Assert
+        assertTrue(service.isRevoked(claims("stored", 1L, new Date())));
+        assertTrue(service.isRevoked(claims("x", 3L, new Date(now - 1_000))));
+        assertFalse(service.isRevoked(claims("y", 4L, new Date(staleCutoff * 1000 - 1_000))));
+        verify(zSetOps).removeRangeByScore(eq(TokenRevocationService.REVOKED_IDS_KEY), eq(Double.NEGATIVE_INFINITY), anyDouble());
+        verify(hashOps).delete(TokenRevocationService.NOT_BEFORE_KEY, "4");
+    }
+
+    private static Claims claims(String tokenId, Long userId, Date issuedAt) {
+        Claims claims = Jwts.claims().setId(tokenId).setIssuedAt(issuedAt);
+        claims.put("userId", userId);
+        return claims;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TokenRevocationService.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,342 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.PostCountChangedEvent;
+import com.toiter.userservice.model.SocialCounts;
+import com.toiter.userservice.model.UserCounts;
+import com.toiter.userservice.model.UserCountsByUser;
+import com.toiter.userservice.producer.KafkaProducer;
+import com.toiter.userservice.repository.UserStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserStatsServiceTest {
+
+    @Mock
+    private UserStatsRepository userStatsRepository;
+
+    @Mock
+    private KafkaProducer kafkaProducer;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserStatsService userStatsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        userStatsService = new UserStatsService(userStatsRepository, Optional.empty(), kafkaProducer, transactionManager,
+                meterRegistry, 16, 1000);
+    }
+
+    @Test
+    void testRecordFollow_ShouldShardByTheOtherUser() {
+        // Act
+        userStatsService.recordFollow(7L, 35L, 1);
+
+        // Assert
+        verify(userStatsRepository).addToShard(7L, (short) 3, 1, 0);
+        verify(userStatsRepository).addToShard(35L, (short) 7, 0, 1);
+    }
+
+    @Test
+    void testRecordUnfollow_ShouldHitTheSameShardsAsTheFollow() {
+        // Act
+        userStatsService.recordFollow(7L, 35L, -1);
+
+        // Assert
+        verify(userStatsRepository).addToShard(7L, (short) 3, -1, 0);
+        verify(userStatsRepository).addToShard(35L, (short) 7, 0, -1);
+    }
+
+    @Test
+    void testReconcile_ShouldCoverAllUserIdsInBatches() {
+        // Arrange
+        when(userStatsRepository.findMaxUserId()).thenReturn(2500L);
+        when(userStatsRepository.tryAdvisoryXactLock(UserStatsService.RECONCILE_LOCK_KEY)).thenReturn(true);
+        when(userStatsRepository.reconcileRange(anyLong(), anyLong())).thenReturn(1);
+
+        // Act
+        userStatsService.reconcile();
+
+        // Assert
+        verify(userStatsRepository).reconcileRange(0L, 1000L);
+        verify(userStatsRepository).reconcileRange(1000L, 2000L);
+        verify(userStatsRepository).reconcileRange(2000L, 3000L);
+        verify(userStatsRepository, times(3)).tryAdvisoryXactLock(UserStatsService.RECONCILE_LOCK_KEY);
+        verify(userStatsRepository).findMaxUserId();
+        verifyNoMoreInteractions(userStatsRepository);
+        assertEquals(3, meterRegistry.counter("user.stats.reconciled").count());
+    }
+
+    @Test
+    void testReconcile_StreamsStoreEnabled_ShouldPublishTheDatabaseCountsAsSnapshots() {
+        // Arrange
+        SocialCountsStore socialCountsStore = mock(SocialCountsStore.class);
+        UserCountsByUser baseline = mock(UserCountsByUser.class);
+        when(baseline.getUserId()).thenReturn(7L);
+        when(baseline.getFollowersCount()).thenReturn(1200L);
+        List<UserCountsByUser> counts = List.of(baseline);
+        when(userStatsRepository.findMaxUserId()).thenReturn(900L);
+        when(userStatsRepository.tryAdvisoryXactLock(UserStatsService.RECONCILE_LOCK_KEY)).thenReturn(true);
+        when(userStatsRepository.sumCountsByUserIdRange(0L, 1000L)).thenReturn(counts);
+        UserStatsService service = new UserStatsService(userStatsRepository, Optional.of(socialCountsStore), kafkaProducer,
+                transactionManager, meterRegistry, 16, 1000);
+        long before = System.currentTimeMillis();
+
+        // Act
+        service.reconcile();
+
+        // Assert
+        verify(socialCountsStore).publishSnapshots(eq(counts), longThat(takenAt -> takenAt >= before));
+    }
+
+    @Test
+    void testReconcile_LockHeldElsewhere_ShouldNotRepair() {
+        // Arrange
+        when(userStatsRepository.findMaxUserId()).thenReturn(2500L);
+        when(userStatsRepository.tryAdvisoryXactLock(anyLong())).thenReturn(false);
+
+        // Act
+        userStatsService.reconcile();
+
+        // Assert
+        verify(userStatsRepository, never()).reconcileRange(anyLong(), anyLong());
+        assertEquals(0, meterRegistry.counter("user.stats.reconciled").count());
+    }
+
+    @Test
+    void testReconcile_TwoInstancesAtOnce_ShouldApplyEachRepairOnce() throws Exception {
+        // Arrange: a fake advisory lock released when the transaction ends, and ranges that are each 5 short.
+        // The repair reads the drift, then adds it, like the INSERT ... SELECT does from its snapshot.
+        AtomicReference<Thread> lockHolder = new AtomicReference<>();
+        Map<Long, Integer> stored = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(userStatsRepository.findMaxUserId()).thenReturn(2500L);
+        when(userStatsRepository.tryAdvisoryXactLock(UserStatsService.RECONCILE_LOCK_KEY)).thenAnswer(invocation ->
+                lockHolder.compareAndSet(null, Thread.currentThread()) || lockHolder.get() == Thread.currentThread());
+        doAnswer(invocation -> lockHolder.compareAndSet(Thread.currentThread(), null)).when(transactionManager).commit(any());
+        doAnswer(invocation -> lockHolder.compareAndSet(Thread.currentThread(), null)).when(transactionManager).rollback(any());
+        when(userStatsRepository.reconcileRange(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            int drift = 5 - stored.getOrDefault(afterId, 0);
+            Thread.sleep(20);
+            stored.merge(afterId, drift, Integer::sum);
+            running.decrementAndGet();
+            return drift != 0 ? 1 : 0;
+        });
+        UserStatsService otherInstance = new UserStatsService(userStatsRepository, Optional.empty(), kafkaProducer,
+                transactionManager, meterRegistry, 16, 1000);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        try {
+            Future<?> first = executor.submit(() -> {
+                start.await();
+                userStatsService.reconcile();
+                return null;
+            });
+            Future<?> second = executor.submit(() -> {
+                start.await();
+                otherInstance.reconcile();
+                return null;
+            });
+            start.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(1, maxRunning.get());
+        assertEquals(Map.of(0L, 5, 1000L, 5, 2000L, 5), stored);
+    }
+
+    @Test
+    void testRecordPost_NewPost_ShouldIncrementOnce() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now();
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, null, false)).thenReturn(1, 0);
+
+        // Act
+        int first = userStatsService.recordPost(100L, 7L, createdAt, null, true);
+        int replay = userStatsService.recordPost(100L, 7L, createdAt, null, true);
+
+        // Assert
+        assertEquals(1, first);
+        assertEquals(0, replay);
+        verify(userStatsRepository, times(1)).addPostsToShard(7L, (short) 4, 1);
+        verify(userStatsRepository, times(2))
+                .advisoryXactLockShared(UserStatsService.POST_COUNT_LOCK_NAMESPACE, Long.hashCode(7L));
+        verifyNoInteractions(kafkaProducer);
+    }
+
+    @Test
+    void testRecordPost_StreamsStoreEnabled_ShouldPublishTheAppliedDelta() {
+        // Arrange
+        UserStatsService service = new UserStatsService(userStatsRepository, Optional.of(mock(SocialCountsStore.class)),
+                kafkaProducer, transactionManager, meterRegistry, 16, 1000);
+        LocalDateTime createdAt = LocalDateTime.now();
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, null, false)).thenReturn(1, 0);
+
+        // Act
+        service.recordPost(100L, 7L, createdAt, null, true);
+        service.recordPost(100L, 7L, createdAt, null, true);
+
+        // Assert: only the change the ledger accepted reaches the stream, not the replay
+        ArgumentCaptor<PostCountChangedEvent> captor = ArgumentCaptor.forClass(PostCountChangedEvent.class);
+        verify(kafkaProducer, times(1)).sendPostCountChangedEvent(captor.capture());
+        assertEquals(7L, captor.getValue().getUserId());
+        assertEquals(100L, captor.getValue().getPostId());
+        assertEquals(1, captor.getValue().getDelta());
+    }
+
+    @Test
+    void testRecordPost_DeleteBeforeCreate_ShouldNotChangeTheCount() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now();
+        LocalDateTime deletedAt = createdAt.plusMinutes(1);
+        when(userStatsRepository.markPostDeleted(100L, deletedAt)).thenReturn(0);
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, deletedAt, true)).thenReturn(1);
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, null, false)).thenReturn(0);
+
+        // Act
+        int delete = userStatsService.recordPost(100L, 7L, createdAt, deletedAt, false);
+        int lateCreate = userStatsService.recordPost(100L, 7L, createdAt, null, true);
+
+        // Assert
+        assertEquals(0, delete);
+        assertEquals(0, lateCreate);
+        verify(userStatsRepository, never()).addPostsToShard(anyLong(), anyShort(), anyLong());
+    }
+
+    @Test
+    void testRecordPost_DeleteOfBackfilledPost_ShouldDecrement() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(30);
+        LocalDateTime deletedAt = LocalDateTime.now();
+        when(userStatsRepository.isCoveredByPostBaseline(7L, createdAt)).thenReturn(true);
+        when(userStatsRepository.markPostDeleted(100L, deletedAt)).thenReturn(0);
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, deletedAt, true)).thenReturn(1);
+
+        // Act
+        int delta = userStatsService.recordPost(100L, 7L, createdAt, deletedAt, false);
+
+        // Assert
+        assertEquals(-1, delta);
+        verify(userStatsRepository).addPostsToShard(7L, (short) 4, -1);
+    }
+
+    @Test
+    void testRecordPost_CreateOfBackfilledPost_ShouldOnlyRecordLedger() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(30);
+        when(userStatsRepository.isCoveredByPostBaseline(7L, createdAt)).thenReturn(true);
+        when(userStatsRepository.insertPostLedgerEntry(100L, 7L, createdAt, null, false)).thenReturn(1);
+
+        // Act
+        int delta = userStatsService.recordPost(100L, 7L, createdAt, null, true);
+
+        // Assert
+        assertEquals(0, delta);
+        verify(userStatsRepository, never()).addPostsToShard(anyLong(), anyShort(), anyLong());
+    }
+
+    @Test
+    void testRecordPost_DeleteOfPostGoneBeforeTheBaseline_ShouldNotDecrement() {
+        // Arrange: created and deleted before post-service counted, so the baseline never had it
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(30);
+        LocalDateTime deletedAt = createdAt.plusHours(1);
+        when(userStatsRepository.isCoveredByPostBaseline(7L, createdAt)).thenReturn(true);
+        when(userStatsRepository.isCoveredByPostBaseline(7L, deletedAt)).thenReturn(true);
+        when(userStatsRepository.markPostDeleted(100L, deletedAt)).thenReturn(1);
+
+        // Act
+        int delta = userStatsService.recordPost(100L, 7L, createdAt, deletedAt, false);
+
+        // Assert
+        assertEquals(0, delta);
+        verify(userStatsRepository, never()).addPostsToShard(anyLong(), anyShort(), anyLong());
+    }
+
+    @Test
+    void testApplyPostBaseline_ShouldAddTheLedgerSinceTheCountUnderTheExclusiveLock() {
+        // Arrange: post-service counted 12 posts; the ledger has 2 more created after that
+        LocalDateTime countedUntil = LocalDateTime.now().minusMinutes(5);
+        when(userStatsRepository.sumPostLedgerSince(7L, countedUntil)).thenReturn(2L);
+
+        // Act
+        userStatsService.applyPostBaseline(7L, 12, countedUntil);
+
+        // Assert
+        InOrder inOrder = inOrder(userStatsRepository);
+        inOrder.verify(userStatsRepository).advisoryXactLock(UserStatsService.POST_COUNT_LOCK_NAMESPACE, Long.hashCode(7L));
+        inOrder.verify(userStatsRepository).sumPostLedgerSince(7L, countedUntil);
+        inOrder.verify(userStatsRepository).clearPostsCount(7L);
+        inOrder.verify(userStatsRepository).addPostsToShard(7L, (short) 0, 14L);
+        inOrder.verify(userStatsRepository).upsertPostBaseline(7L, countedUntil);
+    }
+
+    @Test
+    void testGetCounts_StreamsStoreAnswers_ShouldNotQueryTheDatabase() {
+        // Arrange
+        SocialCountsStore socialCountsStore = mock(SocialCountsStore.class);
+        SocialCounts stored = new SocialCounts(10, 3, 42);
+        when(socialCountsStore.find(7L)).thenReturn(Optional.of(stored));
+        UserStatsService service = new UserStatsService(userStatsRepository, Optional.of(socialCountsStore), kafkaProducer,
+                transactionManager, meterRegistry, 16, 1000);
+
+        // Act
+        UserCounts counts = service.getCounts(7L);
+
+        // Assert
+        assertSame(stored, counts);
+        verify(userStatsRepository, never()).sumCountsByUserId(anyLong());
+    }
+
+    @Test
+    void testGetCounts_StreamsStoreCannotAnswer_ShouldFallBackToTheDatabase() {
+        // Arrange
+        SocialCountsStore socialCountsStore = mock(SocialCountsStore.class);
+        UserCounts fromDatabase = new SocialCounts(1, 2, 3);
+        when(socialCountsStore.find(7L)).thenReturn(Optional.empty());
+        when(userStatsRepository.sumCountsByUserId(7L)).thenReturn(fromDatabase);
+        UserStatsService service = new UserStatsService(userStatsRepository, Optional.of(socialCountsStore), kafkaProducer,
+                transactionManager, meterRegistry, 16, 1000);
+
+        // Act
+        UserCounts counts = service.getCounts(7L);
+
+        // Assert
+        assertSame(fromDatabase, counts);
+    }
+}
@@ -0,0 +1,110 @@
+package com.toiter.userservice.service;
+
+import com.toiter.userservice.model.UserIdentityProjection;
+import com.toiter.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UsernameBloomFilterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplateForLocks;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UsernameBloomFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new UsernameBloomFilter(userRepository, redisTemplateForLocks, listenerContainer, meterRegistry, 1000, 0.01);
+    }
+
+    @Test
+    void testMightContain_BeforeBuild_ShouldAllowEverything() {
+        assertTrue(filter.mightContain("anyone"));
+    }
+
+    @Test
+    void testRebuild_ShouldContainExistingUsersAndRejectUnknown() {
+        // Arrange
+        when(userRepository.count()).thenReturn(2L);
+        when(userRepository.findIdentitiesAfterId(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(identity(1L, "alice"), identity(2L, "bob")));
+
+        // Act
+        filter.rebuild();
+
+        // Assert
+        assertTrue(filter.mightContain("alice"));
+        assertTrue(filter.mightContain("bob"));
+        assertFalse(filter.mightContain("mallory"));
+        assertEquals(1, meterRegistry.counter("user.bloom.rejected").count());
+    }
+
+    @Test
+    void testAdd_ShouldBeVisibleAndBroadcast() {
+        // Arrange
+        when(userRepository.count()).thenReturn(0L);
+        when(userRepository.findIdentitiesAfterId(anyLong(), any(Pageable.class))).thenReturn(List.of());
+        filter.rebuild();
+
+        // Act
+        filter.add("carol");
+
+        // Assert
+        assertTrue(filter.mightContain("carol"));
+        verify(redisTemplateForLocks).convertAndSend(UsernameBloomFilter.ADD_CHANNEL, "carol");
+    }
+
+    @Test
+    void testBits_FalsePositiveRate_ShouldStayNearConfiguredValue() {
+        UsernameBloomFilter.Bits bits = new UsernameBloomFilter.Bits(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bits.put("user_" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bits.mightContain("user_" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (bits.mightContain("unknown_" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives / 100_000.0 < 0.02, "false-positive rate too high: " + falsePositives);
+    }
+
+    private static UserIdentityProjection identity(Long id, String username) {
+        return new UserIdentityProjection() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+}